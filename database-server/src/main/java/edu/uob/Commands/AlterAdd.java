@@ -5,9 +5,8 @@ import edu.uob.DBServer;
 import edu.uob.DataLoader;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 
 public class AlterAdd extends DBCommand {
@@ -29,7 +28,6 @@ public class AlterAdd extends DBCommand {
         if (columnName.equalsIgnoreCase("id")) {
             throw new CmdExecutionException("You cannot add another 'id' column to a table.");
         }
-        Path databasePath = Paths.get(server.getPathToDatabases().toString(), databaseName, tableName + ".tab");
         DataLoader loader = new DataLoader(server);
         try {
             Table table = loader.readTableData(databaseName, tableName);
@@ -40,9 +38,11 @@ public class AlterAdd extends DBCommand {
             }
             boolean colExists = columnNames.stream().anyMatch(name -> name.trim().equalsIgnoreCase(columnName.trim()));
             if (!colExists) {
-                table.addAttribute(columnName);
-                table.initialiseEmptyColumn();
-                table.saveToFile(databasePath.toString());
+                LogRecord record = LogRecord.alterAdd(databaseName, tableName, columnName);
+                server.getStorage().commit(record, () -> {
+                    record.applyTo(table);
+                    server.getTableCache().putDirty(databaseName, table);
+                });
             } else {
                 throw new CmdExecutionException("You cannot have multiple columns with the same name.");
             }
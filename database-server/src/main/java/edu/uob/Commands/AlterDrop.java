@@ -5,9 +5,8 @@ import edu.uob.DBServer;
 import edu.uob.DataLoader;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 
 public class AlterDrop extends DBCommand {
@@ -27,7 +26,6 @@ public class AlterDrop extends DBCommand {
         }
         try {
             String databaseName = server.getCurrentDatabase();
-            Path databasePath = Paths.get(server.getPathToDatabases().toString(), databaseName, tableName + ".tab");
             DataLoader loader = new DataLoader(server);
             Table table = loader.readTableData(databaseName, tableName);
             ArrayList<String> columnNames = table.getColumnNames();
@@ -41,9 +39,11 @@ public class AlterDrop extends DBCommand {
                 if (index == -1) {
                     throw new CmdExecutionException("That column name doesnt exist the this table.");
                 }
-                table.removeColumnFromRows(index);
-                table.removeColumnHeader(index);
-                table.saveToFile(databasePath.toString());
+                LogRecord record = LogRecord.alterDrop(databaseName, tableName, columnName);
+                server.getStorage().commit(record, () -> {
+                    record.applyTo(table);
+                    server.getTableCache().putDirty(databaseName, table);
+                });
             }
         } catch (IOException e) {
             throw new CmdExecutionException("Unexpected error during ALTER (DROP) command execution.");
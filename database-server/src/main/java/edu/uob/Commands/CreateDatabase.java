@@ -3,32 +3,42 @@ package edu.uob.Commands;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
+import edu.uob.Storage.LogRecord;
+import edu.uob.Storage.TableFormat;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Files;
 
 public class CreateDatabase extends DBCommand {
     private final String databaseName;
+    private final TableFormat tableFormat;
 
     public CreateDatabase(String databaseName) {
+        this(databaseName, TableFormat.TEXT);
+    }
+
+    public CreateDatabase(String databaseName, TableFormat tableFormat) {
         this.databaseName = databaseName;
+        this.tableFormat = tableFormat;
     }
 
     public String getDatabaseName() {
         return databaseName;
     }
 
+    public TableFormat getTableFormat() {
+        return tableFormat;
+    }
+
     @Override
     public String executeQuery(DBServer server) throws CmdExecutionException {
         if (server.isReservedKeyword(databaseName)) {
             throw new CmdExecutionException("Invalid database name, it cannot be a reserved SQL keyword.");
         }
         try {
-            Path path = server.getPathToDatabases().resolve(databaseName);
             if (server.databaseExists(databaseName)) {
                 throw new CmdExecutionException("Database " + databaseName + " already exists.");
             } else {
-                Files.createDirectories(path);
+                LogRecord record = LogRecord.createDatabase(databaseName, tableFormat.getName());
+                server.getStorage().commit(record, () -> server.getStorage().createDatabaseFolder(databaseName));
                 return "[OK]";
             }
         } catch (IOException e) {
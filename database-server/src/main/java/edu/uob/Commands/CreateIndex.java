@@ -0,0 +1,48 @@
+package edu.uob.Commands;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.DataLoader;
+import edu.uob.DataStructure.Table;
+import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
+import java.io.IOException;
+
+public class CreateIndex extends DBCommand {
+
+    private final String indexName;
+    private final String tableName;
+    private final String columnName;
+
+    public CreateIndex(String indexName, String tableName, String columnName) {
+        this.indexName = indexName;
+        this.tableName = tableName;
+        this.columnName = columnName;
+    }
+
+
+    // only the index's name and column are logged and saved, its entries are built from the rows when the table is read in
+    public String executeQuery(DBServer server) throws CmdExecutionException {
+        try {
+            String databaseName = server.getCurrentDatabase();
+            if (server.getStorage().getCatalog().findIndexedTable(databaseName, indexName) != null) {
+                throw new CmdExecutionException("There is already an index called '" + indexName + "' in this database.");
+            }
+            DataLoader loader = new DataLoader(server);
+            Table table = loader.readTableData(databaseName, tableName);
+            int columnIndex = table.findColumnIndex(columnName);
+            if (columnIndex == 0) {
+                throw new CmdExecutionException("The 'id' column doesn't need an index, rows are always looked up by id.");
+            }
+            if (table.findIndex(columnName) != null) {
+                throw new CmdExecutionException("The column '" + columnName + "' already has an index.");
+            }
+            LogRecord record = LogRecord.createIndex(databaseName, tableName, indexName, table.columnNames.get(columnIndex));
+            server.getStorage().commit(record, () -> record.applyTo(table));
+        } catch (IOException e) {
+            throw new CmdExecutionException("Unexpected error during CREATE INDEX command execution.");
+        }
+        return "[OK]";
+    }
+
+}
@@ -1,24 +1,34 @@
 package edu.uob.Commands;
 
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.ColumnarTable;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
-import edu.uob.MetaDataManager;
+import edu.uob.Storage.LogRecord;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 
 public class CreateTable extends DBCommand {
 
     private final String tableName;
     private final ArrayList<String> columnNames;
+    private final ArrayList<ColumnType> columnTypes; // null for a column whose type is left to be inferred
 
     public CreateTable(String tableName, ArrayList<String> columnsNames) throws CmdExecutionException {
+        this(tableName, columnsNames, new ArrayList<>(Collections.nCopies(columnsNames.size(), null)));
+    }
+
+    public CreateTable(String tableName, ArrayList<String> columnsNames, ArrayList<ColumnType> columnTypes) throws CmdExecutionException {
 
         this.tableName = tableName.toLowerCase();
         this.columnNames = columnsNames;
+        this.columnTypes = columnTypes;
         HashSet<String> uniqueColumnCheck = new HashSet<>();
 
         for (String columnName : columnNames) {
@@ -47,19 +57,23 @@ public class CreateTable extends DBCommand {
                 throw new CmdExecutionException("You cannot create a column name with the 'id' header.");
             }
         }
-        Path databasePath = server.getPathToDatabases().resolve(server.getCurrentDatabase());
-        Path tablePath = databasePath.resolve(tableName.toLowerCase() + ".tab");
+        Path tablePath = server.getStorage().tablePath(server.getCurrentDatabase(), tableName);
         Table newTable;
         if (columnNames.isEmpty()) {
-            newTable = new Table(tableName);
+            newTable = new ColumnarTable(tableName);
         } else {
-            newTable = new Table(tableName, columnNames);
+            newTable = new ColumnarTable(tableName, columnNames);
         }
         try {
-            MetaDataManager manager = new MetaDataManager(server);
-            int initialRowId = newTable.getNextRowID();
-            manager.saveTableMetadata(databasePath.toString(), tableName, initialRowId);
-            newTable.saveToFile(tablePath.toString());
+            String databaseName = server.getCurrentDatabase();
+            ArrayList<ColumnType> allColumnTypes = new ArrayList<>(List.of(ColumnType.INT)); // the id column
+            allColumnTypes.addAll(columnTypes);
+            LogRecord record = LogRecord.createTable(databaseName, tableName, newTable.getColumnNames(), allColumnTypes);
+            server.getStorage().commit(record, () -> {
+                server.getStorage().formatFor(databaseName).write(tablePath, newTable);
+                server.getStorage().noteUnsyncedFile(tablePath);
+                server.getTableCache().put(databaseName, newTable);
+            });
             return "[OK]";
         } catch (IOException e) {
             throw new CmdExecutionException("Failed to create table due to an IO error.");
@@ -1,14 +1,15 @@
 package edu.uob.Commands;
 
+import edu.uob.Concurrency.RunningStatement;
 import edu.uob.Conditions.Condition;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
-import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
+import edu.uob.Storage.TableCache;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 
 public class DeleteCommand extends DBCommand {
 
@@ -24,20 +25,21 @@ public class DeleteCommand extends DBCommand {
     public String executeQuery(DBServer server) throws CmdExecutionException, IOException {
         String tableName = table.getTableName();
         String databaseName = server.getCurrentDatabase();
-        Path databasePath = Paths.get(server.getPathToDatabases().toString(), databaseName, tableName + ".tab");
-
         if (!server.tableExists(databaseName, tableName)) {
             throw new CmdExecutionException("That table doesn't exist in the current database.");
         }
 
-        Table newTable = new Table(tableName, table.getColumnNames());
-        for (Row row : table.getRows()) {
-            if (!condition.evaluateCondition(row)) {
-                newTable.insertRow(row);
-            }
+        RunningStatement statement = server.currentStatement();
+        ArrayList<String> deletedIds = findMatchingIds(statement, condition, table.getRows());
+        if (deletedIds.isEmpty()) {
+            return "[OK]";
         }
-
-        newTable.saveToFile(databasePath.toString());
+        LogRecord record = LogRecord.delete(databaseName, tableName, deletedIds);
+        server.getStorage().commit(record, () -> {
+            long deletedSize = TableCache.estimateSize(table, deletedIds);
+            record.applyTo(table);
+            server.getTableCache().putDirty(databaseName, table, -deletedSize);
+        });
 
         return "[OK]";
     }
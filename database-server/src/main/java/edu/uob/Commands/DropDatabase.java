@@ -2,6 +2,7 @@ package edu.uob.Commands;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
 import java.io.IOException;
 import java.nio.file.Path;
 
@@ -17,7 +18,10 @@ public class DropDatabase extends DBCommand {
     public String executeQuery(DBServer server) throws CmdExecutionException {
         try {
             Path datababasePath = server.getPathToDatabases().resolve(databaseName);
-            server.dropDatabase(datababasePath);
+            server.getStorage().commit(LogRecord.dropDatabase(databaseName), () -> {
+                server.dropDatabase(datababasePath);
+                server.getTableCache().invalidateDatabase(databaseName);
+            });
         } catch (IOException e) {
             throw new CmdExecutionException("Could not drop the database to to unknown error.");
         }
@@ -0,0 +1,39 @@
+package edu.uob.Commands;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.DataStructure.Table;
+import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
+import java.io.IOException;
+
+public class DropIndex extends DBCommand {
+
+    private final String indexName;
+
+    public DropIndex(String indexName) {
+        this.indexName = indexName;
+    }
+
+
+    public String executeQuery(DBServer server) throws CmdExecutionException {
+        try {
+            String databaseName = server.getCurrentDatabase();
+            String tableName = server.getStorage().getCatalog().findIndexedTable(databaseName, indexName);
+            if (tableName == null) {
+                throw new CmdExecutionException("There is no index called '" + indexName + "' in this database.");
+            }
+            LogRecord record = LogRecord.dropIndex(databaseName, tableName, indexName);
+            server.getStorage().commit(record, () -> {
+                Table cachedTable = server.getTableCache().get(databaseName, tableName);
+                if (cachedTable != null) {
+                    record.applyTo(cachedTable); // otherwise it's read in without the index next time
+                }
+            });
+        } catch (IOException e) {
+            throw new CmdExecutionException("Could not drop the index due to unknown error.");
+        }
+        return "[OK]";
+    }
+
+}
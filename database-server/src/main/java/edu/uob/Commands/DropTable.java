@@ -3,6 +3,7 @@ package edu.uob.Commands;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -18,9 +19,12 @@ public class DropTable extends DBCommand {
 
     public String executeQuery(DBServer server) throws CmdExecutionException {
         try {
-            Path databasePath = server.getPathToDatabases().resolve(server.getCurrentDatabase());
-            Path tablePath = databasePath.resolve(tableName + ".tab");
-            Files.delete(tablePath);
+            String databaseName = server.getCurrentDatabase();
+            Path tablePath = server.getStorage().tablePath(databaseName, tableName);
+            server.getStorage().commit(LogRecord.dropTable(databaseName, tableName), () -> {
+                Files.delete(tablePath);
+                server.getTableCache().invalidate(databaseName, tableName);
+            });
         } catch (IOException e) {
             throw new CmdExecutionException("Could not delete table due to unknown error.");
         }
@@ -7,10 +7,12 @@ import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.MetaDataManager;
+import edu.uob.Storage.LogRecord;
+import edu.uob.Storage.StorageManager;
+import edu.uob.Storage.TableCache;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 
 public class InsertCommand extends DBCommand {
@@ -36,11 +38,13 @@ public class InsertCommand extends DBCommand {
             if (!server.tableExists(databaseName, tableName)) {
                 throw new CmdExecutionException("Table does not exist.");
             }
-            Path databasePath = Paths.get(server.getPathToDatabases().toString(), databaseName, tableName + ".tab");
+            StorageManager storage = server.getStorage();
+            Path tablePath = storage.tablePath(databaseName, tableName);
             DataLoader loader = new DataLoader(server);
             MetaDataManager metaDataManager = new MetaDataManager(server);
-            Table table = loader.readTableData(databaseName, tableName);
-            int tableAttributes = table.getColumnNames().size() - 1; // take out the id column
+            // the catalog has the columns, the new row is appended rather than rewriting the file
+            ArrayList<String> columnNames = storage.getCatalog().getColumnNames(databaseName, tableName);
+            int tableAttributes = columnNames.size() - 1; // take out the id column
             int newRowSize = newRowValues.size();
             if (newRowSize > tableAttributes) {
                 throw new CmdExecutionException("You cannot insert more attributes than there are column headers.");
@@ -48,11 +52,25 @@ public class InsertCommand extends DBCommand {
             if (newRowSize < 1) {
                 throw new CmdExecutionException("No values were provided for insertion.");
             }
+            for (int i = 0; i < newRowSize; i++) {
+                checkDeclaredType(storage, databaseName, tableName, columnNames.get(i + 1), newRowValues.get(i));
+            }
             int nextRowId = metaDataManager.loadNextRowID(tableName);
             Row newRow = new Row(nextRowId, newRowValues);
-            table.insertRow(newRow);
-            metaDataManager.saveTableMetadata(databaseName, tableName, nextRowId + 1);
-            table.saveToFile(databasePath.toString());
+            storage.commit(LogRecord.insert(databaseName, tableName, columnNames, newRow), () -> {
+                TableCache cache = storage.getTableCache();
+                if (cache.isDirty(databaseName, tableName)) {
+                    cache.addRow(databaseName, tableName, newRow); // the checkpointer will write it out
+                } else if (storage.formatFor(databaseName).appendRow(tablePath, newRow)) {
+                    storage.noteUnsyncedFile(tablePath);
+                    cache.addRow(databaseName, tableName, newRow);
+                } else {
+                    // the format can't grow in place, so keep the row in memory until the next checkpoint
+                    Table table = loader.readTableData(databaseName, tableName);
+                    table.insertRow(newRow);
+                    cache.putDirty(databaseName, table);
+                }
+            });
             return "[OK]";
         } catch (IOException e) {
             throw new CmdExecutionException("Unexpected error during INSERT command execution.");
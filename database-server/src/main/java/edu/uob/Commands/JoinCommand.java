@@ -1,11 +1,14 @@
 package edu.uob.Commands;
 
+import edu.uob.Concurrency.RunningStatement;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
 import edu.uob.DataLoader;
 import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Results.ResultSink;
+import edu.uob.Results.TextResultSink;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -23,7 +26,7 @@ public class JoinCommand extends DBCommand {
         this.secondAttribute = secondAttribute;
     }
 
-    private Table buildJointTable(Table tableOne, Table tableTwo) throws CmdExecutionException {
+    private Table buildJointTable(Table tableOne, Table tableTwo, RunningStatement statement) throws CmdExecutionException {
         ArrayList<String> jointColumnNames = new ArrayList<>();
         jointColumnNames.add("id");
         tableOne.getColumnNames().stream()
@@ -39,6 +42,7 @@ public class JoinCommand extends DBCommand {
         // Finding matching rows based on the join attributes and creating new rows in the joint table
         for (Row rowOne : tableOne.getRows()) {
             for (Row rowTwo : tableTwo.getRows()) {
+                statement.checkCancelled();
                 String valOne = rowOne.getCellData(firstAttribute, tableOne);
                 String valTwo = rowTwo.getCellData(secondAttribute, tableTwo);
 
@@ -65,15 +69,24 @@ public class JoinCommand extends DBCommand {
     }
 
     public String executeQuery(DBServer server) throws CmdExecutionException, IOException {
+        TextResultSink resultText = new TextResultSink();
+        executeQuery(server, resultText);
+        return ("[OK]\n" + resultText).trim();
+    }
+
+    @Override
+    public String executeQuery(DBServer server, ResultSink sink) throws CmdExecutionException, IOException {
         String databaseName = server.getCurrentDatabase();
         DataLoader loader = new DataLoader(server);
         Table tableOne = loader.readTableData(databaseName, this.firstTableName);
         Table tableTwo = loader.readTableData(databaseName, this.secondTableName);
 
-        Table joinedTable = buildJointTable(tableOne, tableTwo);
-        String joinedDisplay = joinedTable.displayTable();
-        return "[OK]\n" + joinedDisplay;
+        Table joinedTable = buildJointTable(tableOne, tableTwo, server.currentStatement());
+        sink.writeColumns(joinedTable.getColumnNames());
+        for (Row row : joinedTable.getRows()) {
+            sink.writeRow(row.getCells());
+        }
+        return "[OK]";
     }
 
 }
-
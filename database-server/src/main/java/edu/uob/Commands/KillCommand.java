@@ -0,0 +1,23 @@
+package edu.uob.Commands;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.Exceptions.CmdExecutionException;
+
+public class KillCommand extends DBCommand {
+
+    private final long statementId;
+
+    public KillCommand(long statementId) {
+        this.statementId = statementId;
+    }
+
+    @Override
+    public String executeQuery(DBServer server) throws CmdExecutionException {
+        if (!server.getProcessList().kill(statementId)) {
+            throw new CmdExecutionException("There is no running statement with id " + statementId + ".");
+        }
+        return "[OK]";
+    }
+
+}
@@ -0,0 +1,26 @@
+package edu.uob.Commands;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.Parsing.PreparedQuery;
+
+public class PrepareQuery extends DBCommand {
+
+    private final PreparedQuery preparedQuery;
+
+    public PrepareQuery(PreparedQuery preparedQuery) {
+        this.preparedQuery = preparedQuery;
+    }
+
+    public PreparedQuery getPreparedQuery() {
+        return preparedQuery;
+    }
+
+    // prepared statements belong to the session (connection) that prepared them
+    @Override
+    public String executeQuery(DBServer server) {
+        server.currentSession().addPreparedQuery(preparedQuery);
+        return "[OK]";
+    }
+
+}
@@ -1,15 +1,19 @@
 package edu.uob.Commands;
 
+import edu.uob.Concurrency.RunningStatement;
 import edu.uob.Conditions.Condition;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
 import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Results.ResultSink;
+import edu.uob.Results.TextResultSink;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class SelectCommand extends DBCommand {
 
@@ -50,32 +54,65 @@ public class SelectCommand extends DBCommand {
 
     @Override
     public String executeQuery(DBServer server) throws CmdExecutionException, IOException {
+        TextResultSink resultText = new TextResultSink();
+        executeQuery(server, resultText);
+        return ("[OK]\n" + resultText).trim();
+    }
+
+
+    @Override
+    public String executeQuery(DBServer server, ResultSink sink) throws CmdExecutionException, IOException {
         String tableName = table.getTableName();
         String databaseName = server.getCurrentDatabase();
         if (!server.tableExists(databaseName, tableName)) {
             throw new CmdExecutionException("That table doesn't exist in the database.");
         }
-        StringBuilder resultBuilder = new StringBuilder("[OK]\n");
-
-        // Build header row based on whether all columns are selected or specific columns are.
-        String header = this.selectAll ? String.join("\t", table.getColumnNames()) : String.join("\t", this.columnNames);
-        resultBuilder.append(header).append("\n");
-        for (Row row : table.getRows()) { // go through each row to append the data
-            if (condition == null || condition.evaluateCondition(row)) {
-                List<String> rowData = new ArrayList<>();
-                if (this.selectAll) {
-                    rowData.addAll(row.getCells()); // if select *, add all cell data from the row
-                } else {
-                    for (String columnName : this.columnNames) { // else only get thhe data from each specific column
-                        //int columnIndex = table.getColumnNames().indexOf(columnName);
-                        int columnIndex = table.findColumnIndex(columnName);
-                        rowData.add(row.getCellData(columnIndex));
-                    }
-                }
-                resultBuilder.append(String.join("\t", rowData)).append("\n");
+        // Work out which cells to project once, rather than looking the columns up again for every row
+        int[] columnIndexes = null;
+        if (!this.selectAll) {
+            columnIndexes = new int[this.columnNames.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = table.findColumnIndex(this.columnNames.get(i));
+            }
+        }
+        sink.writeColumns(this.selectAll ? table.getColumnNames() : this.columnNames);
+        RunningStatement statement = server.currentStatement();
+        ZoneMap zoneMap = condition != null ? table.getZoneMap() : null;
+        List<Row> rows = table.getRows();
+        BitSet indexedRows = condition != null ? condition.findIndexedRows() : null;
+        if (indexedRows != null) { // an index has found the rows, so there's nothing to scan
+            BitSet matches = condition.findMatches(rows, indexedRows);
+            for (int rowIndex = matches.nextSetBit(0); rowIndex >= 0; rowIndex = matches.nextSetBit(rowIndex + 1)) {
+                writeRow(sink, rows.get(rowIndex), columnIndexes);
+            }
+            return "[OK]";
+        }
+        int blockRows = zoneMap != null ? zoneMap.getBlockRows() : SCAN_BLOCK_ROWS;
+        for (int blockStart = 0; blockStart < rows.size(); blockStart += blockRows) { // go through a block at a time
+            statement.checkCancelledNow();
+            if (zoneMap != null && !condition.mightMatch(zoneMap, blockStart / blockRows)) {
+                continue; // nothing in this block can match
+            }
+            BitSet block = new BitSet();
+            block.set(blockStart, Math.min(rows.size(), blockStart + blockRows));
+            BitSet matches = condition != null ? condition.findMatches(rows, block) : block;
+            for (int rowIndex = matches.nextSetBit(0); rowIndex >= 0; rowIndex = matches.nextSetBit(rowIndex + 1)) {
+                writeRow(sink, rows.get(rowIndex), columnIndexes);
+            }
+        }
+        return "[OK]";
+    }
+
+    private void writeRow(ResultSink sink, Row row, int[] columnIndexes) throws IOException {
+        if (this.selectAll) {
+            sink.writeRow(row.getCells()); // if select *, send all cell data from the row
+        } else {
+            List<String> rowData = new ArrayList<>(columnIndexes.length);
+            for (int columnIndex : columnIndexes) { // else only get the data from each specific column
+                rowData.add(row.getCellData(columnIndex));
             }
+            sink.writeRow(rowData);
         }
-        return resultBuilder.toString().trim();
     }
 
 
@@ -0,0 +1,25 @@
+package edu.uob.Commands;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+
+public class SetTimeout extends DBCommand {
+
+    private final long timeoutMillis;
+
+    public SetTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    // only affects the session (connection) that ran the command
+    @Override
+    public String executeQuery(DBServer server) {
+        server.currentSession().setStatementTimeoutMillis(timeoutMillis);
+        return "[OK]";
+    }
+
+}
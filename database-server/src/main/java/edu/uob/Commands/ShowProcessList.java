@@ -0,0 +1,40 @@
+package edu.uob.Commands;
+
+import edu.uob.Concurrency.RunningStatement;
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.Results.ResultSink;
+import edu.uob.Results.TextResultSink;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShowProcessList extends DBCommand {
+
+    private static final List<String> COLUMN_NAMES = List.of("id", "session", "database", "time", "state", "query");
+
+    @Override
+    public String executeQuery(DBServer server) throws IOException {
+        TextResultSink resultText = new TextResultSink();
+        executeQuery(server, resultText);
+        return ("[OK]\n" + resultText).trim();
+    }
+
+    @Override
+    public String executeQuery(DBServer server, ResultSink sink) throws IOException {
+        sink.writeColumns(COLUMN_NAMES);
+        for (RunningStatement statement : server.getProcessList().getRunningStatements()) {
+            List<String> rowData = new ArrayList<>(COLUMN_NAMES.size());
+            rowData.add(String.valueOf(statement.getStatementId()));
+            rowData.add(String.valueOf(statement.getSession().getSessionId()));
+            String databaseName = statement.getSession().getCurrentDatabase();
+            rowData.add(databaseName == null ? " " : databaseName);
+            rowData.add(statement.getElapsedMillis() + "ms");
+            rowData.add(statement.getState());
+            rowData.add(statement.getQuery().replace('\t', ' '));
+            sink.writeRow(rowData);
+        }
+        return "[OK]";
+    }
+
+}
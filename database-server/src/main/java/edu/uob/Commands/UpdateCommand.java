@@ -1,14 +1,15 @@
 package edu.uob.Commands;
 
+import edu.uob.Concurrency.RunningStatement;
 import edu.uob.Conditions.Condition;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
-import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Storage.LogRecord;
+import edu.uob.Storage.TableCache;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 public class UpdateCommand extends DBCommand {
@@ -27,7 +28,6 @@ public class UpdateCommand extends DBCommand {
     public String executeQuery(DBServer server) throws CmdExecutionException, IOException {
         String tableName = table.getTableName();
         String databaseName = server.getCurrentDatabase();
-        Path databasePath = Paths.get(server.getPathToDatabases().toString(), databaseName, tableName + ".tab");
         if (!server.tableExists(databaseName, tableName)) {
             throw new CmdExecutionException("That table doesn't exist in the current database.");
         }
@@ -35,20 +35,27 @@ public class UpdateCommand extends DBCommand {
             throw new CmdExecutionException("You cannot alter the values in the 'id' column.");
         }
 
-        for (Row row : table.getRows()) {
-            if (condition.evaluateCondition(row)) {
-                for (String columnName : updates.keySet()) {
-                    int columnIndex = table.findColumnIndex(columnName);
-                    if (columnIndex != -1) {
-                        row.getCells().set(columnIndex, updates.get(columnName));
-                    } else {
-                        throw new CmdExecutionException("Column name '" + columnName + "' does not exist in the table.");
-                    }
-                }
-            }
+        ArrayList<String> columnNames = new ArrayList<>(updates.keySet());
+        ArrayList<String> newValues = new ArrayList<>();
+        for (String columnName : columnNames) {
+            table.findColumnIndex(columnName); // fails if the column doesn't exist
+            checkDeclaredType(server.getStorage(), databaseName, tableName, columnName, updates.get(columnName));
+            newValues.add(updates.get(columnName));
         }
 
-        table.saveToFile(databasePath.toString());
+        // find the rows first and change them once the change is logged, so a failure part way changes nothing
+        RunningStatement statement = server.currentStatement();
+        ArrayList<String> matchingIds = findMatchingIds(statement, condition, table.getRows());
+        if (matchingIds.isEmpty()) {
+            return "[OK]";
+        }
+        LogRecord record = LogRecord.update(databaseName, tableName, matchingIds, columnNames, newValues);
+        server.getStorage().commit(record, () -> {
+            long sizeBefore = TableCache.estimateSize(table, matchingIds);
+            record.applyTo(table);
+            long sizeChange = TableCache.estimateSize(table, matchingIds) - sizeBefore;
+            server.getTableCache().putDirty(databaseName, table, sizeChange);
+        });
         return "[OK]";
     }
 }
@@ -0,0 +1,42 @@
+package edu.uob.Concurrency;
+
+import edu.uob.Session;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Keeps track of every statement that is running, so they can be listed and killed by id. */
+public class ProcessList {
+
+    private final AtomicLong nextStatementId = new AtomicLong(1);
+    private final ConcurrentHashMap<Long, RunningStatement> runningStatements = new ConcurrentHashMap<>();
+
+    public RunningStatement start(Session session, String query) {
+        RunningStatement statement = new RunningStatement(nextStatementId.getAndIncrement(), session, query,
+                session.getStatementTimeoutMillis());
+        runningStatements.put(statement.getStatementId(), statement);
+        return statement;
+    }
+
+    public void finish(RunningStatement statement) {
+        runningStatements.remove(statement.getStatementId());
+    }
+
+    public ArrayList<RunningStatement> getRunningStatements() {
+        ArrayList<RunningStatement> statements = new ArrayList<>(runningStatements.values());
+        statements.sort(Comparator.comparingLong(RunningStatement::getStatementId));
+        return statements;
+    }
+
+    /** Asks a statement to stop, returning false if there is no running statement with that id. */
+    public boolean kill(long statementId) {
+        RunningStatement statement = runningStatements.get(statementId);
+        if (statement == null) {
+            return false;
+        }
+        statement.cancel();
+        return true;
+    }
+
+}
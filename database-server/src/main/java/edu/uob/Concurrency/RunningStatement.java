@@ -0,0 +1,96 @@
+package edu.uob.Concurrency;
+
+import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Logging.QueryTimings;
+import edu.uob.Session;
+
+/**
+ * A statement that is currently executing. Long running loops call {@link #checkCancelled()} as they go,
+ * which stops the statement once it has been killed or has run past its session's timeout.
+ */
+public class RunningStatement {
+
+    // how many calls to checkCancelled() go by between actually looking at the flag and the clock
+    private static final int CHECK_INTERVAL = 256;
+
+    /** Used when a command runs outside handleCommand (e.g. straight from the parser), it never stops. */
+    public static final RunningStatement UNTRACKED = new RunningStatement(0, null, "", 0);
+
+    private final long statementId;
+    private final Session session;
+    private final String query;
+    private final long startNanos;
+    private final long timeoutMillis;
+    private final long deadlineNanos;
+
+    private final QueryTimings timings;
+
+    private volatile boolean cancelled = false;
+    private volatile String state = "starting";
+    private int checksUntilNextTest = CHECK_INTERVAL;
+
+    public RunningStatement(long statementId, Session session, String query, long timeoutMillis) {
+        this.statementId = statementId;
+        this.session = session;
+        this.query = query;
+        this.startNanos = System.nanoTime();
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineNanos = startNanos + timeoutMillis * 1_000_000L;
+        this.timings = new QueryTimings(session != null);
+    }
+
+    public long getStatementId() {
+        return statementId;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long getElapsedMillis() {
+        return getElapsedNanos() / 1_000_000L;
+    }
+
+    public QueryTimings getTimings() {
+        return timings;
+    }
+
+    public String getState() {
+        return cancelled ? "cancelling" : state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** Cheap enough to call once per row, only every CHECK_INTERVAL-th call does any real work. */
+    public void checkCancelled() throws CmdExecutionException {
+        if (--checksUntilNextTest > 0) {
+            return;
+        }
+        checksUntilNextTest = CHECK_INTERVAL;
+        checkCancelledNow();
+    }
+
+    public void checkCancelledNow() throws CmdExecutionException {
+        if (cancelled) {
+            throw new CmdExecutionException("The statement was cancelled.");
+        }
+        if (timeoutMillis > 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new CmdExecutionException("The statement was stopped after exceeding the session's timeout of " + timeoutMillis + " ms.");
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package edu.uob.Concurrency;
+
+import edu.uob.Exceptions.CmdExecutionException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/** The locks held by one statement, released in the reverse order they were taken. */
+public class StatementLocks {
+
+    private final ArrayList<Lock> heldLocks = new ArrayList<>();
+
+    private final ArrayList<String> writtenTables = new ArrayList<>();
+
+    // run by release() while every lock is still held
+    private Runnable beforeRelease;
+
+    /** The tables (in the current database) this statement holds write locks on. */
+    public ArrayList<String> getWrittenTables() {
+        return writtenTables;
+    }
+
+    // waits in short steps so a statement stuck behind another one can still be killed or time out, and
+    // lets go of everything it already holds if it gives up, since the caller never gets the locks back
+    void acquire(Lock lock, RunningStatement statement) throws CmdExecutionException {
+        boolean acquired = false;
+        try {
+            while (!lock.tryLock(20, TimeUnit.MILLISECONDS)) {
+                statement.checkCancelledNow();
+            }
+            acquired = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CmdExecutionException("The statement was interrupted while waiting for a table lock.");
+        } finally {
+            if (!acquired) {
+                release();
+            }
+        }
+        heldLocks.add(lock);
+    }
+
+    void runBeforeRelease(Runnable action) {
+        this.beforeRelease = action;
+    }
+
+    void releaseLast() {
+        heldLocks.remove(heldLocks.size() - 1).unlock();
+    }
+
+    public void release() {
+        if (beforeRelease != null) {
+            beforeRelease.run();
+            beforeRelease = null;
+        }
+        for (int i = heldLocks.size() - 1; i >= 0; i--) {
+            heldLocks.get(i).unlock();
+        }
+        heldLocks.clear();
+    }
+
+}
@@ -0,0 +1,156 @@
+package edu.uob.Concurrency;
+
+import edu.uob.Exceptions.CmdExecutionException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hands out reader/writer locks keyed by (database, table). SELECT and JOIN share their tables, anything
+ * that rewrites a table file holds that table exclusively, and CREATE/DROP DATABASE hold the whole
+ * database exclusively, as do DROP TABLE, so the dropped table's lock can be forgotten, and DROP INDEX,
+ * since it doesn't name its table. Every table has its own lock so statements on unrelated tables never
+ * contend.
+ */
+public class TableLockManager {
+
+    private enum Mode { READ, WRITE }
+
+    private final ConcurrentHashMap<String, ReentrantReadWriteLock> databaseLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ReentrantReadWriteLock> tableLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Takes the locks the tokenised statement needs before it is parsed (parsing already reads table files).
+     * Locks are always taken database first and then tables in name order, so statements can't deadlock.
+     */
+    public StatementLocks lockStatement(String[] tokens, String currentDatabase, RunningStatement statement) throws CmdExecutionException {
+        StatementLocks locks = new StatementLocks();
+        if (tokens.length < 2) {
+            return locks;
+        }
+        String commandType = tokens[0].toUpperCase();
+        String secondToken = tokens[1].toUpperCase();
+        if ((commandType.equals("CREATE") || commandType.equals("DROP")) && secondToken.equals("DATABASE")) {
+            if (tokens.length > 2) {
+                lockDatabase(tokens[2], true, locks, statement);
+                if (commandType.equals("DROP")) {
+                    locks.runBeforeRelease(() -> forgetDatabase(tokens[2]));
+                }
+            }
+            return locks;
+        }
+        if (currentDatabase == null) {
+            return locks; // the command itself will report that no database is in use
+        }
+        if (commandType.equals("DROP") && secondToken.equals("INDEX")) {
+            lockDatabase(currentDatabase, true, locks, statement);
+            return locks;
+        }
+        if (commandType.equals("DROP") && secondToken.equals("TABLE")) {
+            lockDatabase(currentDatabase, true, locks, statement);
+            if (tokens.length > 2 && !tokens[2].equals(";")) {
+                String tableName = tokens[2].toLowerCase();
+                locks.getWrittenTables().add(tableName);
+                locks.runBeforeRelease(() -> tableLocks.remove(tableKey(currentDatabase, tableName)));
+            }
+            return locks;
+        }
+        TreeMap<String, Mode> tables = new TreeMap<>();
+        switch (commandType) {
+            case "SELECT" -> addTableAfter(tokens, "FROM", Mode.READ, tables);
+            case "JOIN" -> {
+                addTable(tokens, 1, Mode.READ, tables);
+                addTableAfter(tokens, "AND", Mode.READ, tables);
+            }
+            case "CREATE" -> {
+                if (secondToken.equals("INDEX")) {
+                    addTableAfter(tokens, "ON", Mode.WRITE, tables);
+                } else {
+                    addTable(tokens, 2, Mode.WRITE, tables);
+                }
+            }
+            case "INSERT", "DELETE", "ALTER" -> addTable(tokens, 2, Mode.WRITE, tables);
+            case "UPDATE" -> addTable(tokens, 1, Mode.WRITE, tables);
+            default -> { }
+        }
+        if (tables.isEmpty()) {
+            return locks;
+        }
+        lockDatabase(currentDatabase, false, locks, statement);
+        for (String tableName : tables.keySet()) {
+            ReentrantReadWriteLock tableLock = tableLock(currentDatabase, tableName);
+            if (tables.get(tableName) == Mode.READ) {
+                locks.acquire(tableLock.readLock(), statement);
+            } else {
+                locks.acquire(tableLock.writeLock(), statement);
+                locks.getWrittenTables().add(tableName);
+            }
+        }
+        return locks;
+    }
+
+    /** Locks one table for reading outside of any statement (the checkpointer uses this). */
+    public StatementLocks lockTableForRead(String databaseName, String tableName) throws CmdExecutionException {
+        StatementLocks locks = new StatementLocks();
+        lockDatabase(databaseName, false, locks, RunningStatement.UNTRACKED);
+        locks.acquire(tableLock(databaseName, tableName.toLowerCase()).readLock(), RunningStatement.UNTRACKED);
+        return locks;
+    }
+
+    private void addTableAfter(String[] tokens, String keyword, Mode mode, TreeMap<String, Mode> tables) {
+        for (int i = 0; i < tokens.length - 1; i++) {
+            if (tokens[i].equalsIgnoreCase(keyword)) {
+                addTable(tokens, i + 1, mode, tables);
+                return;
+            }
+        }
+    }
+
+    private void addTable(String[] tokens, int index, Mode mode, TreeMap<String, Mode> tables) {
+        if (index >= tokens.length || tokens[index].equals(";")) {
+            return;
+        }
+        String tableName = tokens[index].toLowerCase();
+        if (mode == Mode.WRITE || !tables.containsKey(tableName)) {
+            tables.put(tableName, mode);
+        }
+    }
+
+    /** How many database and table locks exist, whether held or not; drops forget theirs. */
+    public int getLockCount() {
+        return databaseLocks.size() + tableLocks.size();
+    }
+
+    // DROP DATABASE forgets the lock while statements may still be waiting on it, so once one of those gets
+    // it, it lets go and takes whichever lock the database has now
+    private void lockDatabase(String databaseName, boolean exclusive, StatementLocks locks, RunningStatement statement)
+            throws CmdExecutionException {
+        String key = databaseName.toLowerCase();
+        while (true) {
+            ReentrantReadWriteLock databaseLock = databaseLocks.computeIfAbsent(key, name -> new ReentrantReadWriteLock());
+            Lock lock = exclusive ? databaseLock.writeLock() : databaseLock.readLock();
+            locks.acquire(lock, statement);
+            if (databaseLocks.get(key) == databaseLock) {
+                return;
+            }
+            locks.releaseLast();
+        }
+    }
+
+    // called holding the database's write lock, so nobody else holds or is waiting on any of its table locks
+    private void forgetDatabase(String databaseName) {
+        String key = databaseName.toLowerCase();
+        tableLocks.keySet().removeIf(tableKey -> tableKey.startsWith(key + "/"));
+        databaseLocks.remove(key);
+    }
+
+    private ReentrantReadWriteLock tableLock(String databaseName, String tableName) {
+        return tableLocks.computeIfAbsent(tableKey(databaseName, tableName), name -> new ReentrantReadWriteLock());
+    }
+
+    private static String tableKey(String databaseName, String tableName) {
+        return databaseName.toLowerCase() + "/" + tableName;
+    }
+
+}
@@ -1,7 +1,10 @@
 package edu.uob.Conditions;
 
 import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import java.util.BitSet;
+import java.util.List;
 
 public class AndCondition extends Condition {
 
@@ -18,6 +21,27 @@ public class AndCondition extends Condition {
         return leftCondition.evaluateCondition(row) && rightCondition.evaluateCondition(row);
     }
 
+    // the right side is only tried on rows the left matched, as evaluateCondition would
+    @Override
+    public BitSet findMatches(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        return rightCondition.findMatches(rows, leftCondition.findMatches(rows, candidates));
+    }
 
+    // either side narrowing the rows down is enough, since a match has to match both
+    @Override
+    public BitSet findIndexedRows() {
+        BitSet left = leftCondition.findIndexedRows();
+        BitSet right = rightCondition.findIndexedRows();
+        if (left == null || right == null) {
+            return left != null ? left : right;
+        }
+        left.and(right);
+        return left;
+    }
+
+    @Override
+    public boolean mightMatch(ZoneMap zoneMap, int block) {
+        return leftCondition.mightMatch(zoneMap, block) && rightCondition.mightMatch(zoneMap, block);
+    }
 
 }
@@ -1,16 +1,91 @@
 package edu.uob.Conditions;
 
+import edu.uob.DataStructure.ColumnVector;
 import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.DoublePredicate;
 
 public abstract class Condition {
 
+    private static final int FEW_ROWS = 64;
 
     public Condition() {
     }
 
     public abstract boolean evaluateCondition(Row row) throws CmdExecutionException;
 
+    /**
+     * The candidate rows that match, out of the rows of the table the condition was made for. Conditions on
+     * a number column override this to compare the table's parsed column instead of parsing a cell per row.
+     */
+    public BitSet findMatches(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        return evaluateEach(rows, candidates);
+    }
+
+    /**
+     * The only rows that can match, found through an index without looking at the rest of the table, or
+     * null if the condition can't be answered that way and the rows have to be scanned. The rows found
+     * still go through findMatches, so an index only has to narrow things down.
+     */
+    public BitSet findIndexedRows() {
+        return null;
+    }
+
+    protected final BitSet evaluateEach(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        BitSet matches = new BitSet();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (evaluateCondition(rows.get(i))) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    // blank cells still go through evaluateCondition, so they fail the same way they always have
+    protected BitSet findNumericMatches(Table table, String columnName, List<Row> rows, BitSet candidates,
+                                        DoublePredicate test) throws CmdExecutionException {
+        if (candidates.isEmpty()) {
+            return new BitSet();
+        }
+        if (candidates.cardinality() < FEW_ROWS) {
+            return evaluateEach(rows, candidates); // cheaper than parsing the whole column, say after a lookup
+        }
+        ColumnVector column = table.getColumnVector(table.findColumnIndex(columnName));
+        if (!column.isNumeric()) {
+            return evaluateEach(rows, candidates);
+        }
+        BitSet matches = new BitSet();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (column.isNull(i) ? evaluateCondition(rows.get(i)) : test.test(column.getDouble(i))) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    /** False only if the zone map shows that no row in the block can match, so the scan can skip it. */
+    public boolean mightMatch(ZoneMap zoneMap, int block) {
+        return true;
+    }
+
+    // the column's smallest and largest value in the block, or null if it has a cell that isn't a number
+    protected static double[] numericRange(Table table, String columnName, ZoneMap zoneMap, int block) {
+        int columnIndex;
+        try {
+            columnIndex = table.findColumnIndex(columnName);
+        } catch (CmdExecutionException e) {
+            return null; // leave the error to evaluateCondition
+        }
+        if (!zoneMap.isNumeric(block, columnIndex) || zoneMap.hasNulls(block, columnIndex)) {
+            return null;
+        }
+        return new double[] {zoneMap.getMin(block, columnIndex), zoneMap.getMax(block, columnIndex)};
+    }
+
 
 
 }
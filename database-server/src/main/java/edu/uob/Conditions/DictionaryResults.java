@@ -0,0 +1,32 @@
+package edu.uob.Conditions;
+
+import java.util.Arrays;
+
+/**
+ * A condition's result for each value in the dictionary of the column it tests, so for a dictionary
+ * encoded column it's only worked out once per distinct value rather than once per row.
+ */
+final class DictionaryResults {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+
+    private byte[] results = new byte[64];
+
+    /** The result remembered for this code, or null if it hasn't been worked out yet. */
+    Boolean get(int code) {
+        if (code >= results.length || results[code] == UNKNOWN) {
+            return null;
+        }
+        return results[code] == TRUE;
+    }
+
+    void put(int code, boolean result) {
+        if (code >= results.length) {
+            results = Arrays.copyOf(results, Math.max(code + 1, results.length * 2));
+        }
+        results[code] = result ? TRUE : FALSE;
+    }
+
+}
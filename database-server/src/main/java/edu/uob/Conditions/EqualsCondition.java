@@ -1,47 +1,121 @@
 package edu.uob.Conditions;
 
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.HashIndex;
 import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Parsing.Token;
+import java.util.BitSet;
+import java.util.List;
 
 public class EqualsCondition extends Condition {
 
     private final Table table;
    private final String columnName;
    private final String value;
+   private final boolean valueIsNumber;
+   private final DictionaryResults dictionaryResults = new DictionaryResults();
 
     public EqualsCondition(Table table, String columnName, String value) {
         this.table = table;
         this.columnName = columnName;
         this.value = value;
+        this.valueIsNumber = isNumber(value);
     }
 
 
     @Override
     public boolean evaluateCondition(Row row) throws CmdExecutionException {
-        String cellValue = row.getCellData(columnName, table);
-        try {
-            //  see if both can be treated as integers
-            if (cellValue.contains(".") || value.contains(".")) {
-                // At least one is a floating point, compare as doubles
-                double cellValueDouble = Double.parseDouble(cellValue);
-                double conditionValueDouble = Double.parseDouble(value);
-                final double EPSILON = 0.000001; // float tolerance
-                return Math.abs(cellValueDouble - conditionValueDouble) < EPSILON;
-            } else {
-                // Both can be treated as integers
-                int cellValueInt = Integer.parseInt(cellValue);
-                int conditionValueInt = Integer.parseInt(value);
-                return cellValueInt == conditionValueInt;
-            }
-        } catch (NumberFormatException e) {
-            return value.equals(cellValue);
+        int code = row.getCellCode(table.findColumnIndex(columnName));
+        Boolean knownResult = code >= 0 ? dictionaryResults.get(code) : null;
+        if (knownResult != null) {
+            return knownResult;
+        }
+        boolean result = matches(row.getCellData(columnName, table));
+        if (code >= 0) {
+            dictionaryResults.put(code, result);
         }
+        return result;
     }
 
 
+    // the cell and value are checked character by character before parsing, so nothing here throws
+    private boolean matches(String cellValue) {
+        if (!valueIsNumber || !isNumber(cellValue)) {
+            return value.equals(cellValue);
+        }
+        if (cellValue.contains(".") || value.contains(".")) {
+            // At least one is a floating point, compare as doubles
+            double cellValueDouble = Double.parseDouble(cellValue);
+            double conditionValueDouble = Double.parseDouble(value);
+            final double EPSILON = 0.000001; // float tolerance
+            return Math.abs(cellValueDouble - conditionValueDouble) < EPSILON;
+        }
+        // Both are integers, compared as ints when they fit and as text when they don't
+        if (ColumnType.of(cellValue) == ColumnType.INT && ColumnType.of(value) == ColumnType.INT) {
+            return Integer.parseInt(cellValue) == Integer.parseInt(value);
+        }
+        return value.equals(cellValue);
+    }
 
+    // the same numbers HashIndex keys by range
+    private static boolean isNumber(String value) {
+        return Token.isInteger(value) || Token.isFloat(value);
+    }
 
+    // on a number column a match is the same number give or take the float tolerance, which covers the
+    // exact comparison of two integers too
+    @Override
+    public BitSet findMatches(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        ColumnType valueType = ColumnType.of(value);
+        if (valueType != ColumnType.INT && valueType != ColumnType.FLOAT) {
+            return evaluateEach(rows, candidates);
+        }
+        double number = Double.parseDouble(value);
+        final double EPSILON = 0.000001;
+        return findNumericMatches(table, columnName, rows, candidates, cellValue -> Math.abs(cellValue - number) < EPSILON);
+    }
 
+    // ids are whole numbers and each is on one row, so 'id == n' is a lookup in the table's id index, and
+    // a column CREATE INDEX has indexed gives the ids of the rows that could hold the value
+    @Override
+    public BitSet findIndexedRows() {
+        BitSet rows = new BitSet();
+        if (columnName.trim().equalsIgnoreCase("id")) {
+            if (ColumnType.of(value) != ColumnType.INT) {
+                return null;
+            }
+            int rowIndex = table.findRowIndex(Integer.parseInt(value));
+            if (rowIndex >= 0) {
+                rows.set(rowIndex);
+            }
+            return rows;
+        }
+        HashIndex index = table.findIndex(columnName.trim());
+        if (index == null) {
+            return null;
+        }
+        index.forEachCandidate(value, rowId -> {
+            int rowIndex = table.findRowIndex(rowId);
+            if (rowIndex >= 0) {
+                rows.set(rowIndex);
+            }
+        });
+        return rows;
+    }
+
+    // a match means the cell is the same number as the value, give or take the float tolerance
+    @Override
+    public boolean mightMatch(ZoneMap zoneMap, int block) {
+        if (!valueIsNumber) {
+            return true;
+        }
+        double number = Double.parseDouble(value);
+        double[] range = numericRange(table, columnName, zoneMap, block);
+        final double EPSILON = 0.000001;
+        return range == null || (number > range[0] - EPSILON && number < range[1] + EPSILON);
+    }
 
 }
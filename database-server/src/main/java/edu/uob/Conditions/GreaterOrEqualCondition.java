@@ -2,7 +2,10 @@ package edu.uob.Conditions;
 
 import edu.uob.DataStructure.Row;
 import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import java.util.BitSet;
+import java.util.List;
 
 public class GreaterOrEqualCondition extends Condition {
 
@@ -25,4 +28,17 @@ public class GreaterOrEqualCondition extends Condition {
 
 
 
+    
+
+    @Override
+    public BitSet findMatches(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        return findNumericMatches(table, columnName, rows, candidates, cellValue -> cellValue >= value);
+    }
+
+    @Override
+    public boolean mightMatch(ZoneMap zoneMap, int block) {
+        double[] range = numericRange(table, columnName, zoneMap, block);
+        return range == null || range[1] >= value;
     }
+
+}
@@ -10,6 +10,7 @@ public class LikeCondition extends Condition {
     private final String patternRegex;
     private final Pattern compiledPattern;
     private final Table table;
+    private final DictionaryResults dictionaryResults = new DictionaryResults();
 
 
     public LikeCondition(Table table, String columnName, String pattern) {
@@ -28,8 +29,17 @@ public class LikeCondition extends Condition {
 
     @Override
     public boolean evaluateCondition(Row row) throws CmdExecutionException {
+        int code = row.getCellCode(table.findColumnIndex(columnName));
+        Boolean knownResult = code >= 0 ? dictionaryResults.get(code) : null;
+        if (knownResult != null) {
+            return knownResult;
+        }
         String cellValue = row.getCellData(columnName, table);
-        return compiledPattern.matcher(cellValue).find(); // use find() forsubstring matches
+        boolean result = compiledPattern.matcher(cellValue).find(); // use find() forsubstring matches
+        if (code >= 0) {
+            dictionaryResults.put(code, result);
+        }
+        return result;
     }
 }
 
@@ -1,7 +1,10 @@
 package edu.uob.Conditions;
 
 import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.ZoneMap;
 import edu.uob.Exceptions.CmdExecutionException;
+import java.util.BitSet;
+import java.util.List;
 
 public class OrCondition extends Condition {
 
@@ -18,4 +21,31 @@ public class OrCondition extends Condition {
         return leftCondition.evaluateCondition(row) || rightCondition.evaluateCondition(row);
     }
 
+    // the right side is only tried on rows the left didn't match, as evaluateCondition would
+    @Override
+    public BitSet findMatches(List<Row> rows, BitSet candidates) throws CmdExecutionException {
+        BitSet matches = leftCondition.findMatches(rows, candidates);
+        BitSet remaining = (BitSet) candidates.clone();
+        remaining.andNot(matches);
+        matches.or(rightCondition.findMatches(rows, remaining));
+        return matches;
+    }
+
+    // a match can come from either side, so both have to be answerable from an index
+    @Override
+    public BitSet findIndexedRows() {
+        BitSet left = leftCondition.findIndexedRows();
+        BitSet right = left != null ? rightCondition.findIndexedRows() : null;
+        if (right == null) {
+            return null;
+        }
+        left.or(right);
+        return left;
+    }
+
+    @Override
+    public boolean mightMatch(ZoneMap zoneMap, int block) {
+        return leftCondition.mightMatch(zoneMap, block) || rightCondition.mightMatch(zoneMap, block);
+    }
+
 }
@@ -6,12 +6,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 public class DBClient {
 
     private static final char END_OF_TRANSMISSION = 4;
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            runScript(Path.of(args[0]));
+            return;
+        }
         BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
         Socket socket = new Socket("localhost", 8888);
         BufferedReader socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
@@ -35,4 +42,53 @@ public class DBClient {
             incomingMessage = socketReader.readLine();
         }
     }
+
+    /**
+     * Non-interactive mode: every statement in the file is written back to back without waiting for
+     * replies, and the responses are read as they stream back. The server answers in order, so the
+     * n-th response belongs to the n-th statement.
+     */
+    private static void runScript(Path scriptPath) throws IOException {
+        List<String> statements = Files.readAllLines(scriptPath).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .toList();
+        try (Socket socket = new Socket("localhost", 8888);
+        BufferedReader socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        BufferedWriter socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+
+            // send from a separate thread so neither side can stall with a full socket buffer
+            Thread sender = new Thread(() -> {
+                try {
+                    for (String statement : statements) {
+                        socketWriter.write(statement + "\n");
+                    }
+                    socketWriter.flush();
+                } catch (IOException e) {
+                    System.err.println("Failed to send the script: " + e.getMessage());
+                }
+            });
+            sender.start();
+
+            int errorCount = 0;
+            for (String statement : statements) {
+                System.out.println("SQL:> " + statement);
+                String incomingMessage = socketReader.readLine();
+                if (incomingMessage == null) {
+                    throw new IOException("Server disconnected (end-of-stream)");
+                }
+                if (incomingMessage.startsWith("[ERROR]")) {
+                    errorCount++;
+                }
+                while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
+                    System.out.println(incomingMessage);
+                    incomingMessage = socketReader.readLine();
+                }
+            }
+            sender.join();
+            System.out.println(statements.size() + " statements run, " + errorCount + " returned an error.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
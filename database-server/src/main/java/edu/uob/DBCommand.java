@@ -1,9 +1,17 @@
 package edu.uob;
 
+import edu.uob.Concurrency.RunningStatement;
+import edu.uob.Conditions.Condition;
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.Row;
 import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Results.ResultSink;
+import edu.uob.Storage.StorageManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 public abstract class DBCommand {
 
@@ -15,6 +23,49 @@ public abstract class DBCommand {
 
     public abstract String executeQuery(DBServer server) throws CmdExecutionException, IOException;
 
+    // Commands that produce a table override this to hand their rows to the sink, everything else just
+    // returns its response as before
+    public String executeQuery(DBServer server, ResultSink sink) throws CmdExecutionException, IOException {
+        return executeQuery(server);
+    }
+
+    // refuses a value that doesn't fit the type CREATE TABLE declared for its column
+    protected static void checkDeclaredType(StorageManager storage, String databaseName, String tableName,
+                                            String columnName, String value) throws CmdExecutionException {
+        ColumnType declaredType = storage.getCatalog().getDeclaredType(databaseName, tableName, columnName);
+        if (declaredType != null && !declaredType.accepts(value)) {
+            throw new CmdExecutionException("The value " + value + " doesn't fit the column '" + columnName + "', which holds " + declaredType + " values.");
+        }
+    }
+
+    // conditions are tested a block of rows at a time so they can compare a whole column in one go
+    protected static final int SCAN_BLOCK_ROWS = 4096;
+
+    // the ids of the rows the condition matches, from an index if it can say which rows to look at and
+    // otherwise checking for cancellation between blocks
+    protected static ArrayList<String> findMatchingIds(RunningStatement statement, Condition condition, List<Row> rows)
+            throws CmdExecutionException {
+        ArrayList<String> matchingIds = new ArrayList<>();
+        BitSet indexedRows = condition.findIndexedRows();
+        if (indexedRows != null) {
+            BitSet matches = condition.findMatches(rows, indexedRows);
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                matchingIds.add(rows.get(i).getCellData(0));
+            }
+            return matchingIds;
+        }
+        for (int blockStart = 0; blockStart < rows.size(); blockStart += SCAN_BLOCK_ROWS) {
+            statement.checkCancelledNow();
+            BitSet block = new BitSet();
+            block.set(blockStart, Math.min(rows.size(), blockStart + SCAN_BLOCK_ROWS));
+            BitSet matches = condition.findMatches(rows, block);
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                matchingIds.add(rows.get(i).getCellData(0));
+            }
+        }
+        return matchingIds;
+    }
+
 
 }
 
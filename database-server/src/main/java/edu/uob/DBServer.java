@@ -1,19 +1,42 @@
 package edu.uob;
 
+import edu.uob.Concurrency.ProcessList;
+import edu.uob.Concurrency.RunningStatement;
+import edu.uob.Concurrency.StatementLocks;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.Exceptions.ParseException;
+import edu.uob.Logging.QueryLog;
+import edu.uob.Logging.QueryTimings;
+import edu.uob.Logging.TimedResultSink;
+import edu.uob.Networking.BinaryProtocol;
+import edu.uob.Networking.BinaryResultSink;
+import edu.uob.Networking.NioServer;
+import edu.uob.Parsing.BoundQuery;
+import edu.uob.Parsing.Lexer;
 import edu.uob.Parsing.Parser;
+import edu.uob.Parsing.Token;
+import edu.uob.Results.ResultSink;
+import edu.uob.Results.StreamingTextSink;
+import edu.uob.Results.TextResultSink;
+import edu.uob.Storage.StorageManager;
+import edu.uob.Storage.TableCache;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** This class implements the DB server. */
 public class DBServer {
@@ -25,19 +48,65 @@ public class DBServer {
         return this.storageFolderPath;
     }
 
-    private String currentDatabase;
+    private final AtomicLong nextSessionId = new AtomicLong(1);
+
+    // used by callers of handleCommand(String) that don't have a connection of their own
+    private final Session defaultSession = new Session(0, "local");
+
+    private final ThreadLocal<Session> boundSession = new ThreadLocal<>();
+
+
+    private final ProcessList processList = new ProcessList();
+
+    private final QueryLog queryLog;
+
+    // shared with any other server using the same folder, and created (replaying the log) by the first one
+    private final StorageManager storage;
+
+    public StorageManager getStorage() {
+        return storage;
+    }
+
+    public TableCache getTableCache() {
+        return storage.getTableCache();
+    }
+
+    public ProcessList getProcessList() {
+        return processList;
+    }
+
+    public Session currentSession() {
+        Session session = boundSession.get();
+        return session != null ? session : defaultSession;
+    }
+
+    public Session openSession(String clientAddress) {
+        return new Session(nextSessionId.getAndIncrement(), clientAddress);
+    }
+
     public String getCurrentDatabase() {
-        return currentDatabase;
+        return currentSession().getCurrentDatabase();
+    }
+
+    /** The statement being run by the current thread, used by long loops to check if they should stop. */
+    public RunningStatement currentStatement() {
+        RunningStatement statement = currentSession().getActiveStatement();
+        return statement != null ? statement : RunningStatement.UNTRACKED;
     }
 
 
     public String updateCurrentDB(String newDBName) {
-        return this.currentDatabase = newDBName;
+        currentSession().setCurrentDatabase(newDBName);
+        return newDBName;
     }
 
     public static void main(String args[]) throws IOException {
         DBServer server = new DBServer();
-        server.blockingListenOn(8888);
+        if (args.length > 0 && args[0].equalsIgnoreCase("--nio")) {
+            new NioServer(server).listenOn(8888);
+        } else {
+            server.blockingListenOn(8888);
+        }
     }
 
     /**
@@ -51,6 +120,10 @@ public class DBServer {
         } catch(IOException ioe) {
             System.out.println("Can't seem to create database storage folder " + storageFolderPath);
         }
+        storage = StorageManager.forFolder(Paths.get(storageFolderPath));
+        // statements slower than db.slowQueryMillis are logged, along with db.queryLogSampleRate of the rest
+        queryLog = new QueryLog(Paths.get(storageFolderPath, "slow_queries.log"),
+                Long.getLong("db.slowQueryMillis", 200), Double.parseDouble(System.getProperty("db.queryLogSampleRate", "0")));
     }
 
     public Path getPathToDatabases() {
@@ -64,15 +137,93 @@ public class DBServer {
     * <p>This method handles all incoming DB commands and carries out the required actions.
     */
     public String handleCommand(String command) {
+        return handleCommand(command, currentSession());
+    }
+
+    /** Runs a command on behalf of the given session, so that USE only affects that connection. */
+    public String handleCommand(String command, Session session) {
+        TextResultSink resultText = new TextResultSink();
+        String response = handleCommand(command, session, resultText);
+        if (resultText.isEmpty() || !response.startsWith("[OK]")) {
+            return response;
+        }
+        return (response + "\n" + resultText).trim();
+    }
+
+    /**
+     * Runs a command, passing any result table to the sink as it is produced. Returns the status line,
+     * i.e. "[OK]" or "[ERROR] " followed by the reason.
+     */
+    public String handleCommand(String command, Session session, ResultSink sink) {
+        Session previousSession = boundSession.get();
+        boundSession.set(session);
+        RunningStatement statement = processList.start(session, command);
+        RunningStatement previousStatement = session.getActiveStatement();
+        session.setActiveStatement(statement);
+        String response = null;
         try {
-            Tokeniser tokeniser = new Tokeniser();
-            String[] initialTokens = tokeniser.tokenise(command);
-            ArrayList<String> consolidatedTokens = tokeniser.connectStringLiterals(new ArrayList<>(Arrays.asList(initialTokens)));
-            ArrayList<String> finalTokens = tokeniser.combineEqualityTokens(consolidatedTokens);
-            String[] tokens = finalTokens.toArray(new String[0]);
-            Parser parser = new Parser(this, tokens);
-            DBCommand query = parser.parseTokens(tokens);
-            return query.executeQuery(this);
+            response = runStatement(command, statement, new TimedResultSink(sink, statement.getTimings()));
+            return response;
+        } finally {
+            session.setActiveStatement(previousStatement);
+            processList.finish(statement);
+            queryLog.record(statement, response);
+            if (previousSession == null) {
+                boundSession.remove();
+            } else {
+                boundSession.set(previousSession);
+            }
+        }
+    }
+
+    private String runStatement(String command, RunningStatement statement, ResultSink sink) {
+        QueryTimings timings = statement.getTimings();
+        try {
+            long phaseStart = System.nanoTime();
+            Token[] lexedTokens = new Lexer().lex(command);
+            String[] tokens;
+            BoundQuery preparedStatement = null;
+            if (lexedTokens.length > 0 && lexedTokens[0].getText().equalsIgnoreCase("EXECUTE")) {
+                // the prepared statement was parsed at PREPARE, its bound tokens are only needed for locking
+                preparedStatement = new Parser(this, lexedTokens).parseExecute(statement.getSession());
+                tokens = preparedStatement.getTokens();
+            } else {
+                tokens = Token.textOf(lexedTokens);
+            }
+            timings.recordTokenise(System.nanoTime() - phaseStart);
+
+            statement.setState("waiting for locks");
+            phaseStart = System.nanoTime();
+            StatementLocks locks = storage.getLockManager().lockStatement(tokens, getCurrentDatabase(), statement);
+            timings.recordLockWait(System.nanoTime() - phaseStart);
+            boolean succeeded = false;
+            try {
+                statement.setState("running");
+                // table loads and result writing are timed on their own, so they're left out of these two
+                long loadSoFar = timings.getLoadNanos();
+                phaseStart = System.nanoTime();
+                DBCommand query = preparedStatement != null ? preparedStatement.toCommand(this)
+                        : new Parser(this, lexedTokens).parseTokens(tokens);
+                timings.recordParse(System.nanoTime() - phaseStart - (timings.getLoadNanos() - loadSoFar));
+
+                loadSoFar = timings.getLoadNanos();
+                long serialisedSoFar = timings.getSerialiseNanos();
+                phaseStart = System.nanoTime();
+                String response = query.executeQuery(this, sink);
+                timings.recordExecute(System.nanoTime() - phaseStart - (timings.getLoadNanos() - loadSoFar)
+                        - (timings.getSerialiseNanos() - serialisedSoFar));
+                succeeded = true;
+                return response;
+            } finally {
+                if (!succeeded) {
+                    // a clean cached copy could have been changed by a write that failed part way, dirty ones
+                    // are only changed once their log record is durable so they have to stay
+                    for (String tableName : locks.getWrittenTables()) {
+                        storage.getTableCache().invalidateIfClean(getCurrentDatabase(), tableName);
+                    }
+                }
+                locks.release();
+            }
         } catch (ParseException e) {
             return "[ERROR] " + e.getMessage();
         } catch (CmdExecutionException e) {
@@ -86,7 +237,7 @@ public class DBServer {
 
     private static final String[] reservedKeywords = { "SELECT", "FROM", "WHERE", "INSERT", "INTO", "VALUES", "DELETE",
             "CREATE", "TABLE", "DATABASE", "USE", "DROP", "AND", "OR", "LIKE",
-            "TRUE", "FALSE", "NOT", "JOIN", "ON", "UPDATE", "SET", "ALTER" };
+            "TRUE", "FALSE", "NOT", "JOIN", "ON", "UPDATE", "SET", "ALTER", "SHOW", "KILL", "PREPARE", "EXECUTE" };
 
 
     public boolean isReservedKeyword(String token) {
@@ -102,8 +253,7 @@ public class DBServer {
 
 
     public boolean databaseExists(String databaseName) {
-        Path databasePath = Paths.get(storageFolderPath, databaseName.toLowerCase());
-        return Files.isDirectory(databasePath);
+        return storage.getCatalog().databaseExists(databaseName);
     }
 
 
@@ -129,9 +279,7 @@ public class DBServer {
         if (!databaseExists(databaseName)) {
             throw new CmdExecutionException("The database name provided does not exist.");
         }
-        Path tablePath = Paths.get(storageFolderPath, databaseName.toLowerCase(), tableName.toLowerCase() + ".tab");
-
-        return Files.exists(tablePath);
+        return storage.getCatalog().tableExists(databaseName, tableName);
     }
 
 
@@ -139,37 +287,101 @@ public class DBServer {
     //  === Methods below handle networking aspects of the project - you will not need to change these ! ===
 
     public void blockingListenOn(int portNumber) throws IOException {
+        ExecutorService connectionExecutor = newConnectionExecutor();
         try (ServerSocket s = new ServerSocket(portNumber)) {
             System.out.println("Server listening on port " + portNumber);
             while (!Thread.interrupted()) {
                 try {
-                    blockingHandleConnection(s);
+                    Socket clientSocket = s.accept();
+                    connectionExecutor.execute(() -> blockingHandleConnection(clientSocket));
                 } catch (IOException e) {
                     System.err.println("Server encountered a non-fatal IO error:");
                     e.printStackTrace();
                     System.err.println("Continuing...");
                 }
             }
+        } finally {
+            connectionExecutor.shutdownNow();
         }
     }
 
-    private void blockingHandleConnection(ServerSocket serverSocket) throws IOException {
-        try (Socket s = serverSocket.accept();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream()));
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))) {
+    // Each connection gets its own thread - virtual threads when the runtime has them (Java 21+),
+    // otherwise a cached pool of platform threads
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
 
-            System.out.println("Connection established: " + serverSocket.getInetAddress());
-            while (!Thread.interrupted()) {
-                String incomingCommand = reader.readLine();
-                System.out.println("Received message: " + incomingCommand);
-                String result = handleCommand(incomingCommand);
-                writer.write(result);
-                writer.write("\n" + END_OF_TRANSMISSION + "\n");
+    private void blockingHandleConnection(Socket clientSocket) {
+        Session session = openSession(String.valueOf(clientSocket.getRemoteSocketAddress()));
+        try (Socket s = clientSocket;
+        BufferedInputStream input = new BufferedInputStream(s.getInputStream());
+        BufferedOutputStream output = new BufferedOutputStream(s.getOutputStream(), StreamingTextSink.CHUNK_SIZE)) {
+
+            System.out.println("Connection established: " + session.getClientAddress());
+            // Binary clients announce themselves with a magic byte, anything else is the text protocol
+            input.mark(1);
+            if (input.read() == BinaryProtocol.MAGIC) {
+                blockingHandleBinaryConnection(session, input, output);
+            } else {
+                input.reset();
+                blockingHandleTextConnection(session, input, output);
+            }
+        } catch (IOException e) {
+            System.err.println("Connection " + session.getClientAddress() + " closed with an IO error: " + e.getMessage());
+        }
+    }
+
+    private void blockingHandleTextConnection(Session session, BufferedInputStream input, BufferedOutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output), StreamingTextSink.CHUNK_SIZE);
+        while (!Thread.interrupted()) {
+            String incomingCommand = reader.readLine();
+            if (incomingCommand == null) {
+                break; // client closed the connection
+            }
+            // result rows are written out in chunks as the query produces them, not built up in memory
+            StreamingTextSink sink = new StreamingTextSink(writer);
+            String status = handleCommand(incomingCommand, session, sink);
+            sink.finish(status);
+            writer.write(END_OF_TRANSMISSION + "\n");
+            // if the client has pipelined more commands, send their responses back as one batch
+            if (!reader.ready()) {
                 writer.flush();
             }
         }
+        writer.flush();
     }
 
+    private void blockingHandleBinaryConnection(Session session, BufferedInputStream input, BufferedOutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        DataOutputStream out = new DataOutputStream(output);
+        int version = in.read();
+        if (version != BinaryProtocol.VERSION) {
+            BinaryProtocol.writeStatus(out, "[ERROR] Unsupported protocol version " + version + ".");
+            out.flush();
+            return;
+        }
+        BinaryProtocol.writeStatus(out, "[OK] binary protocol version " + BinaryProtocol.VERSION);
+        out.flush();
+        BinaryResultSink sink = new BinaryResultSink(out);
+        while (!Thread.interrupted()) {
+            String incomingCommand = BinaryProtocol.readQuery(in);
+            if (incomingCommand == null) {
+                break;
+            }
+            String status = handleCommand(incomingCommand, session, sink);
+            BinaryProtocol.writeStatus(out, status);
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
 
-}
 
+}
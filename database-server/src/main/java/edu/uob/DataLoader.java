@@ -1,14 +1,14 @@
 package edu.uob;
 
-import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.HashIndex;
 import edu.uob.DataStructure.Table;
+import edu.uob.Storage.StorageManager;
+import edu.uob.Storage.TableCache;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.io.BufferedReader;
+import java.util.Map;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.Files;
-import java.util.Arrays;
 
 
 public class DataLoader {
@@ -21,34 +21,76 @@ public class DataLoader {
 
 
     public Table readTableData(String databaseName, String tableName) throws IOException {
-        String storageFolderPath = server.getStorageFolderPath();
-        Path tablePath = Paths.get(storageFolderPath, databaseName.toLowerCase(), tableName.toLowerCase() + ".tab");
-        if (!Files.exists(tablePath)) {
-            throw new IOException("Couldn't find a path to the table.");
+        TableCache tableCache = server.getTableCache();
+        Table cachedTable = tableCache.get(databaseName, tableName);
+        if (cachedTable != null) {
+            return cachedTable;
         }
-        Table table;
-        try (BufferedReader reader = Files.newBufferedReader(tablePath)) {
-            String columnHeaders = reader.readLine();
-            if (columnHeaders != null && columnHeaders.contains("\t")) { // check headers exist
-                ArrayList<String> columnNames = new ArrayList<>(Arrays.asList(columnHeaders.split("\t")));
-                table = new Table(tableName, columnNames);
-            } else {
-                table = new Table(tableName);
-            }
-            String rowData;
-            while ((rowData = reader.readLine()) != null) {
-                ArrayList<String> cells = new ArrayList<>(Arrays.asList(rowData.split("\t")));
-                int rowID = Integer.parseInt(cells.get(0));
-                cells.remove(0); // Remove row ID since already extracted
-                Row row = new Row(rowID, cells);
-                table.insertRow(row);
+        long loadStart = System.nanoTime();
+        try {
+            Table table = readTableFile(databaseName, tableName);
+            tableCache.put(databaseName, table);
+            return table;
+        } finally {
+            server.currentStatement().getTimings().addLoad(System.nanoTime() - loadStart);
+        }
+    }
+
+
+    // tables at least this large are mapped by readTableForScan rather than read in and cached
+    private static final long MAPPED_SCAN_BYTES = Long.getLong("db.mappedScanBytes", 8L * 1024 * 1024);
+
+    /**
+     * For statements that only read the table. A large table that isn't cached is mapped instead of being
+     * loaded, so only the cells the query actually looks at get decoded. Mapped tables aren't cached, and
+     * don't have indexes, so a table with an index is always read in for its lookups to use.
+     */
+    public Table readTableForScan(String databaseName, String tableName) throws IOException {
+        Table cachedTable = server.getTableCache().get(databaseName, tableName);
+        if (cachedTable != null) {
+            return cachedTable;
+        }
+        StorageManager storage = server.getStorage();
+        Path tablePath = storage.tablePath(databaseName, tableName);
+        boolean indexed = !storage.getCatalog().getIndexes(databaseName, tableName).isEmpty();
+        if (!indexed && Files.exists(tablePath) && Files.size(tablePath) >= MAPPED_SCAN_BYTES) {
+            long loadStart = System.nanoTime();
+            try {
+                Table mappedTable = storage.formatFor(databaseName).map(tablePath, tableName);
+                if (mappedTable != null) {
+                    return mappedTable;
+                }
+            } finally {
+                server.currentStatement().getTimings().addLoad(System.nanoTime() - loadStart);
             }
-        } catch (IOException e) {
-            throw new IOException("Failed to read the table file.");
         }
-        return table;
+        return readTableData(databaseName, tableName);
     }
 
 
+    /** Reads just the column names of a table, for commands that don't need the rows. */
+    public ArrayList<String> readColumnNames(String databaseName, String tableName) throws IOException {
+        StorageManager storage = server.getStorage();
+        return storage.formatFor(databaseName).readColumnNames(storage.tablePath(databaseName, tableName));
+    }
+
+
+    // tables at least this large are read into buffers off the heap, so the garbage collector doesn't have
+    // to trace every cell; the buffers come out of the JVM's direct memory limit (-XX:MaxDirectMemorySize)
+    private static final long OFF_HEAP_TABLE_BYTES = Long.getLong("db.offHeapTableBytes", 64L * 1024 * 1024);
+
+    private Table readTableFile(String databaseName, String tableName) throws IOException {
+        StorageManager storage = server.getStorage();
+        Path tablePath = storage.tablePath(databaseName, tableName);
+        if (!Files.exists(tablePath)) {
+            throw new IOException("Couldn't find a path to the table.");
+        }
+        boolean offHeap = Files.size(tablePath) >= OFF_HEAP_TABLE_BYTES;
+        Table table = storage.formatFor(databaseName).read(tablePath, tableName, offHeap);
+        for (Map.Entry<String, String> index : storage.getCatalog().getIndexes(databaseName, tableName).entrySet()) {
+            table.addIndex(new HashIndex(index.getKey(), index.getValue())); // indexes are only kept in memory
+        }
+        return table;
+    }
 
 }
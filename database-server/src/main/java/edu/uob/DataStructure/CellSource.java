@@ -0,0 +1,16 @@
+package edu.uob.DataStructure;
+
+/** Somewhere the cells of a table's rows can be read from one at a time, rather than all being held as strings. */
+public interface CellSource {
+
+    /** The text of one cell, or null if the row doesn't have that many cells. */
+    String readCell(int rowIndex, int columnIndex);
+
+    int countCells(int rowIndex);
+
+    /** The cell's code in its column's dictionary, or -1 if the column isn't dictionary encoded. */
+    default int readCode(int rowIndex, int columnIndex) {
+        return -1;
+    }
+
+}
@@ -0,0 +1,33 @@
+package edu.uob.DataStructure;
+
+import java.util.HashMap;
+
+/**
+ * Hands out one shared String for each distinct value of a column, so a column with few distinct values
+ * (statuses, countries, flags) holds each of them once however many rows it has. A column with more
+ * distinct values than a dictionary is worth it for is left as it was.
+ */
+public final class ColumnDictionary {
+
+    public static final int MAX_ENTRIES = 4096;
+
+    private final HashMap<String, String> entries = new HashMap<>();
+    private boolean abandoned = false;
+
+    /** The dictionary's copy of the value, or the value itself once the column has too many distinct values. */
+    public String share(String value) {
+        if (abandoned) {
+            return value;
+        }
+        String shared = entries.putIfAbsent(value, value);
+        if (shared != null) {
+            return shared;
+        }
+        if (entries.size() > MAX_ENTRIES) {
+            abandoned = true;
+            entries.clear();
+        }
+        return value;
+    }
+
+}
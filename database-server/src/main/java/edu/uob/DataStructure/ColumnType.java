@@ -0,0 +1,77 @@
+package edu.uob.DataStructure;
+
+import edu.uob.Parsing.Token;
+
+/**
+ * The type of a column's values. A column's type is either declared in CREATE TABLE, in which case values
+ * of other types are refused, or inferred from the values inserted into it, widening as they arrive.
+ * Blank cells fit every type.
+ */
+public enum ColumnType {
+    INT,
+    FLOAT,
+    BOOL,
+    TEXT;
+
+    private static final String BLANK = " ";
+
+    public static ColumnType forName(String name) {
+        for (ColumnType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /** The narrowest type the value fits, or null for a blank cell. */
+    public static ColumnType of(String value) {
+        if (value.equals(BLANK)) {
+            return null;
+        }
+        if (Token.isInteger(value) && fitsInt(value)) {
+            return INT;
+        }
+        if (Token.isFloat(value)) {
+            return FLOAT;
+        }
+        if (value.equalsIgnoreCase("TRUE") || value.equalsIgnoreCase("FALSE")) {
+            return BOOL;
+        }
+        return TEXT;
+    }
+
+    /** The narrowest type holding values of both, where either may be null for no values yet. */
+    public static ColumnType widen(ColumnType first, ColumnType second) {
+        if (first == null || first == second) {
+            return second != null ? second : first;
+        }
+        if (second == null) {
+            return first;
+        }
+        if ((first == INT && second == FLOAT) || (first == FLOAT && second == INT)) {
+            return FLOAT;
+        }
+        return TEXT;
+    }
+
+    public boolean accepts(String value) {
+        ColumnType valueType = of(value);
+        return valueType == null || widen(this, valueType) == this;
+    }
+
+    // compares the digits rather than catching Integer.parseInt's overflow exception
+    static boolean fitsInt(String value) {
+        boolean negative = value.charAt(0) == '-';
+        int start = negative || value.charAt(0) == '+' ? 1 : 0;
+        while (start < value.length() - 1 && value.charAt(start) == '0') {
+            start++;
+        }
+        String digits = value.substring(start);
+        if (digits.length() != 10) {
+            return digits.length() < 10;
+        }
+        return digits.compareTo(negative ? "2147483648" : "2147483647") <= 0;
+    }
+
+}
@@ -0,0 +1,154 @@
+package edu.uob.DataStructure;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * One column of a table parsed into a primitive array, so a condition can compare a whole column without
+ * parsing a cell per row. INT columns are held as ints, FLOAT columns (which may also hold integers) as
+ * doubles; BOOL and TEXT columns aren't parsed and only record which cells are blank. The table keeps it
+ * up to date as rows change, widening the type when a cell that doesn't fit arrives. It never narrows, so
+ * a column that has held text stays unparsed until the table is next read in.
+ */
+public final class ColumnVector {
+
+    private ColumnType type; // null until the column has a cell that isn't blank
+    private int[] ints;
+    private double[] doubles;
+    private final BitSet nulls; // blank or missing cells
+    private int rowCount;
+
+    private ColumnVector(ColumnType type, int[] ints, double[] doubles, BitSet nulls, int rowCount) {
+        this.type = type;
+        this.ints = ints;
+        this.doubles = doubles;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Works out the column's type from its cells and parses them into the matching array, where cells
+     * gives the column's cell in a row (null if the row is too short to have one).
+     */
+    public static ColumnVector build(int rowCount, IntFunction<String> cells) {
+        BitSet nulls = new BitSet(rowCount);
+        ColumnType type = null;
+        for (int i = 0; i < rowCount; i++) {
+            String cell = cells.apply(i);
+            ColumnType cellType = cell != null ? ColumnType.of(cell) : null;
+            if (cellType == null) {
+                nulls.set(i);
+            } else {
+                type = ColumnType.widen(type, cellType);
+            }
+        }
+        if (type != ColumnType.INT && type != ColumnType.FLOAT) {
+            return new ColumnVector(type, null, null, nulls, rowCount);
+        }
+        int[] ints = type == ColumnType.INT ? new int[rowCount] : null;
+        double[] doubles = type == ColumnType.FLOAT ? new double[rowCount] : null;
+        for (int i = nulls.nextClearBit(0); i < rowCount; i = nulls.nextClearBit(i + 1)) {
+            String cell = cells.apply(i);
+            if (ints != null) {
+                ints[i] = Integer.parseInt(cell);
+            } else {
+                doubles[i] = Double.parseDouble(cell);
+            }
+        }
+        return new ColumnVector(type, ints, doubles, nulls, rowCount);
+    }
+
+    public ColumnType getType() {
+        return type != null ? type : ColumnType.TEXT;
+    }
+
+    public boolean isNumeric() {
+        return type == ColumnType.INT || type == ColumnType.FLOAT;
+    }
+
+    public boolean isNull(int rowIndex) {
+        return nulls.get(rowIndex);
+    }
+
+    public int getInt(int rowIndex) {
+        return ints[rowIndex];
+    }
+
+    /** The cell as a double, for INT and FLOAT columns. */
+    public double getDouble(int rowIndex) {
+        return ints != null ? ints[rowIndex] : doubles[rowIndex];
+    }
+
+    /** Puts a row's cell in place, or adds it if the row is the one just after the last (null if it's missing). */
+    public void set(int rowIndex, String cell) {
+        if (rowIndex == rowCount) {
+            rowCount++;
+            int capacity = ints != null ? ints.length : doubles != null ? doubles.length : rowCount;
+            if (rowCount > capacity) {
+                grow(Math.max(rowCount, capacity * 2));
+            }
+        }
+        ColumnType cellType = cell != null ? ColumnType.of(cell) : null;
+        if (cellType == null) {
+            nulls.set(rowIndex);
+            return;
+        }
+        nulls.clear(rowIndex);
+        ColumnType widened = ColumnType.widen(type, cellType);
+        if (widened != type) {
+            changeType(widened);
+        }
+        if (ints != null) {
+            ints[rowIndex] = Integer.parseInt(cell);
+        } else if (doubles != null) {
+            doubles[rowIndex] = Double.parseDouble(cell);
+        }
+    }
+
+    /** Closes up the gaps left by the removed rows, the same way the table does. */
+    public void removeRows(BitSet removedRows) {
+        int kept = 0;
+        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+            if (removedRows.get(rowIndex)) {
+                continue;
+            }
+            if (ints != null) {
+                ints[kept] = ints[rowIndex];
+            } else if (doubles != null) {
+                doubles[kept] = doubles[rowIndex];
+            }
+            nulls.set(kept, nulls.get(rowIndex));
+            kept++;
+        }
+        nulls.clear(kept, rowCount);
+        rowCount = kept;
+    }
+
+    private void grow(int capacity) {
+        if (ints != null) {
+            ints = Arrays.copyOf(ints, capacity);
+        } else if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, capacity);
+        }
+    }
+
+    // the cells so far all fit the new type, so INT to FLOAT only has to convert them
+    private void changeType(ColumnType widened) {
+        int capacity = Math.max(rowCount, 16);
+        if (widened == ColumnType.FLOAT) {
+            doubles = new double[ints != null ? ints.length : capacity];
+            for (int i = 0; ints != null && i < rowCount; i++) {
+                doubles[i] = ints[i];
+            }
+            ints = null;
+        } else if (widened == ColumnType.INT) {
+            ints = new int[capacity];
+        } else {
+            ints = null;
+            doubles = null;
+        }
+        type = widened;
+    }
+
+}
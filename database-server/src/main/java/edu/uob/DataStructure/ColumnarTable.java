@@ -0,0 +1,207 @@
+package edu.uob.DataStructure;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A table held as one array per column instead of a list of rows, so a scan of one column walks a single
+ * contiguous array and there's no list or id string per row. getRows() hands out LazyRow views over the
+ * arrays so everything written against rows keeps working, but the views are read-only and changes have
+ * to go through the table's own methods.
+ */
+public class ColumnarTable extends Table {
+
+    private final Columns columns; // shared with the tables withName makes
+
+    private final List<Row> rowViews = new AbstractList<>() {
+        @Override
+        public Row get(int index) {
+            Objects.checkIndex(index, columns.rowCount);
+            return new LazyRow(columns, index);
+        }
+
+        @Override
+        public int size() {
+            return columns.rowCount;
+        }
+    };
+
+    public ColumnarTable(String tableName, ArrayList<String> columnNames) {
+        super(tableName, columnNames);
+        this.columns = new Columns();
+    }
+
+    public ColumnarTable(String tableName) {
+        super(tableName);
+        this.columns = new Columns();
+    }
+
+    private ColumnarTable(String tableName, ColumnarTable original) {
+        super(tableName, original);
+        this.columns = original.columns;
+    }
+
+    @Override
+    public Table withName(String tableName) {
+        return new ColumnarTable(tableName, this);
+    }
+
+    @Override
+    public List<Row> getRows() {
+        return rowViews;
+    }
+
+    @Override
+    protected ColumnVector buildColumnVector(int columnIndex) {
+        return ColumnVector.build(columns.rowCount, rowIndex -> columns.readCell(rowIndex, columnIndex));
+    }
+
+    @Override
+    protected int getRowId(int rowIndex) {
+        return columns.ids[rowIndex];
+    }
+
+    @Override
+    protected void appendRow(Row newRow) {
+        int rowIndex = columns.addRow(Integer.parseInt(newRow.getCellData(0)));
+        int cellCount = newRow.getCellCount();
+        for (int i = 1; i < cellCount; i++) {
+            columns.column(i)[rowIndex] = newRow.getCellData(i);
+        }
+    }
+
+    @Override
+    protected void putRow(int rowIndex, Row row) {
+        Objects.checkIndex(rowIndex, columns.rowCount);
+        columns.ids[rowIndex] = Integer.parseInt(row.getCellData(0));
+        int cellCount = row.getCellCount();
+        for (int i = 1; i < columns.cells.size() || i < cellCount; i++) {
+            columns.column(i)[rowIndex] = i < cellCount ? row.getCellData(i) : null;
+        }
+    }
+
+    @Override
+    protected void writeCell(int rowIndex, int columnIndex, String value) {
+        Objects.checkIndex(rowIndex, columns.rowCount);
+        for (int i = columns.countCells(rowIndex); i < columnIndex; i++) {
+            columns.column(i)[rowIndex] = " ";
+        }
+        columns.column(columnIndex)[rowIndex] = value;
+    }
+
+    @Override
+    protected void deleteRows(Collection<String> rowIds) {
+        HashSet<Integer> removedIds = new HashSet<>();
+        for (String rowId : rowIds) {
+            removedIds.add(Integer.parseInt(rowId));
+        }
+        int kept = 0;
+        for (int rowIndex = 0; rowIndex < columns.rowCount; rowIndex++) {
+            if (removedIds.contains(columns.ids[rowIndex])) {
+                continue;
+            }
+            columns.ids[kept] = columns.ids[rowIndex];
+            for (String[] column : columns.cells) {
+                if (column != null) {
+                    column[kept] = column[rowIndex];
+                }
+            }
+            kept++;
+        }
+        for (String[] column : columns.cells) {
+            if (column != null) {
+                Arrays.fill(column, kept, columns.rowCount, null);
+            }
+        }
+        columns.rowCount = kept;
+    }
+
+    // the blank goes at the end of each row's cells, as it does for a list of rows
+    @Override
+    public void initialiseEmptyColumn() {
+        for (int rowIndex = 0; rowIndex < columns.rowCount; rowIndex++) {
+            columns.column(columns.countCells(rowIndex))[rowIndex] = " ";
+        }
+        markChanged();
+    }
+
+    @Override
+    public void removeColumnFromRows(int index) {
+        if (index > 0 && index < columns.cells.size()) {
+            columns.cells.remove(index);
+        }
+        markChanged();
+    }
+
+    @Override
+    public void shareRepeatedValues() {
+        for (String[] column : columns.cells) {
+            if (column == null) {
+                continue;
+            }
+            ColumnDictionary dictionary = new ColumnDictionary();
+            for (int rowIndex = 0; rowIndex < columns.rowCount; rowIndex++) {
+                if (column[rowIndex] != null) {
+                    column[rowIndex] = dictionary.share(column[rowIndex]);
+                }
+            }
+        }
+    }
+
+    // ids are held as ints and every other column as an array of cells, null where a row is too short
+    private static final class Columns implements CellSource {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int rowCount = 0;
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private final ArrayList<String[]> cells = new ArrayList<>();
+
+        private Columns() {
+            cells.add(null); // the ids are in their own array
+        }
+
+        private int addRow(int id) {
+            if (rowCount == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                for (int i = 1; i < cells.size(); i++) {
+                    cells.set(i, Arrays.copyOf(cells.get(i), capacity));
+                }
+            }
+            ids[rowCount] = id;
+            return rowCount++;
+        }
+
+        // the cells of a column other than the ids, adding empty columns up to it if rows haven't reached it yet
+        private String[] column(int columnIndex) {
+            while (cells.size() <= columnIndex) {
+                cells.add(new String[ids.length]);
+            }
+            return cells.get(columnIndex);
+        }
+
+        @Override
+        public String readCell(int rowIndex, int columnIndex) {
+            if (columnIndex == 0) {
+                return Integer.toString(ids[rowIndex]);
+            }
+            return columnIndex < cells.size() ? cells.get(columnIndex)[rowIndex] : null;
+        }
+
+        @Override
+        public int countCells(int rowIndex) {
+            int cellCount = 1;
+            while (cellCount < cells.size() && cells.get(cellCount)[rowIndex] != null) {
+                cellCount++;
+            }
+            return cellCount;
+        }
+    }
+
+}
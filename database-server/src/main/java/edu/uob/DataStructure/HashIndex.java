@@ -0,0 +1,183 @@
+package edu.uob.DataStructure;
+
+import edu.uob.Parsing.Token;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * An index CREATE INDEX puts on a column, from each value to the ids of the rows holding it, so
+ * EqualsCondition can go straight to the rows that might match instead of scanning the column. The
+ * table keeps it up to date as rows change. EqualsCondition compares numbers give or take a small
+ * tolerance (5, 05 and 5.0000001 are all equal), so numbers are kept under the narrow range of values
+ * they fall in rather than their text, and a lookup returns everything in the ranges its value could be
+ * equal to; the condition still checks each of those rows.
+ */
+public final class HashIndex {
+
+    // EqualsCondition's float tolerance, and a range twice as wide so an equal number is at most one range away
+    private static final double TOLERANCE = 0.000001;
+    private static final double RANGE_WIDTH = 0.00001;
+
+    private final String name;
+    private final String columnName;
+    private final HashMap<Object, Object> rowIds = new HashMap<>(); // one id as an Integer, more as a RowIds
+
+    public HashIndex(String name, String columnName) {
+        this.name = name;
+        this.columnName = columnName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public void add(String cell, int rowId) {
+        Object key = keyFor(cell);
+        Object existing = rowIds.get(key);
+        if (existing == null) {
+            rowIds.put(key, rowId);
+        } else if (existing instanceof RowIds ids) {
+            ids.add(rowId);
+        } else if ((Integer) existing != rowId) {
+            RowIds ids = new RowIds();
+            ids.add((Integer) existing);
+            ids.add(rowId);
+            rowIds.put(key, ids);
+        }
+    }
+
+    public void remove(String cell, int rowId) {
+        Object key = keyFor(cell);
+        Object existing = rowIds.get(key);
+        if (existing instanceof RowIds ids) {
+            ids.remove(rowId);
+            if (ids.size == 0) {
+                rowIds.remove(key);
+            }
+        } else if (existing != null && (Integer) existing == rowId) {
+            rowIds.remove(key);
+        }
+    }
+
+    /** Passes on the id of every row whose cell could equal the value, in no particular order. */
+    public void forEachCandidate(String value, IntConsumer action) {
+        Double number = parseNumber(value);
+        if (number == null) {
+            forEachRowId(value, action);
+            return;
+        }
+        long lowest = rangeOf(number - TOLERANCE);
+        long highest = rangeOf(number + TOLERANCE);
+        for (long range = lowest; ; range++) { // checked at the end, so the largest range can't overflow
+            forEachRowId(range, action);
+            if (range >= highest) {
+                return;
+            }
+        }
+    }
+
+    private void forEachRowId(Object key, IntConsumer action) {
+        Object ids = rowIds.get(key);
+        if (ids instanceof RowIds set) {
+            set.forEach(action);
+        } else if (ids != null) {
+            action.accept((Integer) ids);
+        }
+    }
+
+    private static Object keyFor(String cell) {
+        Double number = parseNumber(cell);
+        return number != null ? (Object) rangeOf(number) : cell;
+    }
+
+    private static long rangeOf(double number) {
+        return (long) Math.floor(number / RANGE_WIDTH);
+    }
+
+    // whatever EqualsCondition would compare as a number, worked out from the characters so a text cell
+    // doesn't cost a thrown exception on every add, remove and lookup
+    private static Double parseNumber(String value) {
+        if (!Token.isInteger(value) && !Token.isFloat(value)) {
+            return null;
+        }
+        return Double.parseDouble(value);
+    }
+
+    // the ids of a value held by more than one row, a set of ints that's quick to take one out of
+    private static final class RowIds {
+
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private int[] slots = emptySlots(4);
+        private int size = 0;
+
+        private void add(int rowId) {
+            if ((size + 1) * 2 > slots.length) {
+                int[] oldSlots = slots;
+                slots = emptySlots(oldSlots.length * 2);
+                size = 0;
+                for (int oldId : oldSlots) {
+                    if (oldId != EMPTY) {
+                        add(oldId);
+                    }
+                }
+            }
+            int mask = slots.length - 1;
+            int slot = slotFor(rowId, mask);
+            while (slots[slot] != EMPTY) {
+                if (slots[slot] == rowId) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = rowId;
+            size++;
+        }
+
+        // the ids after the gap are moved back into it where that's still on their way from their own slot
+        private void remove(int rowId) {
+            int mask = slots.length - 1;
+            int gap = slotFor(rowId, mask);
+            while (slots[gap] != rowId) {
+                if (slots[gap] == EMPTY) {
+                    return;
+                }
+                gap = (gap + 1) & mask;
+            }
+            for (int next = (gap + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+                int home = slotFor(slots[next], mask);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    slots[gap] = slots[next];
+                    gap = next;
+                }
+            }
+            slots[gap] = EMPTY;
+            size--;
+        }
+
+        private void forEach(IntConsumer action) {
+            for (int rowId : slots) {
+                if (rowId != EMPTY) {
+                    action.accept(rowId);
+                }
+            }
+        }
+
+        private static int[] emptySlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+
+        private static int slotFor(int rowId, int mask) {
+            int hash = rowId * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package edu.uob.DataStructure;
+
+import edu.uob.Exceptions.CmdExecutionException;
+import java.util.ArrayList;
+
+/**
+ * A row that decodes its cells from a CellSource only when a condition or projection asks for them.
+ * These rows are read-only, changes made to the list getCells() returns aren't kept.
+ */
+public class LazyRow extends Row {
+
+    private final CellSource source;
+    private final int rowIndex;
+
+    public LazyRow(CellSource source, int rowIndex) {
+        this.source = source;
+        this.rowIndex = rowIndex;
+    }
+
+    @Override
+    public String getCellData(int index) {
+        String cell = source.readCell(rowIndex, index);
+        if (cell == null) {
+            throw new IndexOutOfBoundsException("Row " + rowIndex + " has no cell " + index);
+        }
+        return cell;
+    }
+
+    @Override
+    public String findCellData(int index) {
+        return source.readCell(rowIndex, index);
+    }
+
+    @Override
+    public int getCellCount() {
+        return source.countCells(rowIndex);
+    }
+
+    @Override
+    public int getCellCode(int index) {
+        return source.readCode(rowIndex, index);
+    }
+
+    @Override
+    public ArrayList<String> getCells() {
+        int cellCount = source.countCells(rowIndex);
+        ArrayList<String> cells = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            cells.add(source.readCell(rowIndex, i));
+        }
+        return cells;
+    }
+
+    @Override
+    public String getCellData(String columnName, Table table) throws CmdExecutionException {
+        String cell = source.readCell(rowIndex, table.findColumnIndex(columnName));
+        if (cell == null) {
+            throw new CmdExecutionException("That attribute name isn't part of this table.");
+        }
+        return cell;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\t", getCells());
+    }
+
+}
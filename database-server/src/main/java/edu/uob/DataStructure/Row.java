@@ -12,6 +12,10 @@ public class Row {
         this.cells.addAll(data);
     }
 
+    // for rows that read their cells from somewhere else
+    protected Row() {
+    }
+
     public String getCellData(int index) {
         return cells.get(index);
     }
@@ -20,6 +24,20 @@ public class Row {
         return cells;
     }
 
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /** The cell at this index, or null if the row is shorter than that. */
+    public String findCellData(int index) {
+        return index < cells.size() ? cells.get(index) : null;
+    }
+
+    /** The cell's code in its column's dictionary, or -1 if the cell doesn't come from a dictionary encoded column. */
+    public int getCellCode(int index) {
+        return -1;
+    }
+
 
     public String getCellData(String columnName, Table table) throws CmdExecutionException {
         int index = table.findColumnIndex(columnName);
@@ -0,0 +1,92 @@
+package edu.uob.DataStructure;
+
+/**
+ * Row ids to where the rows are in their table, an open-addressing hash table over two int arrays so it
+ * costs a few bytes a row rather than a boxed entry each. If two rows somehow share an id, the first one
+ * is kept, which is the one a scan would have found first.
+ */
+final class RowIdIndex {
+
+    private int[] ids;
+    private int[] positions; // a row's position plus one, so zero marks an empty slot
+    private int size = 0;
+
+    RowIdIndex(int expectedRows) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedRows) * 2 - 1) << 1;
+        this.ids = new int[capacity];
+        this.positions = new int[capacity];
+    }
+
+    /** The position of the row with this id, or -1 if there isn't one. */
+    int get(int id) {
+        int mask = ids.length - 1;
+        for (int slot = slotFor(id, mask); positions[slot] != 0; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return positions[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    void putIfAbsent(int id, int position) {
+        if ((size + 1) * 2 > ids.length) {
+            grow();
+        }
+        int mask = ids.length - 1;
+        int slot = slotFor(id, mask);
+        while (positions[slot] != 0) {
+            if (ids[slot] == id) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        positions[slot] = position + 1;
+        size++;
+    }
+
+    void remove(int id) {
+        int mask = ids.length - 1;
+        int gap = slotFor(id, mask);
+        while (ids[gap] != id) {
+            if (positions[gap] == 0) {
+                return;
+            }
+            gap = (gap + 1) & mask;
+        }
+        if (positions[gap] == 0) {
+            return;
+        }
+        // move later entries back into the gap, so lookups don't stop short of them
+        for (int next = (gap + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+            int home = slotFor(ids[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                ids[gap] = ids[next];
+                positions[gap] = positions[next];
+                gap = next;
+            }
+        }
+        positions[gap] = 0;
+        size--;
+    }
+
+    private void grow() {
+        int[] oldIds = ids;
+        int[] oldPositions = positions;
+        ids = new int[oldIds.length * 2];
+        positions = new int[oldIds.length * 2];
+        size = 0;
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            if (oldPositions[slot] != 0) {
+                putIfAbsent(oldIds[slot], oldPositions[slot] - 1);
+            }
+        }
+    }
+
+    // ids are mostly consecutive, so they get spread out before taking the low bits
+    private static int slotFor(int id, int mask) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+}
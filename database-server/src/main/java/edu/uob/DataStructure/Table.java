@@ -29,12 +29,73 @@ public class Table {
         }
     }
 
-    private final ArrayList<Row> rows = new ArrayList<>();
+    private final ArrayList<Row> rows;
 
-    public ArrayList<Row> getRows() {
+    // the rows in order; change them through the methods below rather than through this list
+    public List<Row> getRows() {
         return this.rows;
     }
 
+    // only set on tables mapped straight from a file for one scan, since changing the rows would make it wrong
+    private ZoneMap zoneMap;
+
+    // parsed columns, built when a condition first asks for one and kept up as rows change
+    private volatile ColumnVector[] columnVectors;
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    public void setZoneMap(ZoneMap zoneMap) {
+        this.zoneMap = zoneMap;
+    }
+
+    /** The column parsed into a primitive array, built once and then kept up to date with the rows. */
+    public ColumnVector getColumnVector(int columnIndex) {
+        ColumnVector[] vectors = columnVectors;
+        if (vectors == null || vectors.length != columnNames.size()) {
+            vectors = new ColumnVector[columnNames.size()];
+            columnVectors = vectors;
+        }
+        if (vectors[columnIndex] == null) {
+            vectors[columnIndex] = buildColumnVector(columnIndex);
+        }
+        return vectors[columnIndex];
+    }
+
+    protected ColumnVector buildColumnVector(int columnIndex) {
+        return ColumnVector.build(rows.size(), rowIndex -> rows.get(rowIndex).findCellData(columnIndex));
+    }
+
+    /** Called after the columns have been added, removed or changed wholesale, so parsed columns get rebuilt. */
+    public void markChanged() {
+        columnVectors = null;
+    }
+
+    // puts the row's cells into the parsed columns that have been built, reading them back through the row
+    private void updateColumnVectors(int rowIndex) {
+        ColumnVector[] vectors = columnVectors;
+        if (vectors == null) {
+            return;
+        }
+        Row row = getRows().get(rowIndex);
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] != null) {
+                vectors[i].set(rowIndex, row.findCellData(i));
+            }
+        }
+    }
+
+    // row ids to positions, built on the first lookup and kept up as rows are added, replaced and removed
+    private volatile RowIdIndex rowIdIndex;
+
+    protected int getRowId(int rowIndex) {
+        return Integer.parseInt(getRows().get(rowIndex).getCellData(0));
+    }
+
+    // the indexes CREATE INDEX has put on columns, kept up to date by the methods below that change rows
+    private final ArrayList<HashIndex> indexes;
+
     private int nextRowID = 1;
 
 
@@ -47,6 +108,8 @@ public class Table {
 
     public Table(String tableName, ArrayList<String> columnNames) {
         this.tableName = tableName;
+        this.rows = new ArrayList<>();
+        this.indexes = new ArrayList<>();
         this.columnNames = new ArrayList<>();
         this.columnNames.add("id"); // Ensure "id" is always first
         for (String columnName : columnNames) {
@@ -59,11 +122,29 @@ public class Table {
 
     public Table(String tableName) {
         this.tableName = tableName;
+        this.rows = new ArrayList<>();
+        this.indexes = new ArrayList<>();
         this.columnNames = new ArrayList<>();
         this.columnNames.add("id");
     }
 
 
+    // the same table under another name, it shares the columns and rows of the original
+    public Table(String tableName, Table original) {
+        this.tableName = tableName;
+        this.rows = original.rows;
+        this.indexes = original.indexes;
+        this.columnNames = original.columnNames;
+        this.nextRowID = original.nextRowID;
+    }
+
+
+    /** The same table under another name (JOIN prints the name as the statement gave it). */
+    public Table withName(String tableName) {
+        return new Table(tableName, this);
+    }
+
+
     public int findColumnIndex(String columnName) throws CmdExecutionException {
         String colNameTrim = columnName.trim();
         for (int i = 0; i < columnNames.size(); i++) {
@@ -86,11 +167,14 @@ public class Table {
         for (Row row : rows) {
             row.getCells().add(" ");
         }
+        markChanged();
     }
 
 
     public void removeColumnHeader(int columnIndex) {
-        columnNames.remove(columnIndex);
+        String columnName = columnNames.remove(columnIndex);
+        indexes.removeIf(index -> index.getColumnName().equalsIgnoreCase(columnName));
+        markChanged();
     }
 
 
@@ -101,12 +185,236 @@ public class Table {
                 cells.remove(index);
             }
         }
+        markChanged();
     }
 
 
     public void insertRow(Row newRow) {
-        rows.add(newRow);
+        appendRow(newRow);
         nextRowID++;
+        int rowIndex = getRows().size() - 1;
+        RowIdIndex index = rowIdIndex;
+        if (index != null) {
+            index.putIfAbsent(getRowId(rowIndex), rowIndex);
+        }
+        addToIndexes(rowIndex);
+        updateColumnVectors(rowIndex);
+    }
+
+
+    protected void appendRow(Row newRow) {
+        rows.add(newRow);
+    }
+
+
+    /** Puts a row in place of the one at this index. */
+    public void replaceRow(int rowIndex, Row row) {
+        removeFromIndexes(rowIndex);
+        int oldId = getRowId(rowIndex);
+        putRow(rowIndex, row);
+        RowIdIndex index = rowIdIndex;
+        int newId = getRowId(rowIndex);
+        if (index != null && newId != oldId) {
+            if (index.get(oldId) == rowIndex) {
+                index.remove(oldId);
+            }
+            index.putIfAbsent(newId, rowIndex);
+        }
+        addToIndexes(rowIndex);
+        updateColumnVectors(rowIndex);
+    }
+
+
+    protected void putRow(int rowIndex, Row row) {
+        rows.set(rowIndex, row);
+    }
+
+
+    /** Sets one cell, padding the row with blank cells if it's too short to have that column yet. */
+    public void setCell(int rowIndex, int columnIndex, String value) {
+        removeFromIndexes(rowIndex);
+        writeCell(rowIndex, columnIndex, value);
+        addToIndexes(rowIndex);
+        ColumnVector[] vectors = columnVectors;
+        if (vectors != null && columnIndex < vectors.length && vectors[columnIndex] != null) {
+            vectors[columnIndex].set(rowIndex, value); // blanks padded in before it were missing cells, null either way
+        }
+    }
+
+
+    protected void writeCell(int rowIndex, int columnIndex, String value) {
+        ArrayList<String> cells = rows.get(rowIndex).getCells();
+        while (cells.size() <= columnIndex) {
+            cells.add(" ");
+        }
+        cells.set(columnIndex, value);
+    }
+
+
+    public void removeRows(Collection<String> rowIds) {
+        if (!indexes.isEmpty()) {
+            for (String rowId : rowIds) {
+                int rowIndex = findRowIndex(Integer.parseInt(rowId));
+                if (rowIndex >= 0) {
+                    removeFromIndexes(rowIndex);
+                }
+            }
+        }
+        BitSet removedRows = columnVectors != null ? findRows(rowIds) : null;
+        int rowCount = getRows().size();
+        RowIdIndex index = rowIdIndex;
+        if (index == null) {
+            deleteRows(rowIds);
+            removeFromColumnVectors(removedRows, rowCount);
+            return;
+        }
+        // only the rows after the first one removed move, so only their entries are taken out and put back
+        int firstRemoved = getRows().size();
+        for (String rowId : rowIds) {
+            int rowIndex = index.get(Integer.parseInt(rowId));
+            if (rowIndex >= 0) {
+                firstRemoved = Math.min(firstRemoved, rowIndex);
+            }
+        }
+        for (int rowIndex = firstRemoved; rowIndex < getRows().size(); rowIndex++) {
+            int rowId = getRowId(rowIndex);
+            if (index.get(rowId) == rowIndex) {
+                index.remove(rowId);
+            }
+        }
+        deleteRows(rowIds);
+        for (int rowIndex = firstRemoved; rowIndex < getRows().size(); rowIndex++) {
+            index.putIfAbsent(getRowId(rowIndex), rowIndex);
+        }
+        removeFromColumnVectors(removedRows, rowCount);
+    }
+
+
+    private BitSet findRows(Collection<String> rowIds) {
+        BitSet rowIndexes = new BitSet();
+        for (String rowId : rowIds) {
+            int rowIndex = findRowIndex(Integer.parseInt(rowId));
+            if (rowIndex >= 0) {
+                rowIndexes.set(rowIndex);
+            }
+        }
+        return rowIndexes;
+    }
+
+
+    // if more rows went than were found by id (a repeated id), the parsed columns are rebuilt instead
+    private void removeFromColumnVectors(BitSet removedRows, int rowCountBefore) {
+        ColumnVector[] vectors = columnVectors;
+        if (vectors == null || removedRows == null || rowCountBefore - getRows().size() != removedRows.cardinality()) {
+            markChanged();
+            return;
+        }
+        for (ColumnVector vector : vectors) {
+            if (vector != null) {
+                vector.removeRows(removedRows);
+            }
+        }
+    }
+
+
+    protected void deleteRows(Collection<String> rowIds) {
+        HashSet<String> removedIds = new HashSet<>(rowIds);
+        rows.removeIf(row -> removedIds.contains(row.getCellData(0)));
+    }
+
+
+    /** The index of the row with this id, or -1 if there isn't one, looked up in the table's id index. */
+    public int findRowIndex(int rowId) {
+        RowIdIndex index = rowIdIndex;
+        if (index == null) {
+            int rowCount = getRows().size();
+            index = new RowIdIndex(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                index.putIfAbsent(getRowId(i), i);
+            }
+            rowIdIndex = index;
+        }
+        return index.get(rowId);
+    }
+
+
+    /** The index on the column, or null if it doesn't have one. */
+    public HashIndex findIndex(String columnName) {
+        for (HashIndex index : indexes) {
+            if (index.getColumnName().equalsIgnoreCase(columnName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+
+    public boolean hasIndex(String indexName) {
+        return indexes.stream().anyMatch(index -> index.getName().equals(indexName));
+    }
+
+
+    /** Adds an empty index and fills it from the rows the table already has. */
+    public void addIndex(HashIndex index) {
+        indexes.add(index);
+        int columnIndex = indexOfColumn(index.getColumnName());
+        List<Row> allRows = getRows();
+        for (int rowIndex = 0; columnIndex > 0 && rowIndex < allRows.size(); rowIndex++) {
+            String cell = allRows.get(rowIndex).findCellData(columnIndex);
+            if (cell != null) {
+                index.add(cell, getRowId(rowIndex));
+            }
+        }
+    }
+
+
+    public void dropIndex(String indexName) {
+        indexes.removeIf(index -> index.getName().equals(indexName));
+    }
+
+
+    private void addToIndexes(int rowIndex) {
+        for (HashIndex index : indexes) {
+            String cell = getRows().get(rowIndex).findCellData(indexOfColumn(index.getColumnName()));
+            if (cell != null) {
+                index.add(cell, getRowId(rowIndex));
+            }
+        }
+    }
+
+
+    private void removeFromIndexes(int rowIndex) {
+        for (HashIndex index : indexes) {
+            String cell = getRows().get(rowIndex).findCellData(indexOfColumn(index.getColumnName()));
+            if (cell != null) {
+                index.remove(cell, getRowId(rowIndex));
+            }
+        }
+    }
+
+
+    private int indexOfColumn(String columnName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /** Makes repeated values in each column share one String, called once a table has been read in. */
+    public void shareRepeatedValues() {
+        ColumnDictionary[] dictionaries = new ColumnDictionary[columnNames.size()];
+        for (int i = 1; i < dictionaries.length; i++) { // ids are all different
+            dictionaries[i] = new ColumnDictionary();
+        }
+        for (Row row : rows) {
+            ArrayList<String> cells = row.getCells();
+            for (int i = 1; i < cells.size() && i < dictionaries.length; i++) {
+                cells.set(i, dictionaries[i].share(cells.get(i)));
+            }
+        }
     }
 
 
@@ -115,7 +423,7 @@ public class Table {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))) {
             writer.write(String.join("\t", columnNames));
             writer.newLine();
-            for (Row row : rows) {
+            for (Row row : getRows()) {
                 String rowString = String.join("\t", row.getCells());
                 writer.write(rowString);
                 writer.newLine();
@@ -172,7 +480,7 @@ public class Table {
     public String displayTable() {
         StringBuilder builder = new StringBuilder();
         builder.append(String.join("\t", columnNames)).append("\n");
-        for (Row row : rows) {
+        for (Row row : getRows()) {
             ArrayList<String> cells = row.getCells();
             for (Object cell : cells) {
                 builder.append(cell).append("\t");
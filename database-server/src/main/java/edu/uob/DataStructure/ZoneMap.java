@@ -0,0 +1,22 @@
+package edu.uob.DataStructure;
+
+/**
+ * The smallest and largest value of each column in every fixed-size block of rows of a table file, so a
+ * scan can skip a block when no value in that range could satisfy its condition.
+ */
+public interface ZoneMap {
+
+    /** How many rows each block covers, the last one may have fewer. */
+    int getBlockRows();
+
+    /** True if every cell of the column in the block is a number, not counting blank or missing cells. */
+    boolean isNumeric(int block, int columnIndex);
+
+    /** True if any cell of the column in the block is blank or missing. */
+    boolean hasNulls(int block, int columnIndex);
+
+    double getMin(int block, int columnIndex);
+
+    double getMax(int block, int columnIndex);
+
+}
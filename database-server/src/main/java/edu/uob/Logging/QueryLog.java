@@ -0,0 +1,188 @@
+package edu.uob.Logging;
+
+import edu.uob.Concurrency.RunningStatement;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous log of statements that ran for longer than a threshold, plus an optional random sample
+ * of the fast ones. Statements only pay for a couple of comparisons unless they're logged, and even
+ * then just for building an entry and putting it in a fixed size ring buffer (an ArrayBlockingQueue).
+ * A background thread writes the entries to the log file as JSON lines. If the writer can't keep up,
+ * entries are dropped and counted rather than slowing the statements down.
+ */
+public class QueryLog {
+
+    private static final int BUFFER_CAPACITY = 4096;
+
+    private final Path logFile;
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final ArrayBlockingQueue<Entry> buffer = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private Thread writerThread;
+
+    public QueryLog(Path logFile, long slowThresholdMillis, double sampleRate) {
+        this.logFile = logFile;
+        this.slowThresholdNanos = slowThresholdMillis * 1_000_000L;
+        this.sampleRate = sampleRate;
+    }
+
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+    public void record(RunningStatement statement, String response) {
+        long totalNanos = statement.getElapsedNanos();
+        boolean slow = totalNanos >= slowThresholdNanos;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        Entry entry = new Entry(Instant.now(), statement, totalNanos, response, slow);
+        startWriterIfNeeded();
+        if (!buffer.offer(entry)) {
+            droppedEntries.incrementAndGet();
+        }
+    }
+
+    // the writer thread only exists once there is something to write
+    private synchronized void startWriterIfNeeded() {
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeEntries, "query-log-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    private void writeEntries() {
+        ArrayList<Entry> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(buffer.take());
+                buffer.drainTo(batch);
+                appendToFile(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Couldn't write to the query log " + logFile + ": " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void appendToFile(ArrayList<Entry> batch) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            long dropped = droppedEntries.getAndSet(0);
+            if (dropped > 0) {
+                writer.write("{\"dropped_entries\":" + dropped + "}");
+                writer.newLine();
+            }
+            for (Entry entry : batch) {
+                writer.write(entry.toJson());
+                writer.newLine();
+            }
+        }
+    }
+
+    /** A snapshot of a finished statement, taken on the statement's own thread. */
+    private static class Entry {
+
+        private final Instant finishedAt;
+        private final long statementId;
+        private final long sessionId;
+        private final String databaseName;
+        private final String query;
+        private final String status;
+        private final boolean slow;
+        private final long totalNanos;
+        private final long tokeniseNanos;
+        private final long lockWaitNanos;
+        private final long parseNanos;
+        private final long loadNanos;
+        private final long executeNanos;
+        private final long serialiseNanos;
+
+        Entry(Instant finishedAt, RunningStatement statement, long totalNanos, String response, boolean slow) {
+            QueryTimings timings = statement.getTimings();
+            this.finishedAt = finishedAt;
+            this.statementId = statement.getStatementId();
+            this.sessionId = statement.getSession().getSessionId();
+            this.databaseName = statement.getSession().getCurrentDatabase();
+            this.query = statement.getQuery();
+            this.status = response == null ? "[ERROR]" : response.startsWith("[OK]") ? "OK" : response;
+            this.slow = slow;
+            this.totalNanos = totalNanos;
+            this.tokeniseNanos = timings.getTokeniseNanos();
+            this.lockWaitNanos = timings.getLockWaitNanos();
+            this.parseNanos = timings.getParseNanos();
+            this.loadNanos = timings.getLoadNanos();
+            this.executeNanos = timings.getExecuteNanos();
+            this.serialiseNanos = timings.getSerialiseNanos();
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"time\":\"").append(finishedAt).append('"');
+            json.append(",\"statement\":").append(statementId);
+            json.append(",\"session\":").append(sessionId);
+            json.append(",\"database\":");
+            appendString(json, databaseName);
+            json.append(",\"slow\":").append(slow);
+            json.append(",\"status\":");
+            appendString(json, status);
+            appendMillis(json, "total_ms", totalNanos);
+            appendMillis(json, "tokenise_ms", tokeniseNanos);
+            appendMillis(json, "lock_wait_ms", lockWaitNanos);
+            appendMillis(json, "parse_ms", parseNanos);
+            appendMillis(json, "load_ms", loadNanos);
+            appendMillis(json, "execute_ms", executeNanos);
+            appendMillis(json, "serialise_ms", serialiseNanos);
+            json.append(",\"query\":");
+            appendString(json, query);
+            return json.append('}').toString();
+        }
+
+        private static void appendMillis(StringBuilder json, String name, long nanos) {
+            json.append(",\"").append(name).append("\":").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            if (value == null) {
+                json.append("null");
+                return;
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+
+    }
+
+}
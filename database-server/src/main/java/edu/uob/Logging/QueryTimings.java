@@ -0,0 +1,83 @@
+package edu.uob.Logging;
+
+/**
+ * Time spent in each phase of one statement, in nanoseconds. Table loads and result serialisation
+ * happen in the middle of parsing and execution, so they're accumulated separately and taken out of
+ * the parse and execute figures.
+ */
+public class QueryTimings {
+
+    private final boolean recording;
+
+    private long tokeniseNanos;
+    private long lockWaitNanos;
+    private long parseNanos;
+    private long loadNanos;
+    private long executeNanos;
+    private long serialiseNanos;
+
+    public QueryTimings(boolean recording) {
+        this.recording = recording;
+    }
+
+    public void recordTokenise(long nanos) {
+        if (recording) {
+            tokeniseNanos += nanos;
+        }
+    }
+
+    public void recordLockWait(long nanos) {
+        if (recording) {
+            lockWaitNanos += nanos;
+        }
+    }
+
+    public void recordParse(long nanos) {
+        if (recording) {
+            parseNanos += nanos;
+        }
+    }
+
+    public void addLoad(long nanos) {
+        if (recording) {
+            loadNanos += nanos;
+        }
+    }
+
+    public void recordExecute(long nanos) {
+        if (recording) {
+            executeNanos += nanos;
+        }
+    }
+
+    public void addSerialise(long nanos) {
+        if (recording) {
+            serialiseNanos += nanos;
+        }
+    }
+
+    public long getTokeniseNanos() {
+        return tokeniseNanos;
+    }
+
+    public long getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public long getSerialiseNanos() {
+        return serialiseNanos;
+    }
+
+}
@@ -0,0 +1,32 @@
+package edu.uob.Logging;
+
+import edu.uob.Results.ResultSink;
+import java.io.IOException;
+import java.util.List;
+
+/** Passes a result on to another sink, counting the time spent encoding and sending it. */
+public class TimedResultSink implements ResultSink {
+
+    private final ResultSink sink;
+    private final QueryTimings timings;
+
+    public TimedResultSink(ResultSink sink, QueryTimings timings) {
+        this.sink = sink;
+        this.timings = timings;
+    }
+
+    @Override
+    public void writeColumns(List<String> columnNames) throws IOException {
+        long start = System.nanoTime();
+        sink.writeColumns(columnNames);
+        timings.addSerialise(System.nanoTime() - start);
+    }
+
+    @Override
+    public void writeRow(List<String> cells) throws IOException {
+        long start = System.nanoTime();
+        sink.writeRow(cells);
+        timings.addSerialise(System.nanoTime() - start);
+    }
+
+}
@@ -1,6 +1,5 @@
 package edu.uob;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -14,27 +13,24 @@ public class MetaDataManager {
         this.server = server;
     }
 
-    public void saveTableMetadata(String databaseName, String tableName, int nextRowID) throws IOException {
-        Path databasesPath = server.getPathToDatabases().resolve(databaseName).resolve(tableName + ".meta");
-        try (BufferedWriter writer = Files.newBufferedWriter(databasesPath)) {
-            writer.write("nextRowID=" + nextRowID);
+
+    public int loadNextRowID(String tableName) throws IOException {
+        int nextId = server.getStorage().getCatalog().getNextRowId(server.getCurrentDatabase(), tableName);
+        if (nextId < 0) {
+            throw new IOException("Couldn't find the table's metadata.");
         }
+        return nextId;
     }
 
 
-    public int loadNextRowID(String tableName) throws IOException {
-        String databaseName = server.getCurrentDatabase();
-        Path databasePath = server.getPathToDatabases().resolve(databaseName);
-        Path metadataPath = databasePath.resolve(tableName + ".meta"); // Correctly constructed path for metadata
-        if (Files.exists(metadataPath)) {
-            List<String> lines = Files.readAllLines(metadataPath);
-            for (String line : lines) {
-                if (line.startsWith("nextRowID=")) {
-                    int nextId = Integer.parseInt(line.split("=")[1]);
-                    return nextId;
-                }
+    // tables created before the catalog kept their next id in a .meta file, read once when the catalog is built
+    public static int readNextRowID(Path metadataPath) throws IOException {
+        List<String> lines = Files.readAllLines(metadataPath);
+        for (String line : lines) {
+            if (line.startsWith("nextRowID=")) {
+                int nextId = Integer.parseInt(line.split("=")[1]);
+                return nextId;
             }
-        } else {
         }
         throw new IOException("Couldn't find path to table's metadata.");
     }
@@ -42,4 +38,3 @@ public class MetaDataManager {
 
 
 }
-
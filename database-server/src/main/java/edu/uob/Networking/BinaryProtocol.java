@@ -0,0 +1,85 @@
+package edu.uob.Networking;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed binary protocol, chosen by a client sending {@link #MAGIC} and {@link #VERSION} as the
+ * first two bytes of the connection (no SQL command can start with the magic byte).
+ *
+ * <p>Every frame is {@code [type: 1 byte][payload length: int32][payload]}. The client sends QUERY frames
+ * holding the command as UTF-8. Each query is answered with an optional COLUMNS frame, zero or more ROW
+ * frames and then exactly one STATUS frame. Integers are big endian.
+ * <ul>
+ *   <li>COLUMNS: {@code [count: int16]} then each name as {@code [length: int32][UTF-8]}</li>
+ *   <li>ROW: {@code [count: int16]} then each cell as a type tag followed by its value -
+ *       NULL (nothing), INT (int64), FLOAT (float64), BOOL (1 byte), TEXT ({@code [length: int32][UTF-8]})</li>
+ *   <li>STATUS: {@code [ok: 1 byte][message: UTF-8]}</li>
+ * </ul>
+ */
+public final class BinaryProtocol {
+
+    public static final int MAGIC = 0xDB;
+    public static final int VERSION = 1;
+
+    public static final byte QUERY_FRAME = 'Q';
+    public static final byte COLUMNS_FRAME = 'C';
+    public static final byte ROW_FRAME = 'R';
+    public static final byte STATUS_FRAME = 'S';
+
+    public static final byte NULL_CELL = 0;
+    public static final byte INT_CELL = 1;
+    public static final byte FLOAT_CELL = 2;
+    public static final byte BOOL_CELL = 3;
+    public static final byte TEXT_CELL = 4;
+
+    // refuse frames that are obviously not part of this protocol rather than allocating for them
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private BinaryProtocol() {
+    }
+
+    public static void writeFrame(DataOutputStream out, byte frameType, byte[] payload, int length) throws IOException {
+        out.writeByte(frameType);
+        out.writeInt(length);
+        out.write(payload, 0, length);
+    }
+
+    public static void writeStatus(DataOutputStream out, String response) throws IOException {
+        boolean ok = !response.startsWith("[ERROR]");
+        String message = response.substring(ok ? statusTagLength(response, "[OK]") : "[ERROR]".length()).trim();
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STATUS_FRAME);
+        out.writeInt(messageBytes.length + 1);
+        out.writeByte(ok ? 1 : 0);
+        out.write(messageBytes);
+    }
+
+    private static int statusTagLength(String response, String tag) {
+        return response.startsWith(tag) ? tag.length() : 0;
+    }
+
+    /** Reads the next QUERY frame, returning null when the client has closed the connection. */
+    public static String readQuery(DataInputStream in) throws IOException {
+        int frameType = in.read();
+        if (frameType == -1) {
+            return null;
+        }
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (frameType != QUERY_FRAME || length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Malformed frame received from client.");
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,103 @@
+package edu.uob.Networking;
+
+import edu.uob.Results.ResultSink;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Encodes a result table as COLUMNS and typed ROW frames of the binary protocol. */
+public class BinaryResultSink implements ResultSink {
+
+    private final DataOutputStream out;
+
+    // each frame is encoded here first so its length can be written before it, the buffer is reused
+    private final FrameBuffer frame = new FrameBuffer();
+    private final DataOutputStream frameData = new DataOutputStream(frame);
+
+    public BinaryResultSink(DataOutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void writeColumns(List<String> columnNames) throws IOException {
+        frame.reset();
+        frameData.writeShort(columnNames.size());
+        for (String columnName : columnNames) {
+            writeText(columnName);
+        }
+        BinaryProtocol.writeFrame(out, BinaryProtocol.COLUMNS_FRAME, frame.buffer(), frame.size());
+    }
+
+    @Override
+    public void writeRow(List<String> cells) throws IOException {
+        frame.reset();
+        frameData.writeShort(cells.size());
+        for (String cell : cells) {
+            writeCell(cell);
+        }
+        BinaryProtocol.writeFrame(out, BinaryProtocol.ROW_FRAME, frame.buffer(), frame.size());
+    }
+
+    private void writeCell(String cell) throws IOException {
+        if (cell == null || cell.isBlank()) {
+            frameData.writeByte(BinaryProtocol.NULL_CELL);
+        } else if (cell.equalsIgnoreCase("TRUE") || cell.equalsIgnoreCase("FALSE")) {
+            frameData.writeByte(BinaryProtocol.BOOL_CELL);
+            frameData.writeByte(cell.equalsIgnoreCase("TRUE") ? 1 : 0);
+        } else if (isNumber(cell, false)) {
+            try {
+                long value = Long.parseLong(cell);
+                frameData.writeByte(BinaryProtocol.INT_CELL);
+                frameData.writeLong(value);
+            } catch (NumberFormatException e) { // too many digits for a long, send it as written
+                frameData.writeByte(BinaryProtocol.TEXT_CELL);
+                writeText(cell);
+            }
+        } else if (isNumber(cell, true)) {
+            frameData.writeByte(BinaryProtocol.FLOAT_CELL);
+            frameData.writeDouble(Double.parseDouble(cell));
+        } else {
+            frameData.writeByte(BinaryProtocol.TEXT_CELL);
+            boolean quoted = cell.length() >= 2 && cell.startsWith("'") && cell.endsWith("'");
+            writeText(quoted ? cell.substring(1, cell.length() - 1) : cell);
+        }
+    }
+
+    // [+-]digits for integers, [+-]digits.digits for floats - the literal forms the parser accepts
+    private static boolean isNumber(String cell, boolean withFraction) {
+        int i = (cell.charAt(0) == '+' || cell.charAt(0) == '-') ? 1 : 0;
+        int digitsBefore = 0;
+        while (i < cell.length() && Character.isDigit(cell.charAt(i))) {
+            i++;
+            digitsBefore++;
+        }
+        if (!withFraction) {
+            return digitsBefore > 0 && i == cell.length();
+        }
+        if (digitsBefore == 0 || i == cell.length() || cell.charAt(i) != '.') {
+            return false;
+        }
+        i++;
+        int digitsAfter = 0;
+        while (i < cell.length() && Character.isDigit(cell.charAt(i))) {
+            i++;
+            digitsAfter++;
+        }
+        return digitsAfter > 0 && i == cell.length();
+    }
+
+    private void writeText(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        frameData.writeInt(bytes.length);
+        frameData.write(bytes);
+    }
+
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+}
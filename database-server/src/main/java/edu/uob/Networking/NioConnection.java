@@ -0,0 +1,315 @@
+package edu.uob.Networking;
+
+import edu.uob.Results.StreamingTextSink;
+import edu.uob.Session;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Per-socket state for the non-blocking front end. Text requests are framed by newline and each response
+ * is terminated by the END_OF_TRANSMISSION marker; connections opening with the binary protocol's magic
+ * byte use its length-prefixed frames instead. Requests are answered in the order they arrived - at most
+ * one command per connection is with the worker pool at any time, so a session's commands never overlap.
+ */
+class NioConnection {
+
+    private static final char END_OF_TRANSMISSION = 4;
+
+    // a worker streaming a result waits once this much output is queued but not yet sent to the client
+    private static final int MAX_PENDING_OUTPUT = 4 * StreamingTextSink.CHUNK_SIZE;
+
+    // the selector stops reading from a client with this many commands waiting, until some have run
+    private static final int MAX_QUEUED_COMMANDS = 64;
+
+    // a text command can be as long as a binary query frame, a longer line gets an error and the connection closed
+    private static final int MAX_LINE_LENGTH = BinaryProtocol.MAX_FRAME_LENGTH;
+
+    private enum Protocol { UNDECIDED, TEXT, BINARY_HANDSHAKE, BINARY }
+
+    private final NioServer nioServer;
+    private final SocketChannel channel;
+    private final Session session;
+
+    // bytes of the line or frame currently being received - only touched by the selector thread
+    private Protocol protocol = Protocol.UNDECIDED;
+    private byte[] partialLine = new byte[128];
+    private int partialLength = 0;
+    private boolean discardingInput = false; // set once the client is rejected, whatever else it sends is ignored
+
+    private final ArrayDeque<String> queuedCommands = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    private int pendingOutputBytes = 0;
+    private boolean commandRunning = false;
+    private String closingResponse; // the rejection to send once the commands queued before it are answered
+    private boolean inputClosed = false;
+    private boolean closed = false;
+
+    NioConnection(NioServer nioServer, SocketChannel channel, Session session) {
+        this.nioServer = nioServer;
+        this.channel = channel;
+        this.session = session;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    void receive(ByteBuffer data) throws IOException {
+        while (data.hasRemaining() && !discardingInput) {
+            byte nextByte = data.get();
+            switch (protocol) {
+                case UNDECIDED -> {
+                    if ((nextByte & 0xFF) == BinaryProtocol.MAGIC) {
+                        protocol = Protocol.BINARY_HANDSHAKE;
+                    } else {
+                        protocol = Protocol.TEXT;
+                        receiveTextByte(nextByte);
+                    }
+                }
+                case BINARY_HANDSHAKE -> acceptHandshake(nextByte);
+                case TEXT -> receiveTextByte(nextByte);
+                case BINARY -> receiveFrameByte(nextByte);
+            }
+        }
+    }
+
+    private void receiveTextByte(byte nextByte) {
+        if (nextByte == '\n') {
+            int length = partialLength;
+            if (length > 0 && partialLine[length - 1] == '\r') {
+                length--;
+            }
+            enqueueCommand(new String(partialLine, 0, length, StandardCharsets.UTF_8));
+            partialLength = 0;
+        } else if (partialLength == MAX_LINE_LENGTH) {
+            rejectInput("[ERROR] Commands can't be longer than " + MAX_LINE_LENGTH + " bytes.");
+        } else {
+            appendByte(nextByte);
+        }
+    }
+
+    private void acceptHandshake(byte version) {
+        protocol = Protocol.BINARY;
+        if (version != BinaryProtocol.VERSION) {
+            rejectInput("[ERROR] Unsupported protocol version " + version + ".");
+            return;
+        }
+        queueBinaryResponse(out -> BinaryProtocol.writeStatus(out, "[OK] binary protocol version " + BinaryProtocol.VERSION));
+        nioServer.requestWrite(this);
+    }
+
+    private void receiveFrameByte(byte nextByte) throws IOException {
+        appendByte(nextByte);
+        if (partialLength < 5) {
+            return; // still reading the frame header
+        }
+        int payloadLength = ((partialLine[1] & 0xFF) << 24) | ((partialLine[2] & 0xFF) << 16)
+                | ((partialLine[3] & 0xFF) << 8) | (partialLine[4] & 0xFF);
+        if (partialLine[0] != BinaryProtocol.QUERY_FRAME || payloadLength < 0 || payloadLength > BinaryProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Malformed frame received from client.");
+        }
+        if (partialLength == 5 + payloadLength) {
+            enqueueCommand(new String(partialLine, 5, payloadLength, StandardCharsets.UTF_8));
+            partialLength = 0;
+        }
+    }
+
+    private void appendByte(byte nextByte) {
+        if (partialLength == partialLine.length) {
+            partialLine = Arrays.copyOf(partialLine, partialLine.length * 2);
+        }
+        partialLine[partialLength++] = nextByte;
+    }
+
+    // stops reading from the client, which is closed once it's been sent the error after its earlier answers
+    private void rejectInput(String error) {
+        discardingInput = true;
+        partialLine = new byte[0];
+        partialLength = 0;
+        synchronized (this) {
+            inputClosed = true;
+            if (commandRunning) {
+                closingResponse = error; // sent by dispatchNext once the queue is empty
+                return;
+            }
+            queueResponse(error);
+        }
+        nioServer.requestWrite(this);
+    }
+
+    private void enqueueCommand(String command) {
+        synchronized (this) {
+            queuedCommands.add(command);
+            if (commandRunning) {
+                return; // picked up when the running command completes
+            }
+            commandRunning = true;
+        }
+        dispatchNext();
+    }
+
+    private void dispatchNext() {
+        while (true) {
+            String command;
+            synchronized (this) {
+                command = queuedCommands.poll();
+                if (command == null) {
+                    if (closingResponse != null) {
+                        queueResponse(closingResponse); // before commandRunning clears, so it can't look finished
+                        closingResponse = null;
+                    }
+                    commandRunning = false;
+                    return;
+                }
+            }
+            try {
+                nioServer.submit(() -> runCommand(command));
+                return;
+            } catch (RejectedExecutionException e) {
+                queueResponse("[ERROR] The server is too busy to run this command, please try again.");
+                nioServer.requestWrite(this);
+            }
+        }
+    }
+
+    private void runCommand(String command) {
+        try {
+            OutputStream response = new OutboundStream();
+            if (protocol == Protocol.BINARY) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response, StreamingTextSink.CHUNK_SIZE));
+                String status = nioServer.runCommand(this, command, new BinaryResultSink(out));
+                BinaryProtocol.writeStatus(out, status);
+                out.flush();
+            } else {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(response, StandardCharsets.UTF_8), StreamingTextSink.CHUNK_SIZE);
+                StreamingTextSink sink = new StreamingTextSink(writer);
+                String status = nioServer.runCommand(this, command, sink);
+                sink.finish(status);
+                writer.write(END_OF_TRANSMISSION + "\n");
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // the connection was closed while the result was being sent, nobody is left to answer
+        }
+        dispatchNext();
+        // only ask for the write once commandRunning is up to date, so the selector can tell if we're finished
+        nioServer.requestWrite(this);
+    }
+
+    private void queueResponse(String result) {
+        if (protocol == Protocol.BINARY) {
+            queueBinaryResponse(out -> BinaryProtocol.writeStatus(out, result));
+            return;
+        }
+        byte[] response = (result + "\n" + END_OF_TRANSMISSION + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            outbound.add(ByteBuffer.wrap(response));
+            pendingOutputBytes += response.length;
+        }
+    }
+
+    private interface FrameWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void queueBinaryResponse(FrameWriter frameWriter) {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try {
+            frameWriter.write(new DataOutputStream(response));
+        } catch (IOException e) {
+            // only possible from the in-memory stream, which doesn't throw
+        }
+        synchronized (this) {
+            outbound.add(ByteBuffer.wrap(response.toByteArray()));
+            pendingOutputBytes += response.size();
+        }
+    }
+
+    /** Writes as much queued output as the socket accepts, returning true once nothing is left. */
+    synchronized boolean writeTo(SocketChannel socketChannel) throws IOException {
+        try {
+            while (!outbound.isEmpty()) {
+                ByteBuffer buffer = outbound.peek();
+                pendingOutputBytes -= socketChannel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                outbound.poll();
+            }
+            return true;
+        } finally {
+            notifyAll(); // wake any worker waiting for room to send more of its result
+        }
+    }
+
+    synchronized void markInputClosed() {
+        inputClosed = true;
+    }
+
+    synchronized void markClosed() {
+        closed = true;
+        outbound.clear();
+        notifyAll();
+    }
+
+    /** Whether the selector should read more from this client, false once enough commands are waiting. */
+    synchronized boolean wantsInput() {
+        return !inputClosed && !closed && queuedCommands.size() < MAX_QUEUED_COMMANDS;
+    }
+
+    synchronized boolean isFinished() {
+        return inputClosed && !commandRunning && queuedCommands.isEmpty() && outbound.isEmpty();
+    }
+
+    /**
+     * Hands a worker's output to the selector thread in chunks. Writing blocks while too much output is
+     * waiting to be sent, so a slow reader throttles the query instead of the result piling up in memory.
+     */
+    private class OutboundStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            synchronized (NioConnection.this) {
+                while (!closed && pendingOutputBytes >= MAX_PENDING_OUTPUT) {
+                    try {
+                        NioConnection.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while sending a result.");
+                    }
+                }
+                if (closed) {
+                    throw new IOException("Connection closed.");
+                }
+                outbound.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+                pendingOutputBytes += length;
+            }
+            nioServer.requestWrite(NioConnection.this);
+        }
+
+    }
+
+}
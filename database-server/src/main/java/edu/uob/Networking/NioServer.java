@@ -0,0 +1,170 @@
+package edu.uob.Networking;
+
+import edu.uob.DBServer;
+import edu.uob.Results.ResultSink;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking front end for the server. A single selector thread owns every socket and only does
+ * framing, complete commands are handed to a bounded pool of worker threads that call handleCommand.
+ * An idle connection therefore costs a registered channel and a couple of small buffers, not a thread.
+ */
+public class NioServer {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final DBServer server;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentLinkedQueue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+
+    public NioServer(DBServer server) {
+        this(server, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    public NioServer(DBServer server, int workerThreads, int queuedCommandLimit) {
+        this.server = server;
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queuedCommandLimit));
+    }
+
+    public void listenOn(int portNumber) throws IOException {
+        try (Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(portNumber));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Server listening on port " + portNumber + " (non-blocking)");
+            ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            while (!Thread.interrupted()) {
+                selector.select();
+                registerPendingWrites();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handleKey(key, readBuffer);
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void handleKey(SelectionKey key, ByteBuffer readBuffer) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            acceptConnection((ServerSocketChannel) key.channel());
+            return;
+        }
+        NioConnection connection = (NioConnection) key.attachment();
+        if (key.isReadable()) {
+            readFromConnection(key, connection, readBuffer);
+        }
+        if (key.isValid() && key.isWritable()) {
+            if (connection.writeTo((SocketChannel) key.channel())) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (connection.isFinished()) {
+                    closeConnection(key);
+                }
+            }
+        }
+    }
+
+    private void acceptConnection(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        NioConnection connection = new NioConnection(this, channel, server.openSession(String.valueOf(channel.getRemoteAddress())));
+        channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void readFromConnection(SelectionKey key, NioConnection connection, ByteBuffer readBuffer) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        readBuffer.clear();
+        int bytesRead = channel.read(readBuffer);
+        if (bytesRead == -1) {
+            // stop reading, but let any commands that are already queued finish and be answered
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            connection.markInputClosed();
+            if (connection.isFinished()) {
+                closeConnection(key);
+            }
+            return;
+        }
+        readBuffer.flip();
+        connection.receive(readBuffer);
+        if (!connection.wantsInput()) {
+            // a pipelining client is held back by its socket buffer until the queue drains
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private void registerPendingWrites() {
+        NioConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            SelectionKey key = connection.getChannel().keyFor(selector);
+            if (key != null && key.isValid()) {
+                // each command that finishes asks for a write, which is also when reading can pick up again
+                int interestOps = key.interestOps() | SelectionKey.OP_WRITE;
+                if (connection.wantsInput()) {
+                    interestOps |= SelectionKey.OP_READ;
+                }
+                key.interestOps(interestOps);
+            }
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        if (key.attachment() instanceof NioConnection connection) {
+            connection.markClosed();
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // nothing more can be done with a channel that failed to close
+        }
+    }
+
+    // === Called by connections, possibly from worker threads === //
+
+    void submit(Runnable task) throws RejectedExecutionException {
+        workers.execute(task);
+    }
+
+    String runCommand(NioConnection connection, String command) {
+        return server.handleCommand(command, connection.getSession());
+    }
+
+    String runCommand(NioConnection connection, String command, ResultSink sink) {
+        return server.handleCommand(command, connection.getSession(), sink);
+    }
+
+    void requestWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+}
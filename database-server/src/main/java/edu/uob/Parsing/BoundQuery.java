@@ -0,0 +1,29 @@
+package edu.uob.Parsing;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Exceptions.ParseException;
+import java.io.IOException;
+
+/** A prepared statement with EXECUTE's values dropped into its tokens, ready to take its locks and run. */
+public class BoundQuery {
+
+    private final StatementPlan plan;
+    private final String[] tokens;
+
+    BoundQuery(StatementPlan plan, String[] tokens) {
+        this.plan = plan;
+        this.tokens = tokens;
+    }
+
+    /** The prepared query's tokens with the values in place, which is what the lock manager looks at. */
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    public DBCommand toCommand(DBServer server) throws ParseException, CmdExecutionException, IOException {
+        return plan.bind(server, tokens);
+    }
+
+}
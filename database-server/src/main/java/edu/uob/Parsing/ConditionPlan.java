@@ -0,0 +1,12 @@
+package edu.uob.Parsing;
+
+import edu.uob.Conditions.Condition;
+import edu.uob.DataStructure.Table;
+
+/** A parsed WHERE clause, built into conditions on the table once it has been loaded. */
+@FunctionalInterface
+public interface ConditionPlan {
+
+    Condition build(Table table, String[] tokens);
+
+}
@@ -0,0 +1,58 @@
+package edu.uob.Parsing;
+
+import java.util.ArrayList;
+
+/**
+ * Splits a query into typed tokens in a single pass over its characters. String literals are kept exactly
+ * as written (quotes included) and the two character operators ==, <=, >= and != come out as one token.
+ */
+public class Lexer {
+
+    public Token[] lex(String input) {
+        ArrayList<Token> tokens = new ArrayList<>(16);
+        int length = input.length();
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                int close = input.indexOf('\'', i + 1);
+                int end = close < 0 ? length : close + 1; // an unclosed literal runs to the end and won't parse
+                String text = input.substring(i, end);
+                tokens.add(new Token(close < 0 ? Token.Type.IDENTIFIER : Token.Type.STRING, text));
+                i = end;
+            } else if (c == '(' || c == ')' || c == ',' || c == ';' || c == '*') {
+                tokens.add(new Token(Token.Type.SYMBOL, String.valueOf(c)));
+                i++;
+            } else if (c == '<' || c == '>' || c == '=' || (c == '!' && nextIs(input, i, '='))) {
+                int end = nextIs(input, i, '=') ? i + 2 : i + 1;
+                tokens.add(new Token(Token.Type.OPERATOR, input.substring(i, end)));
+                i = end;
+            } else {
+                int end = i + 1;
+                while (end < length && !endsWord(input, end)) {
+                    end++;
+                }
+                String text = input.substring(i, end);
+                tokens.add(new Token(Token.classify(text), text));
+                i = end;
+            }
+        }
+        return tokens.toArray(new Token[0]);
+    }
+
+    private static boolean nextIs(String input, int index, char expected) {
+        return index + 1 < input.length() && input.charAt(index + 1) == expected;
+    }
+
+    private static boolean endsWord(String input, int index) {
+        char c = input.charAt(index);
+        return switch (c) {
+            case '(', ')', ',', ';', '*', '<', '>', '=' -> true;
+            case '!' -> nextIs(input, index, '=');
+            default -> Character.isWhitespace(c);
+        };
+    }
+
+}
@@ -5,12 +5,16 @@ import edu.uob.Conditions.*;
 import edu.uob.DBCommand;
 import edu.uob.DBServer;
 import edu.uob.DataLoader;
+import edu.uob.DataStructure.ColumnType;
 import edu.uob.DataStructure.Table;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.Exceptions.ParseException;
+import edu.uob.Storage.TableFormat;
+import edu.uob.Session;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 
 public class Parser {
@@ -19,12 +23,30 @@ public class Parser {
 
     private final String[] tokens;
 
+    private final Token.Type[] tokenTypes;
+
     private int tokenIndex = 0;
 
+    // set while parsing a PREPARE's query, where a value can be a '?' placeholder; counts the ones found
+    private boolean preparing = false;
+    private int placeholderCount = 0;
+
     public Parser(DBServer server, String[] tokens) {
         this.tokens = tokens;
         this.server = server;
+        this.tokenTypes = tokens == null ? null : new Token.Type[tokens.length];
+        for (int i = 0; tokens != null && i < tokens.length; i++) {
+            tokenTypes[i] = Token.classify(tokens[i]);
+        }
+    }
 
+    public Parser(DBServer server, Token[] lexedTokens) {
+        this.server = server;
+        this.tokens = Token.textOf(lexedTokens);
+        this.tokenTypes = new Token.Type[lexedTokens.length];
+        for (int i = 0; i < lexedTokens.length; i++) {
+            tokenTypes[i] = lexedTokens[i].getType();
+        }
     }
 
     public enum Comparator {
@@ -88,6 +110,10 @@ public class Parser {
             case "JOIN" -> parseJoin();
             case "DELETE" -> parseDelete();
             case "UPDATE" -> parseUpdate();
+            case "SET" -> parseSet();
+            case "SHOW" -> parseShow();
+            case "KILL" -> parseKill();
+            case "PREPARE" -> parsePrepare();
             default -> throw new ParseException("Unknown or invalid query.");
         };
     }
@@ -96,6 +122,112 @@ public class Parser {
     // ------------------------------- Individual Parsing Methods -------------------------------- //
 
 
+    // SET TIMEOUT <milliseconds> ;   (0 turns the timeout off)
+    public DBCommand parseSet() throws ParseException {
+        tokenIndex++; // move past 'SET'
+        if (tokens.length != 4 || !tokens[tokenIndex].equalsIgnoreCase("TIMEOUT")) {
+            throw new ParseException("Expected 'SET TIMEOUT' followed by a number of milliseconds.");
+        }
+        tokenIndex++; // move past 'TIMEOUT'
+        return new SetTimeout(parseNonNegativeNumber(tokens[tokenIndex]));
+    }
+
+
+    // SHOW PROCESSLIST ;
+    public DBCommand parseShow() throws ParseException {
+        tokenIndex++; // move past 'SHOW'
+        if (tokens.length != 3 || !tokens[tokenIndex].equalsIgnoreCase("PROCESSLIST")) {
+            throw new ParseException("Expected 'PROCESSLIST' following 'SHOW'.");
+        }
+        return new ShowProcessList();
+    }
+
+
+    // KILL <statement id> ;
+    public DBCommand parseKill() throws ParseException {
+        tokenIndex++; // move past 'KILL'
+        if (tokens.length != 3) {
+            throw new ParseException("Expected a single statement id following 'KILL'.");
+        }
+        return new KillCommand(parseNonNegativeNumber(tokens[tokenIndex]));
+    }
+
+
+    // PREPARE <name> AS <query containing ? placeholders> ;
+    public DBCommand parsePrepare() throws ParseException {
+        tokenIndex++; // move past 'PREPARE'
+        if (tokens.length < 5 || !isValidPlainText(tokens[tokenIndex])) {
+            throw new ParseException("Expected a name for the prepared statement.");
+        }
+        String name = tokens[tokenIndex];
+        tokenIndex++; // move past the name
+        if (!tokens[tokenIndex].equalsIgnoreCase("AS")) {
+            throw new ParseException("Expected 'AS' following the prepared statement's name.");
+        }
+        tokenIndex++; // move past 'AS'
+        Token[] templateTokens = new Token[tokens.length - tokenIndex];
+        for (int i = 0; i < templateTokens.length; i++) {
+            templateTokens[i] = new Token(tokenTypes[tokenIndex + i], tokens[tokenIndex + i]);
+        }
+        Parser templateParser = new Parser(server, templateTokens);
+        templateParser.preparing = true;
+        StatementPlan plan = templateParser.planStatement();
+        PreparedQuery preparedQuery = new PreparedQuery(name, templateTokens, plan);
+        if (templateParser.placeholderCount != preparedQuery.getParameterCount()) {
+            throw new ParseException("A '?' placeholder can only take the place of a value.");
+        }
+        return new PrepareQuery(preparedQuery);
+    }
+
+
+    // the statements that can be prepared, parsed into plans that only load their tables once they're bound
+    private StatementPlan planStatement() throws ParseException {
+        if (!tokens[tokens.length - 1].equals(";")) {
+            throw new ParseException("Expected a semicolon following a query.");
+        }
+        return switch (tokens[tokenIndex].toUpperCase()) {
+            case "SELECT" -> planSelect();
+            case "INSERT" -> planInsert();
+            case "UPDATE" -> planUpdate();
+            case "DELETE" -> planDelete();
+            default -> throw new ParseException("Only SELECT, INSERT, UPDATE and DELETE statements can be prepared.");
+        };
+    }
+
+
+    // EXECUTE <name> ( [ValueList] ) ;  -  returns the prepared query's plan with the values filled in
+    public BoundQuery parseExecute(Session session) throws ParseException {
+        tokenIndex++; // move past 'EXECUTE'
+        if (tokens.length < 3) {
+            throw new ParseException("Expected the name of a prepared statement following 'EXECUTE'.");
+        }
+        PreparedQuery preparedQuery = session.getPreparedQuery(tokens[tokenIndex]);
+        if (preparedQuery == null) {
+            throw new ParseException("There is no prepared statement called '" + tokens[tokenIndex] + "'.");
+        }
+        tokenIndex++; // move past the name
+        ArrayList<String> values = new ArrayList<>();
+        if (!tokens[tokenIndex].equals(";")) {
+            for (int position : parseValueList()) { // checks every value is a literal
+                values.add(tokens[position]);
+            }
+        }
+        return preparedQuery.bind(values);
+    }
+
+
+    private long parseNonNegativeNumber(String token) throws ParseException {
+        if (!isIntegerLiteral(token) || token.startsWith("-")) {
+            throw new ParseException("Expected a whole number, instead found: " + token);
+        }
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new ParseException("The number " + token + " is too large.");
+        }
+    }
+
+
     private DBCommand parseJoin() throws ParseException, CmdExecutionException {
         String databaseName = server.getCurrentDatabase();
         tokenIndex++; // move past 'JOIN'
@@ -131,24 +263,26 @@ public class Parser {
     }
 
 
-    public Condition parseCondition(Table table) throws ParseException {
+    public ConditionPlan planCondition() throws ParseException {
         boolean hasBrackets = tokens[tokenIndex].equals("(");
         if (hasBrackets) {
             tokenIndex++; // move past '('
         }
-        Condition condition = null;
-        condition = parseSimpleCondition(table);
+        ConditionPlan condition = planSimpleCondition();
         // check for boolean operator indicating nested conditions
         while (tokenIndex < tokens.length && isBoolOperator(tokens[tokenIndex])) {
             String boolOperator = tokens[tokenIndex++];
             if (!isBoolOperatorOrComparator(boolOperator)) {
                 throw new ParseException("Invalid operator or comparator.");
             }
-            Condition rightCondition = parseSimpleCondition(table);
+            ConditionPlan leftCondition = condition;
+            ConditionPlan rightCondition = planSimpleCondition();
             if (boolOperator.equalsIgnoreCase("AND")) {
-                condition = new AndCondition(condition, rightCondition);
+                condition = (table, boundTokens) -> new AndCondition(leftCondition.build(table, boundTokens),
+                        rightCondition.build(table, boundTokens));
             } else if (boolOperator.equalsIgnoreCase("OR")) {
-                condition = new OrCondition(condition, rightCondition);
+                condition = (table, boundTokens) -> new OrCondition(leftCondition.build(table, boundTokens),
+                        rightCondition.build(table, boundTokens));
             }
         }
         if (hasBrackets) {
@@ -165,7 +299,7 @@ public class Parser {
         return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR");
     }
 
-    public Condition parseSimpleCondition(Table table) throws ParseException {
+    public ConditionPlan planSimpleCondition() throws ParseException {
         String attributeName = tokens[tokenIndex++];
         String comparatorSymbol = tokens[tokenIndex];
         // Handle possible composite symbols
@@ -184,21 +318,29 @@ public class Parser {
                 tokenIndex++; //  move past the comparator symbol
             }
         }
-        String value = tokens[tokenIndex++];
+        int value = tokenIndex++; // read out of the bound tokens, it's a placeholder in a prepared query
+        if (preparing && tokens[value].equals("?")) {
+            placeholderCount++;
+        }
         Comparator comparator = Comparator.determineComparator(comparatorSymbol);
         return switch (comparator) {
-            case EQUALS -> new EqualsCondition(table, attributeName, value);
-            case GREATER_THAN -> new GreaterCondition(table, attributeName, value);
-            case GREATER_OR_EQUAL -> new GreaterOrEqualCondition(table, attributeName, value);
-            case LESS_THAN -> new LessCondition(table, attributeName, value);
-            case LESS_OR_EQUAL -> new LessOrEqualCondition(table, attributeName, value);
-            case NOT_EQUAL -> new NotEqualCondition(table, attributeName, value);
-            case LIKE -> new LikeCondition(table, attributeName, value);
+            case EQUALS -> (table, boundTokens) -> new EqualsCondition(table, attributeName, boundTokens[value]);
+            case GREATER_THAN -> (table, boundTokens) -> new GreaterCondition(table, attributeName, boundTokens[value]);
+            case GREATER_OR_EQUAL -> (table, boundTokens) -> new GreaterOrEqualCondition(table, attributeName, boundTokens[value]);
+            case LESS_THAN -> (table, boundTokens) -> new LessCondition(table, attributeName, boundTokens[value]);
+            case LESS_OR_EQUAL -> (table, boundTokens) -> new LessOrEqualCondition(table, attributeName, boundTokens[value]);
+            case NOT_EQUAL -> (table, boundTokens) -> new NotEqualCondition(table, attributeName, boundTokens[value]);
+            case LIKE -> (table, boundTokens) -> new LikeCondition(table, attributeName, boundTokens[value]);
         };
     }
 
 
-    public DBCommand parseSelect() throws ParseException, IOException {
+    public DBCommand parseSelect() throws ParseException, CmdExecutionException, IOException {
+        return planSelect().bind(server, tokens);
+    }
+
+
+    private StatementPlan planSelect() throws ParseException {
         tokenIndex++; // move past 'SELECT'
         ArrayList<String> columnNames = new ArrayList<>();
         boolean selectAll = false;
@@ -213,27 +355,31 @@ public class Parser {
         }
         tokenIndex++; // move past 'FROM'
         String tableName = tokens[tokenIndex];
-        String databaseName = server.getCurrentDatabase();
-        DataLoader loader = new DataLoader(server);
-        Table table = loader.readTableData(databaseName, tableName);
         tokenIndex++; // move past the table name
-        if (tokens[tokenIndex].equals(";")) {
-            if (selectAll) {
-                return new SelectCommand(table, selectAll);
+        ConditionPlan condition = null;
+        if (!tokens[tokenIndex].equals(";")) {
+            if (!tokens[tokenIndex].equalsIgnoreCase("WHERE")) {
+                throw new ParseException("Expected a 'WHERE' in this query, instead found: " + tokens[tokenIndex]);
+            }
+            tokenIndex++; // Move past 'WHERE'
+            condition = planCondition();
+        }
+        boolean selectEverything = selectAll;
+        ArrayList<String> selectedColumns = columnNames;
+        ConditionPlan where = condition;
+        return (executingServer, boundTokens) -> {
+            DataLoader loader = new DataLoader(executingServer);
+            Table table = loader.readTableForScan(executingServer.getCurrentDatabase(), tableName);
+            if (where == null) {
+                return selectEverything ? new SelectCommand(table, true) : new SelectCommand(table, selectedColumns);
+            }
+            Condition tableCondition = where.build(table, boundTokens);
+            if (selectEverything) {
+                return new SelectCommand(table, true, tableCondition);
             } else {
-                return new SelectCommand(table, columnNames);
+                return new SelectCommand(table, selectedColumns, tableCondition);
             }
-        }
-        if (!tokens[tokenIndex].equalsIgnoreCase("WHERE")) {
-            throw new ParseException("Expected a 'WHERE' in this query, instead found: " + tokens[tokenIndex]);
-        }
-        tokenIndex++; // Move past 'WHERE'
-        Condition condition = parseCondition(table);
-        if (selectAll) {
-            return new SelectCommand(table, true, condition);
-        } else {
-            return new SelectCommand(table, columnNames, condition);
-        }
+        };
     }
 
 
@@ -263,7 +409,17 @@ public class Parser {
 
 
     public boolean isPlainText(String token) {
-        return token.matches("^[a-zA-Z0-9 ]+$");
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            boolean letterOrDigit = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!letterOrDigit && c != ' ') {
+                return false;
+            }
+        }
+        return true;
     }
 
 
@@ -273,39 +429,51 @@ public class Parser {
 
 
     public DBCommand parseUpdate() throws ParseException, CmdExecutionException, IOException {
+        return planUpdate().bind(server, tokens);
+    }
+
+
+    private StatementPlan planUpdate() throws ParseException {
         tokenIndex++; // move past 'UPDATE' keyword
-        String databaseName = server.getCurrentDatabase();
         String tableName = tokens[tokenIndex];
-        if (!server.tableExists(databaseName, tableName)) {
-            throw new CmdExecutionException("That table name doesnt exist in the current database.");
-        }
         tokenIndex++; // move past table name
         if (!tokens[tokenIndex].equalsIgnoreCase("SET")) {
             throw new ParseException("Expected 'SET' in an 'UPDATE' query.");
         }
         tokenIndex++; // move past 'SET'
-        HashMap<String, String> updates = parseNameValueList();
+        HashMap<String, Integer> updates = parseNameValueList();
         tokenIndex++; // move past the list of values
         if (!tokens[tokenIndex].equalsIgnoreCase("WHERE")) {
             throw new ParseException("Expected 'WHERE' in 'UPDATE' query, instead found: " + tokens[tokenIndex]);
         }
         tokenIndex++; // move past 'WHERE'
-        DataLoader loader = new DataLoader(server);
-        Table table = loader.readTableData(databaseName, tableName);
-        Condition condition = parseCondition(table);
-        return new UpdateCommand(table, updates, condition);
+        ConditionPlan condition = planCondition();
+        return (executingServer, boundTokens) -> {
+            String databaseName = executingServer.getCurrentDatabase();
+            if (!executingServer.tableExists(databaseName, tableName)) {
+                throw new CmdExecutionException("That table name doesnt exist in the current database.");
+            }
+            HashMap<String, String> values = new HashMap<>();
+            for (Map.Entry<String, Integer> update : updates.entrySet()) {
+                values.put(update.getKey(), valueAt(boundTokens, update.getValue()));
+            }
+            DataLoader loader = new DataLoader(executingServer);
+            Table table = loader.readTableData(databaseName, tableName);
+            return new UpdateCommand(table, values, condition.build(table, boundTokens));
+        };
     }
 
 
-    public HashMap<String, String> parseNameValueList() throws ParseException {
-        HashMap<String, String> updates = new HashMap<>();
+    // each attribute along with the position of its value, which parseNameValuePair leaves tokenIndex on
+    public HashMap<String, Integer> parseNameValueList() throws ParseException {
+        HashMap<String, Integer> updates = new HashMap<>();
 
         NameValuePair firstPair = parseNameValuePair();
-        updates.put(firstPair.getAttributeName(), firstPair.getValue());
+        updates.put(firstPair.getAttributeName(), tokenIndex);
         while (tokens[tokenIndex].equals(",")) {
             tokenIndex++; // Move past the comma
             NameValuePair nextPair = parseNameValuePair();
-            updates.put(nextPair.getAttributeName(), nextPair.getValue());
+            updates.put(nextPair.getAttributeName(), tokenIndex);
         }
 
         return updates;
@@ -324,33 +492,39 @@ public class Parser {
         }
         tokenIndex++; // move past equals
 
-        String value = parseValue(tokens[tokenIndex]);
+        String value = parseValueAt(tokenIndex);
 
         return new NameValuePair(attributeName, value);
     }
 
 
     public DBCommand parseDelete() throws ParseException, CmdExecutionException, IOException {
+        return planDelete().bind(server, tokens);
+    }
+
+
+    private StatementPlan planDelete() throws ParseException {
         tokenIndex++; // move past 'DELETE
         if (!tokens[tokenIndex].equalsIgnoreCase("FROM")) {
             throw new ParseException("Expected 'FROM' following a 'DELETE' query.");
         }
         tokenIndex++; // move past from
-        String databaseName = server.getCurrentDatabase();
         String tableName = tokens[tokenIndex];
-        if (!server.tableExists(databaseName, tableName)) {
-            throw new CmdExecutionException("That table name doesnt exist in the current database.");
-        }
         tokenIndex++; // move past table name
         if (!tokens[tokenIndex].equalsIgnoreCase("WHERE")) {
             throw new ParseException("Expected 'WHERE' after the table name in a delete query.");
         }
         tokenIndex++; // move past 'WHERE'
-        DataLoader loader = new DataLoader(server);
-        Table table = loader.readTableData(databaseName, tableName);
-        Condition condition = parseCondition(table);
-
-        return new DeleteCommand(table, condition);
+        ConditionPlan condition = planCondition();
+        return (executingServer, boundTokens) -> {
+            String databaseName = executingServer.getCurrentDatabase();
+            if (!executingServer.tableExists(databaseName, tableName)) {
+                throw new CmdExecutionException("That table name doesnt exist in the current database.");
+            }
+            DataLoader loader = new DataLoader(executingServer);
+            Table table = loader.readTableData(databaseName, tableName);
+            return new DeleteCommand(table, condition.build(table, boundTokens));
+        };
     }
 
 
@@ -395,12 +569,24 @@ public class Parser {
             return parseDropDatabase();
         } else if (tokens[tokenIndex].equalsIgnoreCase("TABLE")) {
             return parseDropTable();
+        } else if (tokens[tokenIndex].equalsIgnoreCase("INDEX")) {
+            return parseDropIndex();
         } else {
-            throw new ParseException("Expected 'DATABASE' or 'TABLE' in drop command.");
+            throw new ParseException("Expected 'DATABASE', 'TABLE' or 'INDEX' in drop command.");
         }
     }
 
 
+    // DROP INDEX <name> ;
+    public DBCommand parseDropIndex() throws ParseException {
+        tokenIndex++; // move past "INDEX"
+        if (tokens.length != 4) {
+            throw new ParseException("Expected the name of an index following 'DROP INDEX'.");
+        }
+        return new DropIndex(tokens[tokenIndex].toLowerCase());
+    }
+
+
     public DBCommand parseDropTable() throws CmdExecutionException {
         tokenIndex++; // move past "TABLE"
         String tableName = tokens[tokenIndex].toLowerCase();
@@ -428,39 +614,50 @@ public class Parser {
     }
 
 
-    public DBCommand parseInsert() throws ParseException, CmdExecutionException {
+    public DBCommand parseInsert() throws ParseException, CmdExecutionException, IOException {
+        return planInsert().bind(server, tokens);
+    }
+
+
+    private StatementPlan planInsert() throws ParseException {
         tokenIndex++; // move past "INSERT"
         if (!tokens[tokenIndex].equalsIgnoreCase("INTO")) {
             throw new ParseException("Expected 'INTO' following an 'INSERT' query.");
         }
         tokenIndex++;
         String tableName = tokens[tokenIndex].toLowerCase();
-        String databaseName = server.getCurrentDatabase().toLowerCase();
-        if (!server.tableExists(databaseName, tableName)) {
-            throw new ParseException("That table doesnt exist in the current Database.");
-        }
         tokenIndex++; // move past the table name
 
         if (!tokens[tokenIndex].equalsIgnoreCase("VALUES")) {
             throw new ParseException("Expected 'VALUES' following the table name.");
         }
         tokenIndex++;
-        ArrayList<String> values = parseValueList();
-
-        return new InsertCommand(tableName, values);
+        ArrayList<Integer> valuePositions = parseValueList();
 
+        return (executingServer, boundTokens) -> {
+            String databaseName = executingServer.getCurrentDatabase().toLowerCase();
+            if (!executingServer.tableExists(databaseName, tableName)) {
+                throw new ParseException("That table doesnt exist in the current Database.");
+            }
+            ArrayList<String> values = new ArrayList<>(valuePositions.size());
+            for (int position : valuePositions) {
+                values.add(valueAt(boundTokens, position));
+            }
+            return new InsertCommand(tableName, values);
+        };
     }
 
 
-    private ArrayList<String> parseValueList() throws ParseException {
-        ArrayList<String> values = new ArrayList<>();
+    // the positions of the values, which are each checked to be a literal
+    private ArrayList<Integer> parseValueList() throws ParseException {
+        ArrayList<Integer> values = new ArrayList<>();
         if (!tokens[tokenIndex].equals("(")) {
             throw new ParseException("Expected: '('.");
         }
         tokenIndex++;
         while (!tokens[tokenIndex].equals(")")) {
-            String value = parseValue(tokens[tokenIndex]);
-            values.add(value);
+            parseValueAt(tokenIndex);
+            values.add(tokenIndex);
             tokenIndex++; // Move past the value
             if (",".equals(tokens[tokenIndex])) {
                 tokenIndex++; // Move past comma
@@ -503,17 +700,38 @@ public class Parser {
     }
 
 
+    // the lexer has already worked out what kind of literal each token is, so there's nothing to re-check
+    private String parseValueAt(int index) throws ParseException {
+        if (preparing && tokens[index].equals("?")) {
+            placeholderCount++;
+            return tokens[index];
+        }
+        return switch (tokenTypes[index]) {
+            case STRING, BOOLEAN, INTEGER, FLOAT -> tokens[index];
+            case KEYWORD -> parseValue(tokens[index]); // NULL
+            default -> throw new ParseException("Unknown value type entered.");
+        };
+    }
+
+
+    // a value out of the bound tokens, already checked by parseValueAt, with NULL stored as a blank cell
+    private static String valueAt(String[] boundTokens, int position) {
+        String value = boundTokens[position];
+        return value.equalsIgnoreCase("NULL") ? " " : value;
+    }
+
+
     public boolean isStringLiteral(String token) {
         return token.startsWith("'") && token.endsWith("'");
     }
 
     // [IntegerLiteral]  ::=  [DigitSequence] | "-" [DigitSequence] | "+" [DigitSequence]
     public boolean isIntegerLiteral(String token) {
-        return token.matches("^[+-]?\\d+$");
+        return Token.isInteger(token);
     }
 
     public boolean isFloatLiteral(String token) {
-        return token.matches("^[+-]?\\d+\\.\\d+$");
+        return Token.isFloat(token);
     }
 
     public boolean isBoolLiteral(String token) {
@@ -537,15 +755,55 @@ public class Parser {
         if (currentToken.equalsIgnoreCase("DATABASE")) {
             tokenIndex++;
             String databaseName = tokens[tokenIndex].toLowerCase();
+            if (tokenIndex + 1 < tokens.length && tokens[tokenIndex + 1].equalsIgnoreCase("STORAGE")) {
+                tokenIndex += 2; // move past "STORAGE"
+                if (tokenIndex >= tokens.length || TableFormat.forName(tokens[tokenIndex]) == null) {
+                    throw new ParseException("Expected 'TEXT', 'COLUMNAR' or 'PAGED' following STORAGE.");
+                }
+                if (tokenIndex + 2 != tokens.length) {
+                    throw new ParseException("Expected ';' following the storage format, instead found: " + tokens[tokenIndex + 1]);
+                }
+                return new CreateDatabase(databaseName, TableFormat.forName(tokens[tokenIndex]));
+            }
             return new CreateDatabase(databaseName);
         } else if (currentToken.equalsIgnoreCase("TABLE")) {
             return parseCreateTable();
+        } else if (currentToken.equalsIgnoreCase("INDEX")) {
+            return parseCreateIndex();
         } else {
-            throw new ParseException("Expected 'DATABASE' or 'TABLE' following a CREATE statement.");
+            throw new ParseException("Expected 'DATABASE', 'TABLE' or 'INDEX' following a CREATE statement.");
         }
     }
 
 
+    // CREATE INDEX <name> ON <table> ( <column> ) ;
+    private DBCommand parseCreateIndex() throws ParseException, CmdExecutionException {
+        tokenIndex++; // move past "INDEX"
+        if (tokens.length != 9 || !isValidPlainText(tokens[tokenIndex])) {
+            throw new ParseException("Expected an index name, 'ON', a table name and a column in brackets following CREATE INDEX.");
+        }
+        String indexName = tokens[tokenIndex].toLowerCase();
+        tokenIndex++; // move past the index name
+        if (!tokens[tokenIndex].equalsIgnoreCase("ON")) {
+            throw new ParseException("Expected 'ON' following the index name, instead found: " + tokens[tokenIndex]);
+        }
+        tokenIndex++; // move past "ON"
+        String tableName = tokens[tokenIndex].toLowerCase();
+        if (!server.tableExists(server.getCurrentDatabase(), tableName)) {
+            throw new CmdExecutionException("That table name doesnt exist in the current database.");
+        }
+        tokenIndex++; // move past the table name
+        if (!tokens[tokenIndex].equals("(") || !tokens[tokenIndex + 2].equals(")")) {
+            throw new ParseException("Expected the column to index in brackets following the table name.");
+        }
+        String columnName = tokens[tokenIndex + 1];
+        if (!parseAttributeName(columnName)) {
+            throw new ParseException("Invalid attribute name: " + columnName);
+        }
+        return new CreateIndex(indexName, tableName, columnName);
+    }
+
+
     private DBCommand parseCreateTable() throws ParseException, CmdExecutionException {
         ArrayList<String> emptyColumnNames = new ArrayList<>();
         tokenIndex++; // move past "TABLE"
@@ -561,9 +819,30 @@ public class Parser {
             throw new ParseException("Expected: '(' before the attribute list, instead found: " + tokens[tokenIndex]);
         }
         tokenIndex++; // move past the ")"
-        ArrayList<String> columNames = parseAttributeList();
+        ArrayList<String> columNames = new ArrayList<>();
+        ArrayList<ColumnType> columnTypes = new ArrayList<>();
+        while (!tokens[tokenIndex].equals(")")) {
+            if (!parseAttributeName(tokens[tokenIndex])) {
+                throw new ParseException("Invalid attribute name: " + tokens[tokenIndex]);
+            }
+            columNames.add(tokens[tokenIndex]);
+            tokenIndex++;
+            // a type after the name declares it, so a column can still be called e.g. 'text'
+            ColumnType columnType = null;
+            if (!tokens[tokenIndex].equals(",") && !tokens[tokenIndex].equals(")")) {
+                columnType = ColumnType.forName(tokens[tokenIndex]);
+                if (columnType == null) {
+                    throw new ParseException("Expected 'INT', 'FLOAT', 'BOOL' or 'TEXT' after " + columNames.get(columNames.size() - 1) + ", instead found: " + tokens[tokenIndex]);
+                }
+                tokenIndex++;
+            }
+            columnTypes.add(columnType);
+            if (",".equals(tokens[tokenIndex])) {
+                tokenIndex++; // Move past comma
+            }
+        }
 
-        return new CreateTable(tableName, columNames);
+        return new CreateTable(tableName, columNames, columnTypes);
     }
 
 }
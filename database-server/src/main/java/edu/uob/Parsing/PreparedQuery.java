@@ -0,0 +1,52 @@
+package edu.uob.Parsing;
+
+import edu.uob.Exceptions.ParseException;
+import java.util.ArrayList;
+
+/**
+ * A statement prepared with PREPARE. Its query is lexed and parsed once, into a plan that records where
+ * each '?' placeholder's value goes, so EXECUTE only drops the literal values into place and binds the
+ * plan. The plan loads the tables each time it's bound, since the cached copy can change in between.
+ */
+public class PreparedQuery {
+
+    private final String name;
+    private final String[] templateTokens;
+    private final int[] placeholderIndexes;
+    private final StatementPlan plan;
+
+    public PreparedQuery(String name, Token[] templateTokens, StatementPlan plan) {
+        this.name = name;
+        this.templateTokens = Token.textOf(templateTokens);
+        this.plan = plan;
+        ArrayList<Integer> placeholders = new ArrayList<>();
+        for (int i = 0; i < templateTokens.length; i++) {
+            if (templateTokens[i].getText().equals("?")) {
+                placeholders.add(i);
+            }
+        }
+        this.placeholderIndexes = placeholders.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParameterCount() {
+        return placeholderIndexes.length;
+    }
+
+    /** Drops each (already checked) value into the place of the matching placeholder. */
+    public BoundQuery bind(ArrayList<String> values) throws ParseException {
+        if (values.size() != placeholderIndexes.length) {
+            throw new ParseException("Prepared statement '" + name + "' expects " + placeholderIndexes.length
+                    + " value(s) but " + values.size() + " were given.");
+        }
+        String[] tokens = templateTokens.clone();
+        for (int i = 0; i < placeholderIndexes.length; i++) {
+            tokens[placeholderIndexes[i]] = values.get(i);
+        }
+        return new BoundQuery(plan, tokens);
+    }
+
+}
@@ -0,0 +1,19 @@
+package edu.uob.Parsing;
+
+import edu.uob.DBCommand;
+import edu.uob.DBServer;
+import edu.uob.Exceptions.CmdExecutionException;
+import edu.uob.Exceptions.ParseException;
+import java.io.IOException;
+
+/**
+ * A statement that has been parsed but not yet bound to its tables. Binding loads the tables and builds
+ * the command, reading each literal value out of the tokens at the position the parser found it in, so a
+ * prepared statement's plan can be bound again with different values without parsing anything.
+ */
+@FunctionalInterface
+public interface StatementPlan {
+
+    DBCommand bind(DBServer server, String[] tokens) throws ParseException, CmdExecutionException, IOException;
+
+}
@@ -0,0 +1,119 @@
+package edu.uob.Parsing;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** A single token of a query, along with what kind of token the lexer decided it was. */
+public class Token {
+
+    public enum Type {
+        KEYWORD,
+        IDENTIFIER,
+        STRING,
+        INTEGER,
+        FLOAT,
+        BOOLEAN,
+        OPERATOR, // comparison operators and '='
+        SYMBOL    // ( ) , ; *
+    }
+
+    private static final Set<String> KEYWORDS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        KEYWORDS.addAll(Arrays.asList("USE", "CREATE", "DATABASE", "TABLE", "DROP", "ALTER", "ADD", "INSERT",
+                "INTO", "VALUES", "SELECT", "FROM", "WHERE", "UPDATE", "SET", "DELETE", "JOIN", "AND", "OR", "ON",
+                "LIKE", "NOT", "NULL", "SHOW", "PROCESSLIST", "KILL", "TIMEOUT", "PREPARE", "EXECUTE", "AS"));
+    }
+
+    private final Type type;
+    private final String text;
+
+    public Token(Type type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    public static String[] textOf(Token[] tokens) {
+        String[] texts = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            texts[i] = tokens[i].text;
+        }
+        return texts;
+    }
+
+    /** Works out the type of a token that has already been split out of a query. */
+    public static Type classify(String text) {
+        if (text.length() == 1 && "(),;*".indexOf(text.charAt(0)) >= 0) {
+            return Type.SYMBOL;
+        }
+        if (isOperator(text)) {
+            return Type.OPERATOR;
+        }
+        if (text.length() >= 2 && text.charAt(0) == '\'' && text.charAt(text.length() - 1) == '\'') {
+            return Type.STRING;
+        }
+        if (text.equalsIgnoreCase("TRUE") || text.equalsIgnoreCase("FALSE")) {
+            return Type.BOOLEAN;
+        }
+        if (isInteger(text)) {
+            return Type.INTEGER;
+        }
+        if (isFloat(text)) {
+            return Type.FLOAT;
+        }
+        if (KEYWORDS.contains(text)) {
+            return Type.KEYWORD;
+        }
+        return Type.IDENTIFIER;
+    }
+
+    private static boolean isOperator(String text) {
+        return switch (text) {
+            case "=", "==", "<", ">", "<=", ">=", "!=" -> true;
+            default -> false;
+        };
+    }
+
+    // [+-]? digits
+    public static boolean isInteger(String text) {
+        int start = signLength(text);
+        return start < text.length() && digitsEnd(text, start) == text.length();
+    }
+
+    // [+-]? digits . digits
+    public static boolean isFloat(String text) {
+        int start = signLength(text);
+        int point = digitsEnd(text, start);
+        if (point == start || point >= text.length() || text.charAt(point) != '.') {
+            return false;
+        }
+        return point + 1 < text.length() && digitsEnd(text, point + 1) == text.length();
+    }
+
+    private static int signLength(String text) {
+        return !text.isEmpty() && (text.charAt(0) == '+' || text.charAt(0) == '-') ? 1 : 0;
+    }
+
+    private static int digitsEnd(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+}
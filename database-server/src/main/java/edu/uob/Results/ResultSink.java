@@ -0,0 +1,16 @@
+package edu.uob.Results;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the table produced by a query one row at a time, so the protocol in use decides how the
+ * result is encoded instead of every command building one big tab separated string.
+ */
+public interface ResultSink {
+
+    void writeColumns(List<String> columnNames) throws IOException;
+
+    void writeRow(List<String> cells) throws IOException;
+
+}
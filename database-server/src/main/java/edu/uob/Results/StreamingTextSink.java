@@ -0,0 +1,79 @@
+package edu.uob.Results;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes a result table to a connection in the text protocol's layout as the rows are produced.
+ *
+ * <p>The first chunk of output is held back, so a query that fails early (e.g. on its first row) still
+ * gets a plain error response. After that rows go straight to the writer, and a slow client pushes back
+ * on the query through the blocking socket write. If a query fails after output has been sent, the
+ * error line is appended after the rows that were already sent.
+ */
+public class StreamingTextSink implements ResultSink {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final StringBuilder firstChunk = new StringBuilder();
+    private boolean committed = false;
+
+    public StreamingTextSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeColumns(List<String> columnNames) throws IOException {
+        writeLine(columnNames);
+    }
+
+    @Override
+    public void writeRow(List<String> cells) throws IOException {
+        writeLine(cells);
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+        if (committed) {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write('\t');
+                }
+                writer.write(values.get(i));
+            }
+            writer.write('\n');
+            return;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                firstChunk.append('\t');
+            }
+            firstChunk.append(values.get(i));
+        }
+        firstChunk.append('\n');
+        if (firstChunk.length() >= CHUNK_SIZE) {
+            writer.write("[OK]\n");
+            writer.append(firstChunk);
+            firstChunk.setLength(0);
+            committed = true;
+        }
+    }
+
+    /** Writes whatever is still held back along with the statement's status line. */
+    public void finish(String status) throws IOException {
+        if (committed) {
+            if (!status.startsWith("[OK]")) {
+                writer.write(status);
+                writer.write('\n');
+            }
+            return;
+        }
+        writer.write(status);
+        writer.write('\n');
+        if (status.startsWith("[OK]")) {
+            writer.append(firstChunk);
+        }
+    }
+
+}
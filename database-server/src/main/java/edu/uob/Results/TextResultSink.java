@@ -0,0 +1,39 @@
+package edu.uob.Results;
+
+import java.util.List;
+
+/** Collects a result table as tab separated lines, the layout used by the original text protocol. */
+public class TextResultSink implements ResultSink {
+
+    private final StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void writeColumns(List<String> columnNames) {
+        appendLine(columnNames);
+    }
+
+    @Override
+    public void writeRow(List<String> cells) {
+        appendLine(cells);
+    }
+
+    private void appendLine(List<String> values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                builder.append('\t');
+            }
+            builder.append(values.get(i));
+        }
+        builder.append('\n');
+    }
+
+    public boolean isEmpty() {
+        return builder.length() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,69 @@
+package edu.uob;
+
+import edu.uob.Concurrency.RunningStatement;
+import edu.uob.Parsing.PreparedQuery;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Holds the state belonging to a single client connection. */
+public class Session {
+
+    private final long sessionId;
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    private final String clientAddress;
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    private volatile String currentDatabase;
+
+    public String getCurrentDatabase() {
+        return currentDatabase;
+    }
+
+    public void setCurrentDatabase(String databaseName) {
+        this.currentDatabase = databaseName;
+    }
+
+    // 0 means statements may run for as long as they need
+    private volatile long statementTimeoutMillis = 0;
+
+    public long getStatementTimeoutMillis() {
+        return statementTimeoutMillis;
+    }
+
+    public void setStatementTimeoutMillis(long statementTimeoutMillis) {
+        this.statementTimeoutMillis = statementTimeoutMillis;
+    }
+
+    private volatile RunningStatement activeStatement;
+
+    public RunningStatement getActiveStatement() {
+        return activeStatement;
+    }
+
+    public void setActiveStatement(RunningStatement activeStatement) {
+        this.activeStatement = activeStatement;
+    }
+
+    private final ConcurrentHashMap<String, PreparedQuery> preparedQueries = new ConcurrentHashMap<>();
+
+    public void addPreparedQuery(PreparedQuery preparedQuery) {
+        preparedQueries.put(preparedQuery.getName().toLowerCase(), preparedQuery);
+    }
+
+    public PreparedQuery getPreparedQuery(String name) {
+        return preparedQueries.get(name.toLowerCase());
+    }
+
+
+    public Session(long sessionId, String clientAddress) {
+        this.sessionId = sessionId;
+        this.clientAddress = clientAddress;
+    }
+
+}
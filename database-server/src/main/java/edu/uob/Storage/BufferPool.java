@@ -0,0 +1,42 @@
+package edu.uob.Storage;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently written or read pages of paged table files in memory, least recently used first out.
+ * Only clean pages are held here; a page being changed is taken out and put back once it's on disk.
+ */
+final class BufferPool {
+
+    private record PageKey(Path file, int block) {
+    }
+
+    private final int capacityPages;
+    private final LinkedHashMap<PageKey, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    BufferPool(int capacityPages) {
+        this.capacityPages = capacityPages;
+    }
+
+    /** Removes and returns the page starting at this block, or null if it isn't in the pool. */
+    synchronized Page take(Path file, int block) {
+        return pages.remove(new PageKey(file, block));
+    }
+
+    synchronized void put(Path file, int block, Page page) {
+        pages.put(new PageKey(file, block), page);
+        Iterator<Map.Entry<PageKey, Page>> oldest = pages.entrySet().iterator();
+        while (pages.size() > capacityPages && oldest.hasNext()) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    synchronized void invalidate(Path file) {
+        pages.keySet().removeIf(key -> key.file().equals(file));
+    }
+
+}
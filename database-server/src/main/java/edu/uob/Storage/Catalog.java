@@ -0,0 +1,440 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import edu.uob.MetaDataManager;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The databases and tables in a storage folder along with each table's columns and their types, indexes,
+ * row count and next row id, held in memory so statements never have to probe the filesystem to find out
+ * what exists. It's updated from the same log records as the tables and saved to one file at every
+ * checkpoint, recording the last log segment it covers so recovery only replays newer records into it.
+ */
+public class Catalog {
+
+    static final String FILE_NAME = "catalog.dat";
+    private static final String LEGACY_FORMAT_FILE = "storage.format";
+
+    private static final class DatabaseEntry {
+        final TableFormat format;
+        final ConcurrentHashMap<String, TableEntry> tables = new ConcurrentHashMap<>();
+
+        DatabaseEntry(TableFormat format) {
+            this.format = format;
+        }
+    }
+
+    // changed only while the statement changing it holds the table's write lock
+    private static final class TableEntry {
+        volatile List<String> columnNames;
+        volatile int nextRowId;
+        volatile int rowCount;
+        // one per column, replaced rather than changed; a null type means no values yet
+        volatile ColumnType[] columnTypes;
+        volatile boolean[] declaredTypes;
+        // index names to the columns they're on, replaced rather than changed
+        volatile Map<String, String> indexes = Map.of();
+
+        TableEntry(List<String> columnNames, int nextRowId, int rowCount) {
+            this.columnNames = List.copyOf(columnNames);
+            this.nextRowId = nextRowId;
+            this.rowCount = rowCount;
+            this.columnTypes = new ColumnType[columnNames.size()];
+            this.declaredTypes = new boolean[columnNames.size()];
+            this.columnTypes[0] = ColumnType.INT;
+            this.declaredTypes[0] = true;
+        }
+    }
+
+    private final ConcurrentHashMap<String, DatabaseEntry> databases = new ConcurrentHashMap<>();
+    private int coveredSegment;
+    private boolean rebuilt;
+
+    private Catalog() {
+    }
+
+    /** Reads the catalog file, or works out the databases from the folders if there isn't one yet. */
+    static Catalog load(Path folder) throws IOException {
+        Path catalogPath = folder.resolve(FILE_NAME);
+        Catalog catalog = new Catalog();
+        if (Files.exists(catalogPath)) {
+            for (String line : Files.readAllLines(catalogPath, StandardCharsets.UTF_8)) {
+                catalog.readLine(line.split("\t", -1));
+            }
+            return catalog;
+        }
+        catalog.rebuilt = true;
+        try (Stream<Path> children = Files.list(folder)) {
+            for (Path child : children.filter(Files::isDirectory).toList()) {
+                catalog.databases.put(child.getFileName().toString(), new DatabaseEntry(legacyFormat(child)));
+            }
+        }
+        return catalog;
+    }
+
+    private void readLine(String[] fields) throws IOException {
+        switch (fields[0]) {
+            case "covered" -> coveredSegment = Integer.parseInt(fields[1]);
+            case "database" -> {
+                TableFormat format = TableFormat.forName(fields[2]);
+                databases.put(fields[1], new DatabaseEntry(format != null ? format : TableFormat.TEXT));
+            }
+            case "table" -> {
+                DatabaseEntry database = databases.get(fields[1]);
+                if (database == null) {
+                    throw new IOException("The catalog lists a table in a database it doesn't have.");
+                }
+                List<String> columnNames = Arrays.asList(fields).subList(5, fields.length);
+                database.tables.put(fields[2], new TableEntry(columnNames, Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+            case "types" -> {
+                TableEntry table = findTable(fields[1], fields[2]);
+                if (table == null || fields.length - 3 != table.columnNames.size()) {
+                    throw new IOException("The catalog lists types for a table it doesn't have.");
+                }
+                for (int i = 3; i < fields.length; i++) {
+                    // declared types are saved in upper case, inferred ones in lower case
+                    table.columnTypes[i - 3] = ColumnType.forName(fields[i]);
+                    table.declaredTypes[i - 3] = !fields[i].equals(fields[i].toLowerCase());
+                }
+            }
+            case "index" -> {
+                TableEntry table = findTable(fields[1], fields[2]);
+                if (table == null || fields.length != 5) {
+                    throw new IOException("The catalog lists an index on a table it doesn't have.");
+                }
+                table.indexes = withEntry(table.indexes, fields[3], fields[4]);
+            }
+            default -> throw new IOException("Failed to read the catalog.");
+        }
+    }
+
+    // databases created before the catalog recorded a non-text format in a small file of their own
+    private static TableFormat legacyFormat(Path databasePath) throws IOException {
+        Path formatPath = databasePath.resolve(LEGACY_FORMAT_FILE);
+        if (Files.exists(formatPath)) {
+            TableFormat format = TableFormat.forName(Files.readString(formatPath).trim());
+            if (format != null) {
+                return format;
+            }
+        }
+        return TableFormat.TEXT;
+    }
+
+    /** True if there was no catalog file, so the tables still have to be read in with {@link #scanTables}. */
+    boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    /** Fills in every table by reading its file, once the log has been replayed into them. */
+    void scanTables(Path folder) throws IOException {
+        for (Map.Entry<String, DatabaseEntry> database : databases.entrySet()) {
+            Path databasePath = folder.resolve(database.getKey());
+            TableFormat format = database.getValue().format;
+            HashMap<String, TableEntry> replayedTables = new HashMap<>(database.getValue().tables);
+            database.getValue().tables.clear();
+            if (!Files.isDirectory(databasePath)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(databasePath)) {
+                for (Path file : files.filter(file -> file.getFileName().toString().endsWith(format.getFileExtension())).toList()) {
+                    String fileName = file.getFileName().toString();
+                    String tableName = fileName.substring(0, fileName.length() - format.getFileExtension().length());
+                    Table table = format.read(file, tableName);
+                    TableEntry entry = new TableEntry(table.getColumnNames(), 1, table.getRows().size());
+                    int nextRowId = 1;
+                    for (Row row : table.getRows()) {
+                        nextRowId = Math.max(nextRowId, Integer.parseInt(row.getCellData(0)) + 1);
+                        for (int i = 1; i < entry.columnTypes.length; i++) {
+                            String cell = row.findCellData(i);
+                            if (cell != null) {
+                                entry.columnTypes[i] = ColumnType.widen(entry.columnTypes[i], ColumnType.of(cell));
+                            }
+                        }
+                    }
+                    Path metaPath = databasePath.resolve(tableName + ".meta");
+                    if (Files.exists(metaPath)) {
+                        nextRowId = Math.max(nextRowId, MetaDataManager.readNextRowID(metaPath));
+                    }
+                    entry.nextRowId = nextRowId;
+                    if (replayedTables.containsKey(tableName)) {
+                        entry.indexes = replayedTables.get(tableName).indexes; // only the log records indexes
+                    }
+                    database.getValue().tables.put(tableName, entry);
+                }
+            }
+        }
+        rebuilt = false;
+    }
+
+    int getCoveredSegment() {
+        return coveredSegment;
+    }
+
+    // ============================== Lookups ============================== //
+
+    public boolean databaseExists(String databaseName) {
+        return databases.containsKey(databaseName.toLowerCase());
+    }
+
+    public boolean tableExists(String databaseName, String tableName) {
+        DatabaseEntry database = databases.get(databaseName.toLowerCase());
+        return database != null && database.tables.containsKey(tableName.toLowerCase());
+    }
+
+    /** The format the database's tables are stored in, or null if there's no such database. */
+    public TableFormat getFormat(String databaseName) {
+        DatabaseEntry database = databases.get(databaseName.toLowerCase());
+        return database != null ? database.format : null;
+    }
+
+    /** The table's columns with 'id' first, or null if there's no such table. */
+    public ArrayList<String> getColumnNames(String databaseName, String tableName) {
+        TableEntry table = findTable(databaseName, tableName);
+        return table != null ? new ArrayList<>(table.columnNames) : null;
+    }
+
+    /** The id the table's next row will get, or -1 if there's no such table. */
+    public int getNextRowId(String databaseName, String tableName) {
+        TableEntry table = findTable(databaseName, tableName);
+        return table != null ? table.nextRowId : -1;
+    }
+
+    /** How many rows the table has, or -1 if there's no such table. */
+    public int getRowCount(String databaseName, String tableName) {
+        TableEntry table = findTable(databaseName, tableName);
+        return table != null ? table.rowCount : -1;
+    }
+
+    /** The column's type, declared or inferred from its values so far, or null if it has none yet. */
+    public ColumnType getColumnType(String databaseName, String tableName, String columnName) {
+        TableEntry table = findTable(databaseName, tableName);
+        int index = table != null ? indexOfIgnoreCase(table.columnNames, columnName) : -1;
+        return index >= 0 ? table.columnTypes[index] : null;
+    }
+
+    /** The type CREATE TABLE declared for the column, or null if it left it to be inferred. */
+    public ColumnType getDeclaredType(String databaseName, String tableName, String columnName) {
+        TableEntry table = findTable(databaseName, tableName);
+        int index = table != null ? indexOfIgnoreCase(table.columnNames, columnName) : -1;
+        return index >= 0 && table.declaredTypes[index] ? table.columnTypes[index] : null;
+    }
+
+    /** The table's indexes, each index's name to the column it's on. */
+    public Map<String, String> getIndexes(String databaseName, String tableName) {
+        TableEntry table = findTable(databaseName, tableName);
+        return table != null ? table.indexes : Map.of();
+    }
+
+    /** The table the index is on (index names are unique within a database), or null if there's no such index. */
+    public String findIndexedTable(String databaseName, String indexName) {
+        DatabaseEntry database = databases.get(databaseName.toLowerCase());
+        if (database == null) {
+            return null;
+        }
+        for (Map.Entry<String, TableEntry> table : database.tables.entrySet()) {
+            if (table.getValue().indexes.containsKey(indexName.toLowerCase())) {
+                return table.getKey();
+            }
+        }
+        return null;
+    }
+
+    private TableEntry findTable(String databaseName, String tableName) {
+        DatabaseEntry database = databases.get(databaseName.toLowerCase());
+        return database != null ? database.tables.get(tableName.toLowerCase()) : null;
+    }
+
+    // ============================== Updates ============================== //
+
+    /** Brings the catalog up to date with a change that has been logged. */
+    void apply(LogRecord record) {
+        String databaseName = record.getDatabaseName();
+        switch (record.getType()) {
+            case CREATE_DATABASE -> {
+                TableFormat format = TableFormat.forName(record.getFormatName());
+                databases.put(databaseName, new DatabaseEntry(format != null ? format : TableFormat.TEXT));
+            }
+            case DROP_DATABASE -> databases.remove(databaseName);
+            case CREATE_TABLE -> {
+                DatabaseEntry database = databases.get(databaseName);
+                if (database != null) {
+                    ArrayList<String> columnNames = new Table(record.getTableName(), record.getNames()).getColumnNames();
+                    TableEntry table = new TableEntry(columnNames, 1, 0);
+                    List<String> typeNames = record.getValues(); // empty in records logged before types were
+                    for (int i = 1; i < typeNames.size() && i < columnNames.size(); i++) {
+                        table.columnTypes[i] = ColumnType.forName(typeNames.get(i));
+                        table.declaredTypes[i] = table.columnTypes[i] != null;
+                    }
+                    database.tables.put(record.getTableName(), table);
+                }
+            }
+            case DROP_TABLE -> {
+                DatabaseEntry database = databases.get(databaseName);
+                if (database != null) {
+                    database.tables.remove(record.getTableName());
+                }
+            }
+            default -> {
+                TableEntry table = findTable(databaseName, record.getTableName());
+                if (table != null) {
+                    applyToTable(record, table);
+                }
+            }
+        }
+    }
+
+    private static void applyToTable(LogRecord record, TableEntry table) {
+        switch (record.getType()) {
+            case INSERT -> {
+                table.nextRowId = Math.max(table.nextRowId, record.getInsertedRowId() + 1);
+                table.rowCount++;
+                inferTypes(record, table);
+            }
+            case UPDATE -> inferTypes(record, table);
+            case DELETE -> table.rowCount = Math.max(0, table.rowCount - record.getIds().size());
+            case ALTER_ADD -> {
+                String columnName = record.getNames().get(0);
+                if (indexOfIgnoreCase(table.columnNames, columnName) < 0) {
+                    ArrayList<String> columnNames = new ArrayList<>(table.columnNames);
+                    columnNames.add(columnName);
+                    table.columnTypes = Arrays.copyOf(table.columnTypes, columnNames.size());
+                    table.declaredTypes = Arrays.copyOf(table.declaredTypes, columnNames.size());
+                    table.columnNames = List.copyOf(columnNames);
+                }
+            }
+            case ALTER_DROP -> {
+                int index = indexOfIgnoreCase(table.columnNames, record.getNames().get(0));
+                if (index > 0) {
+                    ArrayList<String> columnNames = new ArrayList<>(table.columnNames);
+                    columnNames.remove(index);
+                    table.columnTypes = withoutIndex(table.columnTypes, index);
+                    boolean[] declaredTypes = new boolean[columnNames.size()];
+                    for (int i = 0; i < declaredTypes.length; i++) {
+                        declaredTypes[i] = table.declaredTypes[i < index ? i : i + 1];
+                    }
+                    table.declaredTypes = declaredTypes;
+                    table.columnNames = List.copyOf(columnNames);
+                    LinkedHashMap<String, String> indexes = new LinkedHashMap<>(table.indexes);
+                    indexes.values().removeIf(columnName -> columnName.equalsIgnoreCase(record.getNames().get(0)));
+                    table.indexes = Collections.unmodifiableMap(indexes);
+                }
+            }
+            case CREATE_INDEX -> table.indexes = withEntry(table.indexes, record.getNames().get(0), record.getNames().get(1));
+            case DROP_INDEX -> {
+                LinkedHashMap<String, String> indexes = new LinkedHashMap<>(table.indexes);
+                indexes.remove(record.getNames().get(0));
+                table.indexes = Collections.unmodifiableMap(indexes);
+            }
+            default -> { } // a DELETE leaves the columns as they are
+        }
+    }
+
+    // widens the inferred types of the columns an INSERT or UPDATE wrote to
+    private static void inferTypes(LogRecord record, TableEntry table) {
+        ColumnType[] columnTypes = table.columnTypes.clone();
+        for (int i = 0; i < record.getNames().size(); i++) {
+            int index = indexOfIgnoreCase(table.columnNames, record.getNames().get(i));
+            if (index > 0 && !table.declaredTypes[index]) {
+                columnTypes[index] = ColumnType.widen(columnTypes[index], ColumnType.of(record.getValues().get(i)));
+            }
+        }
+        table.columnTypes = columnTypes;
+    }
+
+    private static Map<String, String> withEntry(Map<String, String> map, String key, String value) {
+        LinkedHashMap<String, String> copy = new LinkedHashMap<>(map);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static ColumnType[] withoutIndex(ColumnType[] array, int index) {
+        ColumnType[] shorter = new ColumnType[array.length - 1];
+        System.arraycopy(array, 0, shorter, 0, index);
+        System.arraycopy(array, index + 1, shorter, index, shorter.length - index);
+        return shorter;
+    }
+
+    private static int indexOfIgnoreCase(List<String> list, String value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).equalsIgnoreCase(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ============================== Saving ============================== //
+
+    /** Takes a copy to be saved once the tables it describes are on disk. */
+    Catalog snapshot(int coveredSegment) {
+        Catalog copy = new Catalog();
+        copy.coveredSegment = coveredSegment;
+        for (Map.Entry<String, DatabaseEntry> database : databases.entrySet()) {
+            DatabaseEntry databaseCopy = new DatabaseEntry(database.getValue().format);
+            for (Map.Entry<String, TableEntry> table : database.getValue().tables.entrySet()) {
+                TableEntry entry = table.getValue();
+                TableEntry entryCopy = new TableEntry(entry.columnNames, entry.nextRowId, entry.rowCount);
+                entryCopy.columnTypes = entry.columnTypes;
+                entryCopy.declaredTypes = entry.declaredTypes;
+                entryCopy.indexes = entry.indexes;
+                databaseCopy.tables.put(table.getKey(), entryCopy);
+            }
+            copy.databases.put(database.getKey(), databaseCopy);
+        }
+        return copy;
+    }
+
+    // written to a temporary file and renamed over the old one, so there's always one whole catalog on disk
+    void save(Path folder) throws IOException {
+        StringBuilder contents = new StringBuilder("covered\t").append(coveredSegment).append('\n');
+        for (Map.Entry<String, DatabaseEntry> database : databases.entrySet()) {
+            contents.append("database\t").append(database.getKey()).append('\t').append(database.getValue().format.getName()).append('\n');
+        }
+        for (Map.Entry<String, DatabaseEntry> database : databases.entrySet()) {
+            for (Map.Entry<String, TableEntry> table : database.getValue().tables.entrySet()) {
+                TableEntry entry = table.getValue();
+                contents.append("table\t").append(database.getKey()).append('\t').append(table.getKey())
+                        .append('\t').append(entry.nextRowId).append('\t').append(entry.rowCount);
+                for (String columnName : entry.columnNames) {
+                    contents.append('\t').append(columnName);
+                }
+                contents.append("\ntypes\t").append(database.getKey()).append('\t').append(table.getKey());
+                for (int i = 0; i < entry.columnTypes.length; i++) {
+                    String typeName = entry.columnTypes[i] != null ? entry.columnTypes[i].name() : "-";
+                    contents.append('\t').append(entry.declaredTypes[i] ? typeName : typeName.toLowerCase());
+                }
+                contents.append('\n');
+                for (Map.Entry<String, String> index : entry.indexes.entrySet()) {
+                    contents.append("index\t").append(database.getKey()).append('\t').append(table.getKey())
+                            .append('\t').append(index.getKey()).append('\t').append(index.getValue()).append('\n');
+                }
+            }
+        }
+        Path catalogPath = folder.resolve(FILE_NAME);
+        Path temporaryPath = folder.resolve(FILE_NAME + ".tmp");
+        Files.writeString(temporaryPath, contents, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryPath, catalogPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,119 @@
+package edu.uob.Storage;
+
+import java.io.IOException;
+
+/**
+ * Background thread that writes dirty tables back to their files, so commits only ever pay for a
+ * sequential log append and any number of changes to a table are coalesced into one write. A checkpoint
+ * runs as soon as the current log segment or the dirty tables grow past their thresholds, otherwise once
+ * per interval if anything was committed since the last one, and a final one runs when the server shuts down.
+ */
+class Checkpointer {
+
+    private final StorageManager storage;
+    private final long segmentBytesThreshold;
+    private final long dirtyBytesThreshold;
+    private final long intervalMillis; // 0 turns the interval off
+    private boolean requested = false;
+    private boolean committedSinceCheckpoint = false;
+    private boolean stopped = false;
+    private Thread thread;
+
+    Checkpointer(StorageManager storage, long segmentBytesThreshold, long dirtyBytesThreshold, long intervalMillis) {
+        this.storage = storage;
+        this.segmentBytesThreshold = segmentBytesThreshold;
+        this.dirtyBytesThreshold = dirtyBytesThreshold;
+        this.intervalMillis = intervalMillis;
+    }
+
+    void committed(long segmentBytes, long dirtyBytes) {
+        if (segmentBytes >= segmentBytesThreshold || dirtyBytes >= dirtyBytesThreshold) {
+            request();
+            return;
+        }
+        synchronized (this) {
+            committedSinceCheckpoint = true;
+            startThread();
+        }
+    }
+
+    synchronized void request() {
+        requested = true;
+        committedSinceCheckpoint = true;
+        startThread();
+        notifyAll();
+    }
+
+    private void startThread() {
+        if (thread == null && !stopped) {
+            thread = new Thread(this::run, "checkpointer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /** Stops the thread, letting a checkpoint it's part way through finish, and then runs a last one. */
+    void shutdown() throws IOException {
+        stop();
+        storage.checkpoint();
+    }
+
+    /** Stops the thread, letting a checkpoint it's part way through finish. */
+    void stop() {
+        Thread running;
+        synchronized (this) {
+            stopped = true;
+            running = thread;
+            notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    awaitCheckpoint();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (stopped) {
+                    return;
+                }
+                requested = false;
+                committedSinceCheckpoint = false;
+            }
+            try {
+                storage.checkpoint();
+            } catch (IOException e) {
+                System.err.println("Checkpoint failed, the log will be kept until the next one: " + e.getMessage());
+            }
+        }
+    }
+
+    private void awaitCheckpoint() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + intervalMillis;
+        while (!requested && !stopped) {
+            if (intervalMillis <= 0) {
+                wait();
+                continue;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                if (committedSinceCheckpoint) {
+                    return;
+                }
+                deadline = System.currentTimeMillis() + intervalMillis;
+                remaining = intervalMillis;
+            }
+            wait(remaining);
+        }
+    }
+
+}
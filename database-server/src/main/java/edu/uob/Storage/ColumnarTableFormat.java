@@ -0,0 +1,568 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.CellSource;
+import edu.uob.DataStructure.ColumnDictionary;
+import edu.uob.DataStructure.LazyRow;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
+import edu.uob.Parsing.Token;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A binary format that stores a table column by column:
+ * <pre>
+ *   header   magic, column count, column names, row count
+ *   blocks   one per column, starting with the encoding it was written with
+ *   footer   the offset of every column block, the zone map, the offset of the footer and the magic again
+ * </pre>
+ * Ids are stored as varint deltas, columns holding only integers or only floats (plus blanks) as fixed
+ * width numbers behind a null bitmap, columns with few distinct values as a dictionary followed by a
+ * varint code per row, and anything else as length-prefixed strings. Numbers are only
+ * encoded as numbers when they'd print back exactly as they were entered. The zone map holds each
+ * column's min and max over every block of {@link #ZONE_ROWS} rows; files written before it was added
+ * simply end straight after the block offsets.
+ */
+public class ColumnarTableFormat implements TableFormat {
+
+    private static final int MAGIC = 0x54424331; // "TBC1"
+
+    private static final byte STRINGS = 0;
+    private static final byte INTEGERS = 1;
+    private static final byte FLOATS = 2;
+    private static final byte ID_DELTAS = 3;
+    private static final byte DICTIONARY = 4;
+
+    private static final String BLANK = " ";
+
+    static final int ZONE_ROWS = 1024;
+    private static final byte ZONE_HAS_NULLS = 1;
+    private static final byte ZONE_NOT_NUMERIC = 2;
+    private static final int ZONE_BYTES = 17; // flags, min, max
+
+    @Override
+    public String getName() {
+        return "columnar";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".tbc";
+    }
+
+    // ============================== Writing ============================== //
+
+    @Override
+    public void write(Path tablePath, Table table) throws IOException {
+        ArrayList<String> columnNames = table.getColumnNames();
+        List<Row> rows = table.getRows();
+        long[] blockOffsets = new long[columnNames.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tablePath), 1 << 16))) {
+            out.writeInt(MAGIC);
+            Varint.write(out, columnNames.size());
+            for (String columnName : columnNames) {
+                writeString(out, columnName);
+            }
+            Varint.write(out, rows.size());
+            for (int column = 0; column < columnNames.size(); column++) {
+                blockOffsets[column] = out.size();
+                writeColumn(out, rows, column);
+            }
+            int footerOffset = out.size();
+            for (long blockOffset : blockOffsets) {
+                out.writeLong(blockOffset);
+            }
+            writeZoneMap(out, rows, columnNames.size());
+            out.writeInt(footerOffset);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    private static void writeColumn(DataOutputStream out, List<Row> rows, int column) throws IOException {
+        byte encoding = chooseEncoding(rows, column);
+        out.writeByte(encoding);
+        switch (encoding) {
+            case ID_DELTAS -> {
+                long previous = 0;
+                for (Row row : rows) {
+                    long id = Long.parseLong(row.getCellData(column));
+                    long delta = id - previous;
+                    Varint.write(out, (delta << 1) ^ (delta >> 63)); // zigzag, ids usually only go up
+                    previous = id;
+                }
+            }
+            case INTEGERS, FLOATS -> {
+                writeNullBitmap(out, rows, column);
+                for (Row row : rows) {
+                    String cell = row.getCellData(column);
+                    if (cell.equals(BLANK)) {
+                        out.writeLong(0);
+                    } else if (encoding == INTEGERS) {
+                        out.writeLong(Long.parseLong(cell));
+                    } else {
+                        out.writeDouble(Double.parseDouble(cell));
+                    }
+                }
+            }
+            case DICTIONARY -> writeDictionaryColumn(out, rows, column);
+            default -> {
+                for (Row row : rows) {
+                    if (column >= row.getCellCount()) {
+                        Varint.write(out, 0); // rows read from older files can be short
+                    } else {
+                        byte[] bytes = row.getCellData(column).getBytes(StandardCharsets.UTF_8);
+                        Varint.write(out, bytes.length + 1L);
+                        out.write(bytes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeZoneMap(DataOutputStream out, List<Row> rows, int columnCount) throws IOException {
+        out.writeInt(ZONE_ROWS);
+        for (int column = 0; column < columnCount; column++) {
+            for (int start = 0; start < rows.size(); start += ZONE_ROWS) {
+                byte flags = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (Row row : rows.subList(start, Math.min(start + ZONE_ROWS, rows.size()))) {
+                    String cell = column < row.getCellCount() ? row.getCellData(column) : BLANK;
+                    if (cell.equals(BLANK)) {
+                        flags |= ZONE_HAS_NULLS;
+                        continue;
+                    }
+                    // parsed the same way the comparison conditions parse cells
+                    double number = (flags & ZONE_NOT_NUMERIC) != 0 ? Double.NaN : parseNumber(cell);
+                    if (Double.isNaN(number)) {
+                        flags |= ZONE_NOT_NUMERIC;
+                        continue;
+                    }
+                    min = Math.min(min, number);
+                    max = Math.max(max, number);
+                }
+                out.writeByte(flags);
+                out.writeDouble(min);
+                out.writeDouble(max);
+            }
+        }
+    }
+
+    private static double parseNumber(String cell) {
+        try {
+            return Double.parseDouble(cell);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // codes are 1 based, 0 marks a cell missing from a short row
+    private static void writeDictionaryColumn(DataOutputStream out, List<Row> rows, int column) throws IOException {
+        LinkedHashMap<String, Integer> codes = new LinkedHashMap<>();
+        for (Row row : rows) {
+            if (column < row.getCellCount()) {
+                codes.putIfAbsent(row.getCellData(column), codes.size() + 1);
+            }
+        }
+        Varint.write(out, codes.size());
+        for (String value : codes.keySet()) {
+            writeString(out, value);
+        }
+        for (Row row : rows) {
+            Varint.write(out, column < row.getCellCount() ? codes.get(row.getCellData(column)) : 0);
+        }
+    }
+
+    private static byte chooseEncoding(List<Row> rows, int column) {
+        boolean allIntegers = true;
+        boolean allFloats = true;
+        boolean anyBlank = false;
+        for (Row row : rows) {
+            if (column >= row.getCellCount()) {
+                return stringEncoding(rows, column);
+            }
+            String cell = row.getCellData(column);
+            if (cell.equals(BLANK)) {
+                anyBlank = true;
+                continue;
+            }
+            allIntegers = allIntegers && isExactInteger(cell);
+            allFloats = allFloats && isExactFloat(cell);
+            if (!allIntegers && !allFloats) {
+                return stringEncoding(rows, column);
+            }
+        }
+        if (column == 0 && allIntegers && !anyBlank) {
+            return ID_DELTAS;
+        }
+        if (allIntegers) {
+            return INTEGERS;
+        }
+        return allFloats ? FLOATS : stringEncoding(rows, column);
+    }
+
+    // a dictionary only pays for itself when values repeat, so each one has to turn up a few times on average
+    private static byte stringEncoding(List<Row> rows, int column) {
+        int maxEntries = Math.min(ColumnDictionary.MAX_ENTRIES, rows.size() / 4);
+        HashSet<String> distinctValues = new HashSet<>();
+        for (Row row : rows) {
+            if (column < row.getCellCount() && distinctValues.add(row.getCellData(column)) && distinctValues.size() > maxEntries) {
+                return STRINGS;
+            }
+        }
+        return DICTIONARY;
+    }
+
+    private static boolean isExactInteger(String cell) {
+        if (!Token.isInteger(cell)) {
+            return false;
+        }
+        try {
+            return Long.toString(Long.parseLong(cell)).equals(cell);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isExactFloat(String cell) {
+        return Token.isFloat(cell) && Double.toString(Double.parseDouble(cell)).equals(cell);
+    }
+
+    private static void writeNullBitmap(DataOutputStream out, List<Row> rows, int column) throws IOException {
+        byte[] bitmap = new byte[(rows.size() + 7) / 8];
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getCellData(column).equals(BLANK)) {
+                bitmap[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.write(bitmap);
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Varint.write(out, bytes.length);
+        out.write(bytes);
+    }
+
+    // ============================== Reading ============================== //
+
+    @Override
+    public Table read(Path tablePath, String tableName, boolean offHeap) throws IOException {
+        try {
+            ColumnCells columns = open(ByteBuffer.wrap(Files.readAllBytes(tablePath)));
+            Table table = TableFormat.newTable(tableName, columns.columnNames, offHeap);
+            for (int i = 0; i < columns.rowCount; i++) {
+                ArrayList<String> cells = new ArrayList<>(columns.columns.length - 1);
+                for (int column = 1; column < columns.columns.length && columns.column(column).has(i); column++) {
+                    cells.add(columns.column(column).cell(i));
+                }
+                table.insertRow(new Row(Integer.parseInt(columns.readCell(i, 0)), cells));
+            }
+            table.shareRepeatedValues();
+            return table;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+    }
+
+    // only the footer and header are read here, a column block is decoded the first time one of its cells is asked for
+    @Override
+    public Table map(Path tablePath, String tableName) throws IOException {
+        MappedByteBuffer buffer = MappedTextTable.mapFile(tablePath);
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            ColumnCells columns = open(buffer);
+            Table table = columns.newTable(tableName);
+            for (int i = 0; i < columns.rowCount; i++) {
+                table.insertRow(new LazyRow(columns, i));
+            }
+            table.setZoneMap(columns.zoneMap);
+            return table;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+    }
+
+    @Override
+    public ArrayList<String> readColumnNames(Path tablePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(tablePath))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Failed to read the table file.");
+            }
+            // the header is tiny, so read just enough of it to cover the names
+            byte[] start = in.readNBytes(64 * 1024);
+            return readHeader(ByteBuffer.wrap(start));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+    }
+
+    // columns are written end to end, so any change means writing the whole file again
+    @Override
+    public boolean writesChangedRows() {
+        return false;
+    }
+
+    @Override
+    public void writeChangedRows(Path tablePath, Table table, TableChanges changes) throws IOException {
+        write(tablePath, table);
+    }
+
+    // binary tables are only rewritten whole, at checkpoints
+    @Override
+    public boolean appendRow(Path tablePath, Row row) {
+        return false;
+    }
+
+    private static ColumnCells open(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        if (limit < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(limit - 4) != MAGIC) {
+            throw new IOException("Failed to read the table file.");
+        }
+        buffer.position(4);
+        ArrayList<String> columnNames = readHeader(buffer);
+        int rowCount = (int) Varint.read(buffer);
+        int footerOffset = buffer.getInt(limit - 8);
+        int[] blockOffsets = new int[columnNames.size()];
+        for (int column = 0; column < blockOffsets.length; column++) {
+            blockOffsets[column] = (int) buffer.getLong(footerOffset + column * 8);
+        }
+        ColumnCells columns = new ColumnCells(buffer, columnNames, rowCount, blockOffsets);
+        int zonesOffset = footerOffset + blockOffsets.length * 8;
+        if (zonesOffset < limit - 8) {
+            columns.zoneMap = new ColumnZones(buffer, zonesOffset, blockOffsets.length, rowCount);
+        }
+        return columns;
+    }
+
+    private static ArrayList<String> readHeader(ByteBuffer buffer) {
+        int columnCount = (int) Varint.read(buffer);
+        ArrayList<String> columnNames = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            int length = (int) Varint.read(buffer);
+            columnNames.add(readString(buffer, buffer.position(), length));
+            buffer.position(buffer.position() + length);
+        }
+        return columnNames;
+    }
+
+    private static String readString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The cells of a columnar file, each column block is only decoded once something reads from it. */
+    private static final class ColumnCells implements CellSource {
+
+        private final ByteBuffer buffer;
+        private final ArrayList<String> columnNames;
+        private final int rowCount;
+        private final int[] blockOffsets;
+        private final ColumnBlock[] columns;
+        private ZoneMap zoneMap;
+
+        private ColumnCells(ByteBuffer buffer, ArrayList<String> columnNames, int rowCount, int[] blockOffsets) {
+            this.buffer = buffer;
+            this.columnNames = columnNames;
+            this.rowCount = rowCount;
+            this.blockOffsets = blockOffsets;
+            this.columns = new ColumnBlock[columnNames.size()];
+        }
+
+        private Table newTable(String tableName) {
+            return columnNames.size() > 1 ? new Table(tableName, columnNames) : new Table(tableName);
+        }
+
+        private ColumnBlock column(int columnIndex) {
+            if (columns[columnIndex] == null) {
+                columns[columnIndex] = new ColumnBlock(buffer, blockOffsets[columnIndex], rowCount);
+            }
+            return columns[columnIndex];
+        }
+
+        @Override
+        public String readCell(int rowIndex, int columnIndex) {
+            if (columnIndex < 0 || columnIndex >= columns.length) {
+                return null;
+            }
+            ColumnBlock column = column(columnIndex);
+            return column.has(rowIndex) ? column.cell(rowIndex) : null;
+        }
+
+        @Override
+        public int readCode(int rowIndex, int columnIndex) {
+            if (columnIndex < 0 || columnIndex >= columns.length) {
+                return -1;
+            }
+            return column(columnIndex).code(rowIndex);
+        }
+
+        @Override
+        public int countCells(int rowIndex) {
+            int cellCount = 0;
+            while (cellCount < columns.length && column(cellCount).has(rowIndex)) {
+                cellCount++;
+            }
+            return cellCount;
+        }
+    }
+
+    /** The zone map from the footer, read straight from the buffer whenever a scan asks about a block. */
+    private static final class ColumnZones implements ZoneMap {
+
+        private final ByteBuffer buffer;
+        private final int blockRows;
+        private final int zonesStart;
+        private final int blocksPerColumn;
+
+        private ColumnZones(ByteBuffer buffer, int offset, int columnCount, int rowCount) throws IOException {
+            this.buffer = buffer;
+            this.blockRows = buffer.getInt(offset);
+            if (blockRows <= 0) {
+                throw new IOException("Failed to read the table file.");
+            }
+            this.zonesStart = offset + 4;
+            this.blocksPerColumn = (rowCount + blockRows - 1) / blockRows;
+            if (zonesStart + (long) columnCount * blocksPerColumn * ZONE_BYTES > buffer.limit() - 8) {
+                throw new IOException("Failed to read the table file.");
+            }
+        }
+
+        private int zoneOffset(int block, int columnIndex) {
+            return zonesStart + (columnIndex * blocksPerColumn + block) * ZONE_BYTES;
+        }
+
+        @Override
+        public int getBlockRows() {
+            return blockRows;
+        }
+
+        @Override
+        public boolean isNumeric(int block, int columnIndex) {
+            return (buffer.get(zoneOffset(block, columnIndex)) & ZONE_NOT_NUMERIC) == 0;
+        }
+
+        @Override
+        public boolean hasNulls(int block, int columnIndex) {
+            return (buffer.get(zoneOffset(block, columnIndex)) & ZONE_HAS_NULLS) != 0;
+        }
+
+        @Override
+        public double getMin(int block, int columnIndex) {
+            return buffer.getDouble(zoneOffset(block, columnIndex) + 1);
+        }
+
+        @Override
+        public double getMax(int block, int columnIndex) {
+            return buffer.getDouble(zoneOffset(block, columnIndex) + 9);
+        }
+    }
+
+    /**
+     * One column block. Ids are decoded up front since each depends on the one before, numbers are read
+     * straight from their fixed position, strings only have their positions worked out and a dictionary
+     * has each of its values decoded once, shared by every row using it.
+     */
+    private static final class ColumnBlock {
+
+        private final ByteBuffer buffer;
+        private final byte encoding;
+        private long[] ids;
+        private int bitmapStart;
+        private int valuesStart;
+        private int[] stringStarts;
+        private int[] stringLengths;
+        private String[] dictionary;
+        private int[] codes;
+
+        private ColumnBlock(ByteBuffer source, int offset, int rowCount) {
+            this.buffer = source.duplicate();
+            buffer.position(offset);
+            this.encoding = buffer.get();
+            switch (encoding) {
+                case ID_DELTAS -> {
+                    ids = new long[rowCount];
+                    long previous = 0;
+                    for (int i = 0; i < rowCount; i++) {
+                        long zigzag = Varint.read(buffer);
+                        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                        ids[i] = previous;
+                    }
+                }
+                case INTEGERS, FLOATS -> {
+                    bitmapStart = buffer.position();
+                    valuesStart = bitmapStart + (rowCount + 7) / 8;
+                }
+                case STRINGS -> {
+                    stringStarts = new int[rowCount];
+                    stringLengths = new int[rowCount];
+                    for (int i = 0; i < rowCount; i++) {
+                        int length = (int) Varint.read(buffer) - 1; // -1 marks a missing cell
+                        stringStarts[i] = buffer.position();
+                        stringLengths[i] = length;
+                        buffer.position(buffer.position() + Math.max(length, 0));
+                    }
+                }
+                case DICTIONARY -> {
+                    dictionary = new String[(int) Varint.read(buffer)];
+                    for (int i = 0; i < dictionary.length; i++) {
+                        int length = (int) Varint.read(buffer);
+                        dictionary[i] = readString(buffer, buffer.position(), length);
+                        buffer.position(buffer.position() + length);
+                    }
+                    codes = new int[rowCount];
+                    for (int i = 0; i < rowCount; i++) {
+                        codes[i] = (int) Varint.read(buffer) - 1; // -1 marks a missing cell
+                        if (codes[i] >= dictionary.length) {
+                            throw new IllegalArgumentException("Dictionary code out of range");
+                        }
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown column encoding " + encoding);
+            }
+        }
+
+        private boolean has(int rowIndex) {
+            return switch (encoding) {
+                case STRINGS -> stringLengths[rowIndex] >= 0;
+                case DICTIONARY -> codes[rowIndex] >= 0;
+                default -> true;
+            };
+        }
+
+        private int code(int rowIndex) {
+            return encoding == DICTIONARY ? codes[rowIndex] : -1;
+        }
+
+        private String cell(int rowIndex) {
+            return switch (encoding) {
+                case ID_DELTAS -> Long.toString(ids[rowIndex]);
+                case INTEGERS -> isBlank(rowIndex) ? BLANK : Long.toString(buffer.getLong(valuesStart + rowIndex * 8));
+                case FLOATS -> isBlank(rowIndex) ? BLANK : Double.toString(buffer.getDouble(valuesStart + rowIndex * 8));
+                case DICTIONARY -> dictionary[codes[rowIndex]];
+                default -> readString(buffer, stringStarts[rowIndex], stringLengths[rowIndex]);
+            };
+        }
+
+        private boolean isBlank(int rowIndex) {
+            return (buffer.get(bitmapStart + (rowIndex >> 3)) & (1 << (rowIndex & 7))) != 0;
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.HashIndex;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One change written to the write-ahead log. Rows are identified by id and cells by column name rather
+ * than position, so applying a record is idempotent: replaying the log over a table file that already
+ * contains some of its changes ends in the same state as replaying it over one that contains none.
+ */
+public class LogRecord {
+
+    public enum Type {
+        CREATE_DATABASE, // names = the table format it uses
+        DROP_DATABASE,
+        CREATE_TABLE,  // names = the new table's columns, values = their declared types ("" where undeclared)
+        DROP_TABLE,
+        INSERT,        // ids = the new row's id, names/values = its cells
+        UPDATE,        // ids = the rows that matched, names/values = the SET list
+        DELETE,        // ids = the rows removed
+        ALTER_ADD,     // names = the column added
+        ALTER_DROP,    // names = the column dropped
+        CREATE_INDEX,  // names = the new index and the column it's on
+        DROP_INDEX     // names = the index dropped
+    }
+
+    private final Type type;
+    private final String databaseName;
+    private final String tableName;
+    private final ArrayList<String> ids;
+    private final ArrayList<String> names;
+    private final ArrayList<String> values;
+
+    private LogRecord(Type type, String databaseName, String tableName, ArrayList<String> ids,
+                      ArrayList<String> names, ArrayList<String> values) {
+        this.type = type;
+        this.databaseName = databaseName.toLowerCase();
+        this.tableName = tableName.toLowerCase();
+        this.ids = ids;
+        this.names = names;
+        this.values = values;
+    }
+
+    public static LogRecord createDatabase(String databaseName, String formatName) {
+        return new LogRecord(Type.CREATE_DATABASE, databaseName, "", new ArrayList<>(), new ArrayList<>(List.of(formatName)), new ArrayList<>());
+    }
+
+    public static LogRecord dropDatabase(String databaseName) {
+        return new LogRecord(Type.DROP_DATABASE, databaseName, "", new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    public static LogRecord createTable(String databaseName, String tableName, List<String> columnNames, List<ColumnType> columnTypes) {
+        ArrayList<String> typeNames = new ArrayList<>();
+        for (ColumnType columnType : columnTypes) {
+            typeNames.add(columnType != null ? columnType.name() : "");
+        }
+        return new LogRecord(Type.CREATE_TABLE, databaseName, tableName, new ArrayList<>(), new ArrayList<>(columnNames), typeNames);
+    }
+
+    public static LogRecord dropTable(String databaseName, String tableName) {
+        return new LogRecord(Type.DROP_TABLE, databaseName, tableName, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    public static LogRecord insert(String databaseName, String tableName, List<String> columnNames, Row row) {
+        ArrayList<String> ids = new ArrayList<>(List.of(row.getCellData(0)));
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> values = new ArrayList<>();
+        for (int i = 1; i < row.getCellCount() && i < columnNames.size(); i++) {
+            names.add(columnNames.get(i));
+            values.add(row.getCellData(i));
+        }
+        return new LogRecord(Type.INSERT, databaseName, tableName, ids, names, values);
+    }
+
+    public static LogRecord update(String databaseName, String tableName, List<String> rowIds, List<String> columnNames, List<String> newValues) {
+        return new LogRecord(Type.UPDATE, databaseName, tableName, new ArrayList<>(rowIds), new ArrayList<>(columnNames), new ArrayList<>(newValues));
+    }
+
+    public static LogRecord delete(String databaseName, String tableName, List<String> rowIds) {
+        return new LogRecord(Type.DELETE, databaseName, tableName, new ArrayList<>(rowIds), new ArrayList<>(), new ArrayList<>());
+    }
+
+    public static LogRecord alterAdd(String databaseName, String tableName, String columnName) {
+        return new LogRecord(Type.ALTER_ADD, databaseName, tableName, new ArrayList<>(), new ArrayList<>(List.of(columnName)), new ArrayList<>());
+    }
+
+    public static LogRecord alterDrop(String databaseName, String tableName, String columnName) {
+        return new LogRecord(Type.ALTER_DROP, databaseName, tableName, new ArrayList<>(), new ArrayList<>(List.of(columnName)), new ArrayList<>());
+    }
+
+    public static LogRecord createIndex(String databaseName, String tableName, String indexName, String columnName) {
+        return new LogRecord(Type.CREATE_INDEX, databaseName, tableName, new ArrayList<>(), new ArrayList<>(List.of(indexName, columnName)), new ArrayList<>());
+    }
+
+    public static LogRecord dropIndex(String databaseName, String tableName, String indexName) {
+        return new LogRecord(Type.DROP_INDEX, databaseName, tableName, new ArrayList<>(), new ArrayList<>(List.of(indexName)), new ArrayList<>());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public ArrayList<String> getNames() {
+        return names;
+    }
+
+    public ArrayList<String> getValues() {
+        return values;
+    }
+
+    public ArrayList<String> getIds() {
+        return ids;
+    }
+
+    public String getFormatName() {
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    /** The id of the row an INSERT added. */
+    public int getInsertedRowId() {
+        return Integer.parseInt(ids.get(0));
+    }
+
+    /** Applies an INSERT, UPDATE, DELETE, ALTER or index change to the in-memory table (the other types work on files). */
+    public void applyTo(Table table) {
+        switch (type) {
+            case INSERT -> applyInsert(table);
+            case UPDATE -> applyUpdate(table);
+            case DELETE -> table.removeRows(ids);
+            case ALTER_ADD -> {
+                if (columnIndex(table, names.get(0)) < 0) {
+                    table.columnNames.add(names.get(0));
+                    table.initialiseEmptyColumn();
+                }
+            }
+            case ALTER_DROP -> {
+                int index = columnIndex(table, names.get(0));
+                if (index > 0) {
+                    table.removeColumnFromRows(index);
+                    table.removeColumnHeader(index);
+                }
+            }
+            case CREATE_INDEX -> {
+                if (!table.hasIndex(names.get(0))) {
+                    table.addIndex(new HashIndex(names.get(0), names.get(1)));
+                }
+            }
+            case DROP_INDEX -> table.dropIndex(names.get(0));
+            default -> throw new IllegalStateException(type + " records don't apply to a single table.");
+        }
+        table.markChanged();
+    }
+
+    private void applyInsert(Table table) {
+        ArrayList<String> cells = new ArrayList<>();
+        for (int i = 1; i < table.columnNames.size(); i++) {
+            int valueIndex = indexOfIgnoreCase(names, table.columnNames.get(i));
+            cells.add(valueIndex >= 0 ? values.get(valueIndex) : " ");
+        }
+        Row row = new Row(getInsertedRowId(), cells);
+        int existingIndex = table.findRowIndex(getInsertedRowId());
+        if (existingIndex >= 0) {
+            table.replaceRow(existingIndex, row); // already there from an earlier run of the log
+            return;
+        }
+        table.insertRow(row);
+    }
+
+    private void applyUpdate(Table table) {
+        int[] columnIndexes = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            columnIndexes[i] = columnIndex(table, names.get(i));
+        }
+        for (String rowId : ids) { // the rows are found through the table's id index rather than a scan
+            int rowIndex = table.findRowIndex(Integer.parseInt(rowId));
+            if (rowIndex < 0) {
+                continue;
+            }
+            for (int i = 0; i < columnIndexes.length; i++) {
+                if (columnIndexes[i] <= 0) {
+                    continue; // the column has since been dropped (and 'id' is never updated)
+                }
+                table.setCell(rowIndex, columnIndexes[i], values.get(i));
+            }
+        }
+    }
+
+    private static int columnIndex(Table table, String columnName) {
+        return indexOfIgnoreCase(table.columnNames, columnName);
+    }
+
+    private static int indexOfIgnoreCase(List<String> list, String value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).equalsIgnoreCase(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ============================== Encoding ============================== //
+
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type.ordinal());
+        writeString(out, databaseName);
+        writeString(out, tableName);
+        writeList(out, ids);
+        writeList(out, names);
+        writeList(out, values);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static LogRecord decode(DataInputStream in) throws IOException {
+        int typeIndex = in.readUnsignedByte();
+        if (typeIndex >= Type.values().length) {
+            throw new IOException("Unknown log record type " + typeIndex);
+        }
+        Type type = Type.values()[typeIndex];
+        String databaseName = readString(in);
+        String tableName = readString(in);
+        return new LogRecord(type, databaseName, tableName, readList(in), readList(in), readList(in));
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String value : list) {
+            writeString(out, value);
+        }
+    }
+
+    private static ArrayList<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        ArrayList<String> list = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            list.add(readString(in));
+        }
+        return list;
+    }
+
+    // writeUTF is limited to 64KB, cell values aren't
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+}
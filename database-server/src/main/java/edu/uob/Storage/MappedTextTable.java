@@ -0,0 +1,151 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.CellSource;
+import edu.uob.DataStructure.LazyRow;
+import edu.uob.DataStructure.Table;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A text table file mapped into memory. Opening it only finds where each line starts and ends; a cell is
+ * found by counting tabs along its line and is only turned into a string when something reads it. Cells
+ * come back exactly as BufferedReader and split("\t") would give them, trailing empty cells included.
+ */
+class MappedTextTable implements CellSource {
+
+    private final ByteBuffer buffer;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int lineCount;
+
+    private MappedTextTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int capacity = 1024;
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int count = 0;
+        int lineStart = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && buffer.get(i) != '\n') {
+                continue;
+            }
+            if (i == limit && lineStart == limit) {
+                break; // the file ended with a newline
+            }
+            int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = lineStart;
+            ends[count] = lineEnd;
+            count++;
+            lineStart = i + 1;
+        }
+        this.lineStarts = starts;
+        this.lineEnds = ends;
+        this.lineCount = count;
+    }
+
+    /** Maps the file and returns its table, or null if the file is too large to map in one go. */
+    static Table map(Path tablePath, String tableName) throws IOException {
+        MappedByteBuffer buffer = mapFile(tablePath);
+        if (buffer == null) {
+            return null;
+        }
+        MappedTextTable lines = new MappedTextTable(buffer);
+        Table table;
+        if (lines.lineCount > 0 && lines.indexOf((byte) '\t', lines.lineStarts[0], lines.lineEnds[0]) >= 0) {
+            String header = lines.decode(lines.lineStarts[0], lines.lineEnds[0]);
+            table = new Table(tableName, new ArrayList<>(Arrays.asList(header.split("\t"))));
+        } else {
+            table = new Table(tableName);
+        }
+        for (int line = 1; line < lines.lineCount; line++) {
+            table.insertRow(new LazyRow(lines, line));
+        }
+        return table;
+    }
+
+    static MappedByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public String readCell(int rowIndex, int columnIndex) {
+        if (columnIndex < 0) {
+            return null;
+        }
+        int position = lineStarts[rowIndex];
+        int lineEnd = lineEnds[rowIndex];
+        for (int column = 0; column < columnIndex; column++) {
+            position = indexOf((byte) '\t', position, lineEnd);
+            if (position < 0) {
+                return null;
+            }
+            position++;
+        }
+        int cellEnd = indexOf((byte) '\t', position, lineEnd);
+        if (cellEnd < 0) {
+            cellEnd = lineEnd;
+        }
+        if (cellEnd == position && columnIndex > 0 && onlyTabsFrom(position, lineEnd)) {
+            return null; // split() drops empty cells at the end of a line
+        }
+        return decode(position, cellEnd);
+    }
+
+    @Override
+    public int countCells(int rowIndex) {
+        int lineStart = lineStarts[rowIndex];
+        int end = lineEnds[rowIndex];
+        while (end > lineStart && buffer.get(end - 1) == '\t') {
+            end--;
+        }
+        int cells = 1;
+        for (int i = lineStart; i < end; i++) {
+            if (buffer.get(i) == '\t') {
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    private int indexOf(byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean onlyTabsFrom(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
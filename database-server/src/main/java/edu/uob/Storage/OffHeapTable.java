@@ -0,0 +1,284 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.CellSource;
+import edu.uob.DataStructure.ColumnVector;
+import edu.uob.DataStructure.LazyRow;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A table whose rows are encoded into direct buffers outside the Java heap, for tables so large that
+ * holding every cell as a String would leave the garbage collector millions of objects to trace. Only an
+ * index stays on the heap, each row's id and where its bytes start, and a cell is decoded into a string
+ * when something reads it through the LazyRow views getRows() hands out. A changed row is written again
+ * at the end and its old bytes left behind, until they add up to half of what's been written and the
+ * live rows get copied into new slabs.
+ */
+public class OffHeapTable extends Table {
+
+    static final int SLAB_BYTES = 4 << 20;
+
+    private final Rows rows; // shared with the tables withName makes
+
+    private final List<Row> rowViews = new AbstractList<>() {
+        @Override
+        public Row get(int index) {
+            Objects.checkIndex(index, rows.rowCount);
+            return new LazyRow(rows, index);
+        }
+
+        @Override
+        public int size() {
+            return rows.rowCount;
+        }
+    };
+
+    public OffHeapTable(String tableName, ArrayList<String> columnNames) {
+        super(tableName, columnNames);
+        this.rows = new Rows();
+    }
+
+    private OffHeapTable(String tableName, OffHeapTable original) {
+        super(tableName, original);
+        this.rows = original.rows;
+    }
+
+    @Override
+    public Table withName(String tableName) {
+        return new OffHeapTable(tableName, this);
+    }
+
+    @Override
+    public List<Row> getRows() {
+        return rowViews;
+    }
+
+    /** What the table keeps on the heap, which is all the table cache's memory budget counts. */
+    long getIndexBytes() {
+        return 256 + 12L * rows.ids.length;
+    }
+
+    /** The bytes of the slabs the rows are written into. */
+    long getOffHeapBytes() {
+        return rows.slabBytes;
+    }
+
+    @Override
+    protected ColumnVector buildColumnVector(int columnIndex) {
+        return ColumnVector.build(rows.rowCount, rowIndex -> rows.readCell(rowIndex, columnIndex));
+    }
+
+    @Override
+    protected int getRowId(int rowIndex) {
+        return rows.ids[rowIndex];
+    }
+
+    @Override
+    protected void appendRow(Row newRow) {
+        List<String> cells = newRow.getCells();
+        rows.add(Integer.parseInt(cells.get(0)), cells.subList(1, cells.size()));
+    }
+
+    @Override
+    protected void putRow(int rowIndex, Row row) {
+        Objects.checkIndex(rowIndex, rows.rowCount);
+        List<String> cells = row.getCells();
+        rows.ids[rowIndex] = Integer.parseInt(cells.get(0));
+        rows.rewrite(rowIndex, cells.subList(1, cells.size()));
+    }
+
+    @Override
+    protected void writeCell(int rowIndex, int columnIndex, String value) {
+        Objects.checkIndex(rowIndex, rows.rowCount);
+        ArrayList<String> cells = rows.readCellsAfterId(rowIndex);
+        while (cells.size() < columnIndex) {
+            cells.add(" ");
+        }
+        cells.set(columnIndex - 1, value);
+        rows.rewrite(rowIndex, cells);
+    }
+
+    @Override
+    protected void deleteRows(Collection<String> rowIds) {
+        HashSet<Integer> removedIds = new HashSet<>();
+        for (String rowId : rowIds) {
+            removedIds.add(Integer.parseInt(rowId));
+        }
+        int kept = 0;
+        for (int rowIndex = 0; rowIndex < rows.rowCount; rowIndex++) {
+            if (removedIds.contains(rows.ids[rowIndex])) {
+                rows.garbageBytes += rows.encodedLength(rows.locations[rowIndex]);
+                continue;
+            }
+            rows.ids[kept] = rows.ids[rowIndex];
+            rows.locations[kept] = rows.locations[rowIndex];
+            kept++;
+        }
+        rows.rowCount = kept;
+        rows.compactIfWasteful();
+    }
+
+    @Override
+    public void initialiseEmptyColumn() {
+        for (int rowIndex = 0; rowIndex < rows.rowCount; rowIndex++) {
+            ArrayList<String> cells = rows.readCellsAfterId(rowIndex);
+            cells.add(" ");
+            rows.rewrite(rowIndex, cells);
+        }
+        markChanged();
+    }
+
+    @Override
+    public void removeColumnFromRows(int index) {
+        for (int rowIndex = 0; index > 0 && rowIndex < rows.rowCount; rowIndex++) {
+            ArrayList<String> cells = rows.readCellsAfterId(rowIndex);
+            if (index - 1 < cells.size()) {
+                cells.remove(index - 1);
+                rows.rewrite(rowIndex, cells);
+            }
+        }
+        markChanged();
+    }
+
+    // there are no strings on the heap to share
+    @Override
+    public void shareRepeatedValues() {
+    }
+
+    // a row is its cell count then each cell as a length and UTF-8 bytes; the id is only in the index
+    private static final class Rows implements CellSource {
+
+        private final ArrayList<ByteBuffer> slabs = new ArrayList<>();
+        private int rowCount = 0;
+        private int[] ids = new int[16];
+        private long[] locations = new long[16]; // the slab in the high half, the offset in the low half
+        private long slabBytes = 0;
+        private long writtenBytes = 0;
+        private long garbageBytes = 0;
+
+        private void add(int id, List<String> cells) {
+            if (rowCount == ids.length) {
+                ids = Arrays.copyOf(ids, rowCount * 2);
+                locations = Arrays.copyOf(locations, rowCount * 2);
+            }
+            ids[rowCount] = id;
+            locations[rowCount] = place(encode(cells));
+            rowCount++;
+        }
+
+        private void rewrite(int rowIndex, List<String> cells) {
+            garbageBytes += encodedLength(locations[rowIndex]);
+            locations[rowIndex] = place(encode(cells));
+            compactIfWasteful();
+        }
+
+        private static byte[] encode(List<String> cells) {
+            byte[][] encodedCells = new byte[cells.size()][];
+            int length = Varint.size(cells.size());
+            for (int i = 0; i < encodedCells.length; i++) {
+                encodedCells[i] = cells.get(i).getBytes(StandardCharsets.UTF_8);
+                length += Varint.size(encodedCells[i].length) + encodedCells[i].length;
+            }
+            ByteBuffer encoded = ByteBuffer.allocate(length);
+            Varint.write(encoded, encodedCells.length);
+            for (byte[] cell : encodedCells) {
+                Varint.write(encoded, cell.length);
+                encoded.put(cell);
+            }
+            return encoded.array();
+        }
+
+        private long place(byte[] encoded) {
+            ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+            if (slab == null || slab.remaining() < encoded.length) {
+                slab = ByteBuffer.allocateDirect(Math.max(SLAB_BYTES, encoded.length));
+                slabs.add(slab);
+                slabBytes += slab.capacity();
+            }
+            long location = ((long) (slabs.size() - 1) << 32) | slab.position();
+            slab.put(encoded);
+            writtenBytes += encoded.length;
+            return location;
+        }
+
+        private int encodedLength(long location) {
+            return encodedLength(slabs.get((int) (location >>> 32)), (int) location);
+        }
+
+        private static int encodedLength(ByteBuffer slab, int start) {
+            long cellCount = Varint.read(slab, start);
+            int offset = start + Varint.size(cellCount);
+            for (long i = 0; i < cellCount; i++) {
+                long length = Varint.read(slab, offset);
+                offset += Varint.size(length) + (int) length;
+            }
+            return offset - start;
+        }
+
+        // copies the live rows into new slabs once more than half of what's been written is dead
+        private void compactIfWasteful() {
+            if (garbageBytes < SLAB_BYTES || garbageBytes * 2 < writtenBytes) {
+                return;
+            }
+            ArrayList<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+            slabs.clear();
+            slabBytes = 0;
+            writtenBytes = 0;
+            garbageBytes = 0;
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                ByteBuffer oldSlab = oldSlabs.get((int) (locations[rowIndex] >>> 32));
+                int start = (int) locations[rowIndex];
+                byte[] encoded = new byte[encodedLength(oldSlab, start)];
+                oldSlab.get(start, encoded);
+                locations[rowIndex] = place(encoded);
+            }
+        }
+
+        private ArrayList<String> readCellsAfterId(int rowIndex) {
+            int cellCount = countCells(rowIndex);
+            ArrayList<String> cells = new ArrayList<>(cellCount);
+            for (int i = 1; i < cellCount; i++) {
+                cells.add(readCell(rowIndex, i));
+            }
+            return cells;
+        }
+
+        @Override
+        public String readCell(int rowIndex, int columnIndex) {
+            if (columnIndex == 0) {
+                return Integer.toString(ids[rowIndex]);
+            }
+            ByteBuffer slab = slabs.get((int) (locations[rowIndex] >>> 32));
+            int offset = (int) locations[rowIndex];
+            long cellCount = Varint.read(slab, offset);
+            if (columnIndex > cellCount) {
+                return null;
+            }
+            offset += Varint.size(cellCount);
+            for (int i = 1; i < columnIndex; i++) {
+                long length = Varint.read(slab, offset);
+                offset += Varint.size(length) + (int) length;
+            }
+            int length = (int) Varint.read(slab, offset);
+            byte[] bytes = new byte[length];
+            slab.get(offset + Varint.size(length), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int countCells(int rowIndex) {
+            ByteBuffer slab = slabs.get((int) (locations[rowIndex] >>> 32));
+            return 1 + (int) Varint.read(slab, (int) locations[rowIndex]);
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package edu.uob.Storage;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * One slotted page of a paged table file:
+ * <pre>
+ *   0   crc32 of the rest of the page
+ *   4   span, how many blocks of BLOCK_SIZE the page covers (more than one only for a row too big for one)
+ *   8   slot count
+ *   12  data start, row data is packed downwards from the end of the page
+ *   16  the slot directory, an (offset, length) pair per slot, offset 0 marking a free slot
+ * </pre>
+ * Rows keep their slot when they're rewritten, so only the directory entry moves.
+ */
+final class Page {
+
+    static final int BLOCK_SIZE = 8192;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 8;
+
+    private final ByteBuffer data;
+
+    private Page(ByteBuffer data) {
+        this.data = data;
+    }
+
+    static Page empty(int span) {
+        Page page = new Page(ByteBuffer.allocate(span * BLOCK_SIZE));
+        page.data.putInt(4, span);
+        page.data.putInt(8, 0);
+        page.data.putInt(12, span * BLOCK_SIZE);
+        return page;
+    }
+
+    /** Wraps bytes read from disk, returning null if they don't hold an intact page. */
+    static Page fromBytes(byte[] bytes) {
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_SIZE || data.getInt(4) * BLOCK_SIZE != bytes.length || checksum(data) != data.getInt(0)) {
+            return null;
+        }
+        return new Page(data);
+    }
+
+    /** How many blocks a page holding just this row would need. */
+    static int spanFor(int rowLength) {
+        return (HEADER_SIZE + SLOT_SIZE + rowLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    static int spanOf(byte[] firstBlock) {
+        return ByteBuffer.wrap(firstBlock).getInt(4);
+    }
+
+    byte[] toBytes() {
+        data.putInt(0, checksum(data));
+        return data.array();
+    }
+
+    int getSpan() {
+        return data.getInt(4);
+    }
+
+    int getSlotCount() {
+        return data.getInt(8);
+    }
+
+    boolean isUsed(int slot) {
+        return slot < getSlotCount() && slotOffset(slot) != 0;
+    }
+
+    byte[] readRow(int slot) {
+        byte[] row = new byte[slotLength(slot)];
+        data.get(slotOffset(slot), row);
+        return row;
+    }
+
+    ByteBuffer rowBuffer(int slot) {
+        return data.slice(slotOffset(slot), slotLength(slot));
+    }
+
+    /** Space that could hold new rows (and their slots) once the page is compacted. */
+    int getFreeBytes() {
+        int used = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (slotOffset(slot) != 0) {
+                used += slotLength(slot);
+            }
+        }
+        return data.capacity() - used;
+    }
+
+    /** Adds a row, returning its slot, or -1 if the page doesn't have room for it. */
+    int insert(byte[] row) {
+        int slot = freeSlot();
+        int slotGrowth = slot == getSlotCount() ? SLOT_SIZE : 0;
+        if (row.length + slotGrowth > getFreeBytes()) {
+            return -1;
+        }
+        if (row.length + slotGrowth > contiguousFreeBytes()) {
+            compact();
+        }
+        if (slotGrowth > 0) {
+            data.putInt(8, slot + 1);
+        }
+        writeRow(slot, row);
+        return slot;
+    }
+
+    /** Rewrites a row in its own slot, returning false if it has grown too much to stay on this page. */
+    boolean replace(int slot, byte[] row) {
+        int oldLength = slotLength(slot);
+        if (row.length <= oldLength) {
+            data.put(slotOffset(slot), row);
+            setSlot(slot, slotOffset(slot), row.length);
+            return true;
+        }
+        if (row.length - oldLength > getFreeBytes()) {
+            return false;
+        }
+        setSlot(slot, 0, 0);
+        if (row.length > contiguousFreeBytes()) {
+            compact();
+        }
+        writeRow(slot, row);
+        return true;
+    }
+
+    void delete(int slot) {
+        setSlot(slot, 0, 0);
+    }
+
+    private void writeRow(int slot, byte[] row) {
+        int offset = data.getInt(12) - row.length;
+        data.put(offset, row);
+        data.putInt(12, offset);
+        setSlot(slot, offset, row.length);
+    }
+
+    private int freeSlot() {
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (slotOffset(slot) == 0) {
+                return slot;
+            }
+        }
+        return getSlotCount();
+    }
+
+    private int contiguousFreeBytes() {
+        return data.getInt(12) - HEADER_SIZE - getSlotCount() * SLOT_SIZE;
+    }
+
+    // moves the live rows back together at the end of the page, closing the gaps deleted rows left
+    private void compact() {
+        byte[][] rows = new byte[getSlotCount()][];
+        for (int slot = 0; slot < rows.length; slot++) {
+            if (slotOffset(slot) != 0) {
+                rows[slot] = readRow(slot);
+            }
+        }
+        data.putInt(12, data.capacity());
+        for (int slot = 0; slot < rows.length; slot++) {
+            if (rows[slot] != null) {
+                writeRow(slot, rows[slot]);
+            }
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return data.getInt(HEADER_SIZE + slot * SLOT_SIZE);
+    }
+
+    private int slotLength(int slot) {
+        return data.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4);
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putInt(HEADER_SIZE + slot * SLOT_SIZE, offset);
+        data.putInt(HEADER_SIZE + slot * SLOT_SIZE + 4, length);
+    }
+
+    private static int checksum(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 4, data.capacity() - 4);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,151 @@
+package edu.uob.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * What the paged format knows about one table file between checkpoints: which page and slot each row id
+ * lives in and how much free space each page has. Built with one pass over the file the first time the
+ * file is written to, and thrown away if the file is replaced by a whole-table write.
+ */
+final class PagedFile {
+
+    private final Path path;
+    private final HashMap<Integer, Long> rowLocations = new HashMap<>();
+    private final TreeMap<Integer, Integer> freeSpace = new TreeMap<>(); // first block of a page -> its free bytes
+    private int blockCount;
+    private int insertHint = 1;
+
+    private Object fileKey;
+    private long fileSize;
+    private long modifiedMillis;
+
+    private PagedFile(Path path) {
+        this.path = path;
+    }
+
+    static PagedFile scan(Path path) throws IOException {
+        PagedFile file = new PagedFile(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int block = 0;
+            int totalBlocks = (int) (channel.size() / Page.BLOCK_SIZE);
+            while (block < totalBlocks) {
+                Page page = readPage(channel, block);
+                if (block > 0) { // the first page holds the header
+                    for (int slot = 0; slot < page.getSlotCount(); slot++) {
+                        if (page.isUsed(slot)) {
+                            file.rowLocations.put(PagedTableFormat.decodeRowId(page.rowBuffer(slot)), location(block, slot));
+                        }
+                    }
+                    file.freeSpace.put(block, page.getFreeBytes());
+                }
+                block += page.getSpan();
+            }
+            file.blockCount = block;
+        }
+        file.refreshIdentity();
+        return file;
+    }
+
+    static Page readPage(FileChannel channel, int block) throws IOException {
+        byte[] firstBlock = readFully(channel, (long) block * Page.BLOCK_SIZE, Page.BLOCK_SIZE);
+        int span = Page.spanOf(firstBlock);
+        byte[] bytes = span <= 1 ? firstBlock : readFully(channel, (long) block * Page.BLOCK_SIZE, span * Page.BLOCK_SIZE);
+        Page page = span >= 1 ? Page.fromBytes(bytes) : null;
+        if (page == null) {
+            throw new IOException("Failed to read the table file.");
+        }
+        return page;
+    }
+
+    private static byte[] readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Failed to read the table file.");
+            }
+        }
+        return buffer.array();
+    }
+
+    static long location(int block, int slot) {
+        return ((long) block << 32) | slot;
+    }
+
+    static int blockOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static int slotOf(long location) {
+        return (int) location;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    Long locate(int rowId) {
+        return rowLocations.get(rowId);
+    }
+
+    void moveRow(int rowId, long location) {
+        rowLocations.put(rowId, location);
+    }
+
+    void removeRow(int rowId) {
+        rowLocations.remove(rowId);
+    }
+
+    void updateFreeSpace(int block, int freeBytes) {
+        freeSpace.put(block, freeBytes);
+    }
+
+    /** The first page from the last one used onwards (then from the start) with room for this many bytes, or -1. */
+    int findPageWithSpace(int bytesNeeded) {
+        for (Map<Integer, Integer> pages : List.of(freeSpace.tailMap(insertHint, true), freeSpace.headMap(insertHint, false))) {
+            for (Map.Entry<Integer, Integer> page : pages.entrySet()) {
+                if (page.getValue() >= bytesNeeded) {
+                    insertHint = page.getKey();
+                    return page.getKey();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Reserves blocks at the end of the file for a new page. */
+    int allocatePage(int span) {
+        int block = blockCount;
+        blockCount += span;
+        insertHint = block;
+        return block;
+    }
+
+    // the file is only ours to update in place while it's the same file with the contents we last left in it
+    boolean isCurrent() throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return Objects.equals(attributes.fileKey(), fileKey) && attributes.size() == fileSize
+                && attributes.lastModifiedTime().toMillis() == modifiedMillis;
+    }
+
+    void refreshIdentity() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        fileKey = attributes.fileKey();
+        fileSize = attributes.size();
+        modifiedMillis = attributes.lastModifiedTime().toMillis();
+    }
+
+}
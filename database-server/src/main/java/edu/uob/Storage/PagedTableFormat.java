@@ -0,0 +1,388 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A format made of fixed-size slotted pages (see Page). The first page holds the column names, every
+ * other page holds rows, each one a varint cell count followed by length-prefixed cells.
+ *
+ * Checkpoints only rewrite the pages holding rows that changed: an updated row is rewritten in its slot
+ * (or moved to a page with room if it grew too much), a deleted row just frees its slot, and new rows go
+ * to the first page the free-space map says has room. The changed pages are first written together to a
+ * doublewrite file, so a page torn by a crash can be put back from its copy the next time the file is read.
+ */
+public class PagedTableFormat implements TableFormat {
+
+    private static final int MAGIC = 0x54425031; // "TBP1"
+
+    // a whole-table write only fills pages this far, so rows have some room to grow in place
+    private static final int FILL_BYTES = Page.BLOCK_SIZE * 9 / 10;
+
+    private final BufferPool bufferPool = new BufferPool(Integer.getInteger("db.bufferPoolPages", 1024));
+    private final ConcurrentHashMap<Path, PagedFile> openFiles = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "paged";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".tbp";
+    }
+
+    // ============================== Whole tables ============================== //
+
+    @Override
+    public Table read(Path tablePath, String tableName, boolean offHeap) throws IOException {
+        restoreDoublewrite(tablePath);
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(tablePath));
+        try {
+            ArrayList<String> columnNames = null;
+            ArrayList<Row> rows = new ArrayList<>();
+            boolean inIdOrder = true;
+            int block = 0;
+            while ((long) block * Page.BLOCK_SIZE < file.limit()) {
+                int span = file.getInt(block * Page.BLOCK_SIZE + 4);
+                byte[] bytes = new byte[span * Page.BLOCK_SIZE];
+                file.get(block * Page.BLOCK_SIZE, bytes);
+                Page page = Page.fromBytes(bytes);
+                if (page == null) {
+                    throw new IOException("Failed to read the table file.");
+                }
+                if (block == 0) {
+                    columnNames = decodeHeader(page.rowBuffer(0));
+                }
+                for (int slot = 0; block > 0 && slot < page.getSlotCount(); slot++) {
+                    if (page.isUsed(slot)) {
+                        Row row = decodeRow(page.rowBuffer(slot));
+                        inIdOrder = inIdOrder && (rows.isEmpty() || rowId(rows.get(rows.size() - 1)) < rowId(row));
+                        rows.add(row);
+                    }
+                }
+                block += span;
+            }
+            if (columnNames == null) {
+                throw new IOException("Failed to read the table file.");
+            }
+            if (!inIdOrder) {
+                rows.sort(Comparator.comparingInt(PagedTableFormat::rowId)); // rows that grew may have moved pages
+            }
+            Table table = TableFormat.newTable(tableName, columnNames, offHeap);
+            for (Row row : rows) {
+                table.insertRow(row);
+            }
+            table.shareRepeatedValues();
+            return table;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+    }
+
+    @Override
+    public ArrayList<String> readColumnNames(Path tablePath) throws IOException {
+        restoreDoublewrite(tablePath);
+        try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.READ)) {
+            return decodeHeader(PagedFile.readPage(channel, 0).rowBuffer(0));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+    }
+
+    @Override
+    public void write(Path tablePath, Table table) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tablePath), 1 << 16)) {
+            Page header = Page.empty(Page.spanFor(encodeHeader(table.getColumnNames()).length));
+            header.insert(encodeHeader(table.getColumnNames()));
+            out.write(header.toBytes());
+            Page page = Page.empty(1);
+            for (Row row : table.getRows()) {
+                byte[] encodedRow = encodeRow(row);
+                if (page.getSlotCount() > 0 && Page.BLOCK_SIZE - page.getFreeBytes() + encodedRow.length > FILL_BYTES) {
+                    out.write(page.toBytes());
+                    page = Page.empty(1);
+                }
+                if (page.getSlotCount() == 0 && Page.spanFor(encodedRow.length) > 1) {
+                    page = Page.empty(Page.spanFor(encodedRow.length));
+                }
+                page.insert(encodedRow);
+            }
+            if (page.getSlotCount() > 0) {
+                out.write(page.toBytes());
+            }
+        }
+        forget(tablePath);
+    }
+
+    // pages are read and written whole, so there's nothing to gain from mapping them
+    @Override
+    public Table map(Path tablePath, String tableName) {
+        return null;
+    }
+
+    // new rows are placed in pages at the next checkpoint
+    @Override
+    public boolean appendRow(Path tablePath, Row row) {
+        return false;
+    }
+
+    // ============================== Changed rows ============================== //
+
+    @Override
+    public boolean writesChangedRows() {
+        return true;
+    }
+
+    @Override
+    public void writeChangedRows(Path tablePath, Table table, TableChanges changes) throws IOException {
+        restoreDoublewrite(tablePath);
+        PagedFile file = openFiles.get(tablePath);
+        if (file == null || !file.isCurrent()) {
+            bufferPool.invalidate(tablePath);
+            file = PagedFile.scan(tablePath);
+            openFiles.put(tablePath, file);
+        }
+        HashMap<Integer, Row> changedRows = new HashMap<>();
+        for (Row row : table.getRows()) {
+            int id = rowId(row);
+            if (changes.getChangedIds().contains(id)) {
+                changedRows.put(id, row);
+            }
+        }
+        TreeMap<Integer, Page> dirtyPages = new TreeMap<>();
+        try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.READ)) {
+            for (int id : changes.getDeletedIds()) {
+                removeRow(file, channel, dirtyPages, id);
+            }
+            for (int id : changes.getChangedIds()) {
+                Row row = changedRows.get(id);
+                if (row == null) {
+                    removeRow(file, channel, dirtyPages, id); // changed and then deleted again
+                } else {
+                    writeRow(file, channel, dirtyPages, id, encodeRow(row));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            openFiles.remove(tablePath); // the map of the file may no longer match it
+            bufferPool.invalidate(tablePath);
+            throw e;
+        }
+        flush(file, dirtyPages);
+    }
+
+    private void removeRow(PagedFile file, FileChannel channel, TreeMap<Integer, Page> dirtyPages, int id) throws IOException {
+        Long location = file.locate(id);
+        if (location == null) {
+            return;
+        }
+        int block = PagedFile.blockOf(location);
+        Page page = fetchPage(file, channel, dirtyPages, block);
+        page.delete(PagedFile.slotOf(location));
+        file.removeRow(id);
+        file.updateFreeSpace(block, page.getFreeBytes());
+    }
+
+    private void writeRow(PagedFile file, FileChannel channel, TreeMap<Integer, Page> dirtyPages, int id, byte[] row) throws IOException {
+        Long location = file.locate(id);
+        if (location != null) {
+            int block = PagedFile.blockOf(location);
+            Page page = fetchPage(file, channel, dirtyPages, block);
+            boolean replaced = page.replace(PagedFile.slotOf(location), row);
+            if (!replaced) {
+                page.delete(PagedFile.slotOf(location));
+            }
+            file.updateFreeSpace(block, page.getFreeBytes());
+            if (replaced) {
+                return;
+            }
+        }
+        int block = file.findPageWithSpace(row.length + 8); // room for the row and possibly a new slot
+        Page page;
+        if (block < 0) {
+            page = Page.empty(Page.spanFor(row.length));
+            block = file.allocatePage(page.getSpan());
+            dirtyPages.put(block, page);
+        } else {
+            page = fetchPage(file, channel, dirtyPages, block);
+        }
+        int slot = page.insert(row);
+        if (slot < 0) {
+            throw new IOException("The free-space map of " + file.getPath() + " doesn't match its pages.");
+        }
+        file.moveRow(id, PagedFile.location(block, slot));
+        file.updateFreeSpace(block, page.getFreeBytes());
+    }
+
+    private Page fetchPage(PagedFile file, FileChannel channel, TreeMap<Integer, Page> dirtyPages, int block) throws IOException {
+        Page page = dirtyPages.get(block);
+        if (page == null) {
+            page = bufferPool.take(file.getPath(), block);
+            if (page == null) {
+                page = PagedFile.readPage(channel, block);
+            }
+            dirtyPages.put(block, page);
+        }
+        return page;
+    }
+
+    // every changed page goes to the doublewrite file first, then into place, then the copy is deleted
+    private void flush(PagedFile file, TreeMap<Integer, Page> dirtyPages) throws IOException {
+        if (dirtyPages.isEmpty()) {
+            return;
+        }
+        Path doublewritePath = doublewritePath(file.getPath());
+        try (FileChannel doublewrite = FileChannel.open(doublewritePath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Map.Entry<Integer, Page> entry : dirtyPages.entrySet()) {
+                byte[] page = entry.getValue().toBytes();
+                writeFully(doublewrite, ByteBuffer.allocate(4).putInt(0, entry.getKey()), position);
+                writeFully(doublewrite, ByteBuffer.wrap(page), position + 4);
+                position += 4 + page.length;
+            }
+            doublewrite.force(true);
+        }
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.WRITE)) {
+            for (Map.Entry<Integer, Page> entry : dirtyPages.entrySet()) {
+                writeFully(channel, ByteBuffer.wrap(entry.getValue().toBytes()), (long) entry.getKey() * Page.BLOCK_SIZE);
+            }
+            channel.force(true);
+        }
+        Files.delete(doublewritePath);
+        file.refreshIdentity();
+        for (Map.Entry<Integer, Page> entry : dirtyPages.entrySet()) {
+            bufferPool.put(file.getPath(), entry.getKey(), entry.getValue());
+        }
+    }
+
+    // a crash part way through writing pages in place leaves their copies behind, so those are put back first
+    private void restoreDoublewrite(Path tablePath) throws IOException {
+        Path doublewritePath = doublewritePath(tablePath);
+        if (!Files.exists(doublewritePath)) {
+            return;
+        }
+        synchronized (openFiles) {
+            if (!Files.exists(doublewritePath)) {
+                return;
+            }
+            ByteBuffer copies = ByteBuffer.wrap(Files.readAllBytes(doublewritePath));
+            if (Files.exists(tablePath)) {
+                try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.WRITE)) {
+                    while (copies.remaining() >= 4 + Page.BLOCK_SIZE) {
+                        int block = copies.getInt();
+                        int span = copies.getInt(copies.position() + 4);
+                        if (span < 1 || copies.remaining() < span * Page.BLOCK_SIZE) {
+                            break; // the copy itself was torn, so nothing was written in place yet
+                        }
+                        byte[] bytes = new byte[span * Page.BLOCK_SIZE];
+                        copies.get(bytes);
+                        if (Page.fromBytes(bytes) == null) {
+                            break;
+                        }
+                        writeFully(channel, ByteBuffer.wrap(bytes), (long) block * Page.BLOCK_SIZE);
+                    }
+                    channel.force(true);
+                }
+            }
+            Files.delete(doublewritePath);
+            forget(tablePath);
+        }
+    }
+
+    private void forget(Path tablePath) {
+        openFiles.remove(tablePath);
+        bufferPool.invalidate(tablePath);
+    }
+
+    private static Path doublewritePath(Path tablePath) {
+        return tablePath.resolveSibling(tablePath.getFileName() + ".dw");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // ============================== Encoding ============================== //
+
+    private static byte[] encodeHeader(ArrayList<String> columnNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        writeCells(out, columnNames);
+        return bytes.toByteArray();
+    }
+
+    private static ArrayList<String> decodeHeader(ByteBuffer header) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Failed to read the table file.");
+        }
+        return readCells(header);
+    }
+
+    private static byte[] encodeRow(Row row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeCells(new DataOutputStream(bytes), row.getCells());
+        return bytes.toByteArray();
+    }
+
+    private static Row decodeRow(ByteBuffer encodedRow) {
+        ArrayList<String> cells = readCells(encodedRow);
+        int id = Integer.parseInt(cells.remove(0));
+        return new Row(id, cells);
+    }
+
+    static int decodeRowId(ByteBuffer encodedRow) {
+        Varint.read(encodedRow); // the cell count
+        return Integer.parseInt(readCell(encodedRow));
+    }
+
+    private static void writeCells(DataOutputStream out, ArrayList<String> cells) throws IOException {
+        Varint.write(out, cells.size());
+        for (String cell : cells) {
+            byte[] text = cell.getBytes(StandardCharsets.UTF_8);
+            Varint.write(out, text.length);
+            out.write(text);
+        }
+    }
+
+    private static ArrayList<String> readCells(ByteBuffer buffer) {
+        int cellCount = (int) Varint.read(buffer);
+        ArrayList<String> cells = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            cells.add(readCell(buffer));
+        }
+        return cells;
+    }
+
+    private static String readCell(ByteBuffer buffer) {
+        byte[] text = new byte[(int) Varint.read(buffer)];
+        buffer.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static int rowId(Row row) {
+        return Integer.parseInt(row.getCellData(0));
+    }
+
+}
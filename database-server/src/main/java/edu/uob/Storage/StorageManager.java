@@ -0,0 +1,339 @@
+package edu.uob.Storage;
+
+import edu.uob.Concurrency.StatementLocks;
+import edu.uob.Concurrency.TableLockManager;
+import edu.uob.DataStructure.ColumnarTable;
+import edu.uob.DataStructure.Table;
+import edu.uob.Exceptions.CmdExecutionException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Everything that has to be shared by all the servers using one storage folder: the table cache, the
+ * table locks and the write-ahead log. Every change is appended to the log and forced to disk before it's
+ * applied, table files are only rewritten later by the checkpointer, and the log is replayed the first
+ * time the folder is opened so changes that never made it into their table files aren't lost.
+ */
+public class StorageManager {
+
+    /** Applies a change once its log record is durable. */
+    public interface CommittedChange {
+        void apply() throws IOException;
+    }
+
+    private static final ConcurrentHashMap<Path, StorageManager> openFolders = new ConcurrentHashMap<>();
+
+    public static StorageManager forFolder(Path folder) {
+        return openFolders.computeIfAbsent(folder.toAbsolutePath().normalize(), path -> {
+            try {
+                return new StorageManager(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Couldn't recover the write-ahead log in " + path, e);
+            }
+        });
+    }
+
+    /**
+     * Drops the folder's storage without a final checkpoint, as if the process had died, so the next forFolder
+     * recovers it from the log and the catalog file. Only meant for tests of recovery.
+     */
+    public static void simulateCrash(Path folder) throws IOException {
+        StorageManager storage = openFolders.remove(folder.toAbsolutePath().normalize());
+        if (storage != null) {
+            Runtime.getRuntime().removeShutdownHook(storage.shutdownHook);
+            storage.checkpointer.stop();
+            storage.writeAheadLog.close();
+        }
+    }
+
+    private final Path folder;
+    private final TableCache tableCache;
+    private final TableLockManager lockManager = new TableLockManager();
+    private final WriteAheadLog writeAheadLog;
+    private final Checkpointer checkpointer;
+    private final Catalog catalog;
+    private final Thread shutdownHook = new Thread(this::shutdownQuietly, "checkpoint-on-shutdown");
+
+    // held (shared) from appending a record until its change has been applied, and exclusively to rotate the log
+    private final ReentrantReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private final Object checkpointMonitor = new Object();
+
+    // files that were appended to in place and still need an fsync before the log covering them is deleted
+    private final Set<Path> unsyncedFiles = ConcurrentHashMap.newKeySet();
+
+    // rows changed since each table was last written, kept only for formats that can write just those rows
+    private final ConcurrentHashMap<String, TableChanges> pendingChanges = new ConcurrentHashMap<>();
+
+    private StorageManager(Path folder) throws IOException {
+        this.folder = folder;
+        Files.createDirectories(folder);
+        this.tableCache = new TableCache(Long.getLong("db.tableCacheBytes", Runtime.getRuntime().maxMemory() / 4));
+        this.catalog = Catalog.load(folder);
+        int nextSegment = recover();
+        this.writeAheadLog = new WriteAheadLog(folder, nextSegment);
+        this.checkpointer = new Checkpointer(this, Long.getLong("db.walCheckpointBytes", 8L * 1024 * 1024),
+                Long.getLong("db.checkpointDirtyBytes", 64L * 1024 * 1024), Long.getLong("db.checkpointIntervalMillis", 10_000));
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public TableCache getTableCache() {
+        return tableCache;
+    }
+
+    public TableLockManager getLockManager() {
+        return lockManager;
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /** Logs the change, waits for the log to reach the disk (alongside any concurrent commits) and then applies it. */
+    public void commit(LogRecord record, CommittedChange change) throws IOException {
+        commitGate.readLock().lock();
+        try {
+            long recordNumber = writeAheadLog.append(record);
+            writeAheadLog.awaitDurable(recordNumber);
+            catalog.apply(record); // the record is durable, so the change has happened even if applying it fails
+            change.apply();
+            trackChanges(record);
+        } finally {
+            commitGate.readLock().unlock();
+        }
+        checkpointer.committed(writeAheadLog.getSegmentBytes(), tableCache.getDirtyBytes());
+    }
+
+    /** Stops the background checkpointer and writes every dirty table out, leaving the log empty. */
+    public void shutdown() throws IOException {
+        checkpointer.shutdown();
+    }
+
+    private void shutdownQuietly() {
+        try {
+            shutdown();
+        } catch (IOException e) {
+            System.err.println("Final checkpoint failed, the log will be replayed on the next start: " + e.getMessage());
+        }
+    }
+
+    // ============================== Table formats ============================== //
+
+    /** The format a database's tables are stored in, as recorded in the catalog when it was created. */
+    public TableFormat formatFor(String databaseName) {
+        TableFormat format = catalog.getFormat(databaseName);
+        return format != null ? format : TableFormat.TEXT;
+    }
+
+    public Path tablePath(String databaseName, String tableName) {
+        String extension = formatFor(databaseName).getFileExtension();
+        return folder.resolve(databaseName.toLowerCase()).resolve(tableName.toLowerCase() + extension);
+    }
+
+    public void createDatabaseFolder(String databaseName) throws IOException {
+        Files.createDirectories(folder.resolve(databaseName.toLowerCase()));
+    }
+
+    // called with the table's write lock held, the same lock the checkpointer takes before using the changes
+    private void trackChanges(LogRecord record) {
+        String databaseName = record.getDatabaseName();
+        String key = databaseName + "/" + record.getTableName();
+        switch (record.getType()) {
+            case CREATE_DATABASE, CREATE_INDEX, DROP_INDEX -> { }
+            case DROP_DATABASE -> pendingChanges.keySet().removeIf(name -> name.startsWith(databaseName + "/"));
+            case CREATE_TABLE, DROP_TABLE -> pendingChanges.remove(key);
+            default -> {
+                if (formatFor(databaseName).writesChangedRows()) {
+                    pendingChanges.computeIfAbsent(key, name -> new TableChanges()).add(record);
+                }
+            }
+        }
+    }
+
+    public void noteUnsyncedFile(Path file) {
+        unsyncedFiles.add(file);
+    }
+
+    /**
+     * Starts a new log segment, writes every dirty table back to its file, saves the catalog as it was when the
+     * segment was closed and then deletes the old segments. Each table is written while holding its read lock,
+     * so it's always a state some statement left it in.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointMonitor) {
+            int closedSegment;
+            Catalog closedCatalog;
+            commitGate.writeLock().lock();
+            try {
+                closedSegment = writeAheadLog.rotate();
+                closedCatalog = catalog.snapshot(closedSegment);
+            } finally {
+                commitGate.writeLock().unlock();
+            }
+            for (String[] dirtyTable : tableCache.getDirtyTables()) {
+                checkpointTable(dirtyTable[0], dirtyTable[1]);
+            }
+            for (Path file : new ArrayList<>(unsyncedFiles)) {
+                unsyncedFiles.remove(file);
+                forceFile(file);
+            }
+            closedCatalog.save(folder);
+            writeAheadLog.deleteSegmentsUpTo(closedSegment);
+        }
+    }
+
+    private void checkpointTable(String databaseName, String tableName) throws IOException {
+        StatementLocks locks;
+        try {
+            locks = lockManager.lockTableForRead(databaseName, tableName);
+        } catch (CmdExecutionException e) {
+            throw new IOException(e.getMessage());
+        }
+        try {
+            Table table = tableCache.getIfDirty(databaseName, tableName);
+            if (table == null) {
+                return; // dropped since the list of dirty tables was taken
+            }
+            TableChanges changes = pendingChanges.remove(databaseName + "/" + tableName);
+            TableFormat format = formatFor(databaseName);
+            Path tablePath = tablePath(databaseName, tableName);
+            if (changes != null && !changes.isWholeTable() && Files.exists(tablePath)) {
+                format.writeChangedRows(tablePath, table, changes); // only the pages holding those rows
+            } else if (Files.isDirectory(folder.resolve(databaseName))) {
+                writeTableFile(format, tablePath, table);
+            }
+            tableCache.markClean(databaseName, tableName);
+        } finally {
+            locks.release();
+        }
+    }
+
+    // written to a temporary file and renamed over the original, so a crash never leaves half a table behind
+    static void writeTableFile(TableFormat format, Path tablePath, Table table) throws IOException {
+        Path temporaryPath = tablePath.resolveSibling(tablePath.getFileName() + ".tmp");
+        format.write(temporaryPath, table);
+        forceFile(temporaryPath);
+        Files.move(temporaryPath, tablePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void forceFile(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // ============================== Recovery ============================== //
+
+    /**
+     * Replays any log segments left behind into the table files and the catalog, returning the number for the
+     * next segment. The catalog only takes records from segments newer than the one it was last saved with.
+     */
+    private int recover() throws IOException {
+        ArrayList<Path> segments = WriteAheadLog.listSegments(folder);
+        LinkedHashMap<String, Table> replayedTables = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            boolean coveredByCatalog = WriteAheadLog.segmentNumber(segment) <= catalog.getCoveredSegment();
+            for (LogRecord record : WriteAheadLog.readSegment(segment)) {
+                if (!coveredByCatalog) {
+                    catalog.apply(record);
+                }
+                replay(record, replayedTables);
+            }
+        }
+        for (String key : replayedTables.keySet()) {
+            String[] names = key.split("/", 2);
+            if (Files.isDirectory(folder.resolve(names[0]))) {
+                writeTableFile(formatFor(names[0]), tablePath(names[0], names[1]), replayedTables.get(key));
+            }
+        }
+        for (Path file : unsyncedFiles) {
+            forceFile(file);
+        }
+        unsyncedFiles.clear();
+        int lastSegment = catalog.getCoveredSegment();
+        if (!segments.isEmpty()) {
+            lastSegment = Math.max(lastSegment, WriteAheadLog.segmentNumber(segments.get(segments.size() - 1)));
+        }
+        boolean rebuilt = catalog.isRebuilt(); // scanTables clears it
+        if (rebuilt) {
+            catalog.scanTables(folder);
+        }
+        if (rebuilt || !segments.isEmpty()) {
+            catalog.snapshot(lastSegment).save(folder);
+        }
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        return lastSegment + 1;
+    }
+
+    private void replay(LogRecord record, LinkedHashMap<String, Table> replayedTables) throws IOException {
+        String databaseName = record.getDatabaseName();
+        String key = databaseName + "/" + record.getTableName();
+        Path databasePath = folder.resolve(databaseName);
+        switch (record.getType()) {
+            case CREATE_DATABASE -> createDatabaseFolder(databaseName);
+            case DROP_DATABASE -> {
+                replayedTables.keySet().removeIf(name -> name.startsWith(databaseName + "/"));
+                deleteRecursively(databasePath);
+            }
+            case CREATE_TABLE -> {
+                if (Files.isDirectory(databasePath)) {
+                    replayedTables.put(key, new ColumnarTable(record.getTableName(), record.getNames()));
+                }
+            }
+            case DROP_TABLE -> {
+                replayedTables.remove(key);
+                Files.deleteIfExists(tablePath(databaseName, record.getTableName()));
+            }
+            case CREATE_INDEX, DROP_INDEX -> { } // indexes are built when their table is read in, not stored in it
+            default -> {
+                Table table = replayedTables.get(key);
+                Path tablePath = tablePath(databaseName, record.getTableName());
+                if (table == null && Files.exists(tablePath)) {
+                    table = formatFor(databaseName).read(tablePath, record.getTableName());
+                    replayedTables.put(key, table);
+                }
+                if (table == null) {
+                    return; // the table was dropped later on
+                }
+                record.applyTo(table);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
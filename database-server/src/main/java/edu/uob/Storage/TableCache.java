@@ -0,0 +1,221 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently used tables parsed in memory so they don't have to be re-read from their .tab files on
+ * every statement. Entries are keyed by (database, table) and the least recently used ones are evicted
+ * once the estimated size of everything cached goes over the memory budget.
+ * A table changed by a committed statement is dirty until the checkpointer has written it back to its file,
+ * and dirty tables are never evicted since the cached copy is the only up to date one outside the log.
+ */
+public class TableCache {
+
+    private static class CachedTable {
+        private final Table table;
+        private final long estimatedBytes;
+        private final boolean dirty;
+
+        private CachedTable(Table table, long estimatedBytes, boolean dirty) {
+            this.table = table;
+            this.estimatedBytes = estimatedBytes;
+            this.dirty = dirty;
+        }
+    }
+
+    private final long memoryBudgetBytes;
+    private final LinkedHashMap<String, CachedTable> tables = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long cachedBytes = 0;
+    private long dirtyBytes = 0;
+
+    public TableCache(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /** Returns the cached table (under the name as given, since JOIN prints it), or null if it isn't cached. */
+    public synchronized Table get(String databaseName, String tableName) {
+        CachedTable cached = tables.get(key(databaseName, tableName));
+        if (cached == null) {
+            return null;
+        }
+        if (cached.table.getTableName().equals(tableName)) {
+            return cached.table;
+        }
+        return cached.table.withName(tableName);
+    }
+
+    /** Caches a table that matches what's in its file. */
+    public synchronized void put(String databaseName, Table table) {
+        String key = key(databaseName, table.getTableName());
+        CachedTable existing = removeEntry(key);
+        boolean dirty = existing != null && existing.dirty;
+        long estimatedBytes = estimateSize(table);
+        if (estimatedBytes > memoryBudgetBytes && !dirty) {
+            return; // would push everything else out, so just read it from disk each time
+        }
+        addEntry(key, new CachedTable(table, estimatedBytes, dirty));
+    }
+
+    /** Caches a table that has committed changes its file doesn't have yet, it stays until it's checkpointed. */
+    public synchronized void putDirty(String databaseName, Table table) {
+        String key = key(databaseName, table.getTableName());
+        removeEntry(key);
+        addEntry(key, new CachedTable(table, estimateSize(table), true));
+    }
+
+    /**
+     * Like putDirty, for a change to a few rows: if the table is already cached its estimated size is moved
+     * by sizeChange (the rows' estimateSize after the change less before it) instead of measuring every row.
+     */
+    public synchronized void putDirty(String databaseName, Table table, long sizeChange) {
+        String key = key(databaseName, table.getTableName());
+        CachedTable existing = removeEntry(key);
+        long estimatedBytes = existing == null || table instanceof OffHeapTable
+                ? estimateSize(table) : existing.estimatedBytes + sizeChange;
+        addEntry(key, new CachedTable(table, estimatedBytes, true));
+    }
+
+    /** Adds a newly inserted row to the table if it's cached, returning whether it was. */
+    public synchronized boolean addRow(String databaseName, String tableName, Row row) {
+        String key = key(databaseName, tableName);
+        CachedTable cached = removeEntry(key);
+        if (cached == null) {
+            return false;
+        }
+        cached.table.insertRow(row);
+        long estimatedBytes = cached.estimatedBytes + (cached.table instanceof OffHeapTable ? 12 : estimateSize(row));
+        if (estimatedBytes <= memoryBudgetBytes || cached.dirty) {
+            addEntry(key, new CachedTable(cached.table, estimatedBytes, cached.dirty));
+        }
+        return true;
+    }
+
+    public synchronized boolean isDirty(String databaseName, String tableName) {
+        CachedTable cached = tables.get(key(databaseName, tableName));
+        return cached != null && cached.dirty;
+    }
+
+    /** The estimated size of every dirty table, which the checkpointer uses to decide when to write them out. */
+    public synchronized long getDirtyBytes() {
+        return dirtyBytes;
+    }
+
+    /** The (database, table) names of every dirty table. */
+    public synchronized ArrayList<String[]> getDirtyTables() {
+        ArrayList<String[]> dirtyTables = new ArrayList<>();
+        for (Map.Entry<String, CachedTable> entry : tables.entrySet()) {
+            if (entry.getValue().dirty) {
+                dirtyTables.add(entry.getKey().split("/", 2));
+            }
+        }
+        return dirtyTables;
+    }
+
+    /** Returns the table if it's still dirty. */
+    public synchronized Table getIfDirty(String databaseName, String tableName) {
+        CachedTable cached = tables.get(key(databaseName, tableName));
+        return cached != null && cached.dirty ? cached.table : null;
+    }
+
+    /** Called once a dirty table has been written back to its file. */
+    public synchronized void markClean(String databaseName, String tableName) {
+        String key = key(databaseName, tableName);
+        CachedTable cached = removeEntry(key);
+        if (cached != null) {
+            addEntry(key, new CachedTable(cached.table, cached.estimatedBytes, false));
+        }
+    }
+
+    public synchronized void invalidate(String databaseName, String tableName) {
+        removeEntry(key(databaseName, tableName));
+    }
+
+    /** Drops the table unless it holds changes that haven't been checkpointed. */
+    public synchronized void invalidateIfClean(String databaseName, String tableName) {
+        if (!isDirty(databaseName, tableName)) {
+            removeEntry(key(databaseName, tableName));
+        }
+    }
+
+    public synchronized void invalidateDatabase(String databaseName) {
+        String prefix = databaseName.toLowerCase() + "/";
+        Iterator<Map.Entry<String, CachedTable>> entries = tables.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, CachedTable> entry = entries.next();
+            if (entry.getKey().startsWith(prefix)) {
+                cachedBytes -= entry.getValue().estimatedBytes;
+                dirtyBytes -= entry.getValue().dirty ? entry.getValue().estimatedBytes : 0;
+                entries.remove();
+            }
+        }
+    }
+
+    private void addEntry(String key, CachedTable cached) {
+        tables.put(key, cached);
+        cachedBytes += cached.estimatedBytes;
+        dirtyBytes += cached.dirty ? cached.estimatedBytes : 0;
+        Iterator<Map.Entry<String, CachedTable>> leastRecentlyUsed = tables.entrySet().iterator();
+        while (cachedBytes > memoryBudgetBytes && leastRecentlyUsed.hasNext()) {
+            CachedTable candidate = leastRecentlyUsed.next().getValue();
+            if (!candidate.dirty) {
+                cachedBytes -= candidate.estimatedBytes;
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    private CachedTable removeEntry(String key) {
+        CachedTable removed = tables.remove(key);
+        if (removed != null) {
+            cachedBytes -= removed.estimatedBytes;
+            dirtyBytes -= removed.dirty ? removed.estimatedBytes : 0;
+        }
+        return removed;
+    }
+
+    private static String key(String databaseName, String tableName) {
+        return databaseName.toLowerCase() + "/" + tableName.toLowerCase();
+    }
+
+    // rough heap footprint: object headers and list slots plus two bytes per character
+    private static long estimateSize(Table table) {
+        if (table instanceof OffHeapTable offHeapTable) {
+            return offHeapTable.getIndexBytes(); // the rows themselves aren't on the heap
+        }
+        long bytes = 256;
+        for (Row row : table.getRows()) {
+            bytes += estimateSize(row);
+        }
+        return bytes;
+    }
+
+    /** The estimated size of the rows with these ids, the part of the table a change to just them affects. */
+    public static long estimateSize(Table table, Collection<String> rowIds) {
+        if (table instanceof OffHeapTable) {
+            return 0; // only the ids are on the heap, and putDirty measures those itself
+        }
+        long bytes = 0;
+        for (String rowId : rowIds) {
+            int rowIndex = table.findRowIndex(Integer.parseInt(rowId));
+            if (rowIndex >= 0) {
+                bytes += estimateSize(table.getRows().get(rowIndex));
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateSize(Row row) {
+        long bytes = 64;
+        for (String cell : row.getCells()) {
+            bytes += 48 + 2L * cell.length();
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,43 @@
+package edu.uob.Storage;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/** The rows of one table that changed since it was last written, for formats that can write just those rows. */
+public class TableChanges {
+
+    private final Set<Integer> changedIds = new HashSet<>();
+    private final Set<Integer> deletedIds = new HashSet<>();
+    private boolean wholeTable = false;
+
+    void add(LogRecord record) {
+        switch (record.getType()) {
+            case INSERT, UPDATE -> {
+                for (String id : record.getIds()) {
+                    changedIds.add(Integer.parseInt(id));
+                    deletedIds.remove(Integer.parseInt(id));
+                }
+            }
+            case DELETE -> {
+                for (String id : record.getIds()) {
+                    changedIds.remove(Integer.parseInt(id));
+                    deletedIds.add(Integer.parseInt(id));
+                }
+            }
+            default -> wholeTable = true; // a column was added or dropped, so every row changed
+        }
+    }
+
+    public Set<Integer> getChangedIds() {
+        return changedIds;
+    }
+
+    public Set<Integer> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public boolean isWholeTable() {
+        return wholeTable;
+    }
+
+}
@@ -0,0 +1,67 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.ColumnarTable;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/** How a table is laid out on disk. Each database picks one when it's created. */
+public interface TableFormat {
+
+    String getName();
+
+    String getFileExtension();
+
+    default Table read(Path tablePath, String tableName) throws IOException {
+        return read(tablePath, tableName, false);
+    }
+
+    /** Reads every row into memory, outside the Java heap if offHeap is set. */
+    Table read(Path tablePath, String tableName, boolean offHeap) throws IOException;
+
+    /**
+     * Maps the file rather than reading it, the rows decode their cells only when something reads them.
+     * Returns null if the file can't be mapped in one piece.
+     */
+    Table map(Path tablePath, String tableName) throws IOException;
+
+    ArrayList<String> readColumnNames(Path tablePath) throws IOException;
+
+    void write(Path tablePath, Table table) throws IOException;
+
+    /**
+     * Whether the format can write just the rows that changed since the table was last written. The
+     * storage manager only keeps track of the changes for formats that say yes.
+     */
+    boolean writesChangedRows();
+
+    /** Writes the changes over the existing file in place, for formats that return true above. */
+    void writeChangedRows(Path tablePath, Table table, TableChanges changes) throws IOException;
+
+    /** Formats that can't grow in place return false and leave the row for the next checkpoint to write. */
+    boolean appendRow(Path tablePath, Row row) throws IOException;
+
+    TableFormat TEXT = new TextTableFormat();
+    TableFormat COLUMNAR = new ColumnarTableFormat();
+    TableFormat PAGED = new PagedTableFormat();
+
+    /** The empty table read() fills in, columnNames may leave out 'id'. */
+    static Table newTable(String tableName, ArrayList<String> columnNames, boolean offHeap) {
+        return offHeap ? new OffHeapTable(tableName, columnNames) : new ColumnarTable(tableName, columnNames);
+    }
+
+    static TableFormat forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return switch (name.toLowerCase()) {
+            case "text" -> TEXT;
+            case "columnar" -> COLUMNAR;
+            case "paged" -> PAGED;
+            default -> null;
+        };
+    }
+
+}
@@ -0,0 +1,94 @@
+package edu.uob.Storage;
+
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The original format: a tab separated header line followed by one tab separated line per row. */
+public class TextTableFormat implements TableFormat {
+
+    @Override
+    public String getName() {
+        return "text";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".tab";
+    }
+
+    @Override
+    public Table read(Path tablePath, String tableName, boolean offHeap) throws IOException {
+        Table table;
+        try (BufferedReader reader = Files.newBufferedReader(tablePath)) {
+            String columnHeaders = reader.readLine();
+            if (columnHeaders != null && columnHeaders.contains("\t")) { // check headers exist
+                ArrayList<String> columnNames = new ArrayList<>(Arrays.asList(columnHeaders.split("\t")));
+                table = TableFormat.newTable(tableName, columnNames, offHeap);
+            } else {
+                table = TableFormat.newTable(tableName, new ArrayList<>(), offHeap);
+            }
+            String rowData;
+            while ((rowData = reader.readLine()) != null) {
+                ArrayList<String> cells = new ArrayList<>(Arrays.asList(rowData.split("\t")));
+                int rowID = Integer.parseInt(cells.get(0));
+                cells.remove(0); // Remove row ID since already extracted
+                Row row = new Row(rowID, cells);
+                table.insertRow(row);
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to read the table file.");
+        }
+        table.shareRepeatedValues();
+        return table;
+    }
+
+    @Override
+    public Table map(Path tablePath, String tableName) throws IOException {
+        return MappedTextTable.map(tablePath, tableName);
+    }
+
+    @Override
+    public ArrayList<String> readColumnNames(Path tablePath) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(tablePath)) {
+            String columnHeaders = reader.readLine();
+            if (columnHeaders == null) {
+                return new ArrayList<>(List.of("id"));
+            }
+            return new ArrayList<>(Arrays.asList(columnHeaders.split("\t")));
+        }
+    }
+
+    @Override
+    public void write(Path tablePath, Table table) throws IOException {
+        table.saveToFile(tablePath.toString());
+    }
+
+    // appended rows are already in place, so there's never anything to write row by row
+    @Override
+    public boolean writesChangedRows() {
+        return false;
+    }
+
+    @Override
+    public void writeChangedRows(Path tablePath, Table table, TableChanges changes) throws IOException {
+        write(tablePath, table);
+    }
+
+    // adds one row to the end of an existing table file, in the same format saveToFile writes
+    @Override
+    public boolean appendRow(Path tablePath, Row row) throws IOException {
+        String rowString = String.join("\t", row.getCells()) + System.lineSeparator();
+        Files.write(tablePath, rowString.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        return true;
+    }
+
+}
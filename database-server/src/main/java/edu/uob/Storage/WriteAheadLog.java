@@ -0,0 +1,187 @@
+package edu.uob.Storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of committed changes, split into numbered segment files (wal-000001.log, ...) in the
+ * storage folder. Each record is framed as [length][crc32][payload] so a torn write at the end of the last
+ * segment is detected and ignored on recovery.
+ * Committing threads that arrive while an fsync is in progress wait for the next one, so a burst of
+ * concurrent commits costs a single FileChannel.force between them (group commit).
+ */
+public class WriteAheadLog {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path folder;
+    private FileChannel channel;
+    private int segmentNumber;
+    private long segmentBytes = 0;
+
+    private long appendedRecords = 0;
+    private long durableRecords = 0;
+    private boolean forceInProgress = false;
+
+    WriteAheadLog(Path folder, int firstSegmentNumber) throws IOException {
+        this.folder = folder;
+        this.segmentNumber = firstSegmentNumber;
+        this.channel = openSegment(firstSegmentNumber);
+    }
+
+    /** Writes the record to the current segment and returns its sequence number, it isn't durable yet. */
+    public synchronized long append(LogRecord record) throws IOException {
+        byte[] payload = record.encode();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        segmentBytes += 8 + payload.length;
+        return ++appendedRecords;
+    }
+
+    /** Blocks until the record with this sequence number has been forced to disk. */
+    public void awaitDurable(long recordNumber) throws IOException {
+        while (true) {
+            long target;
+            FileChannel forcing;
+            synchronized (this) {
+                while (forceInProgress && durableRecords < recordNumber) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the log to be written.");
+                    }
+                }
+                if (durableRecords >= recordNumber) {
+                    return;
+                }
+                // become the leader: force everything appended so far on behalf of every waiting thread
+                forceInProgress = true;
+                target = appendedRecords;
+                forcing = channel;
+            }
+            boolean forced = false;
+            try {
+                forcing.force(false);
+                forced = true;
+            } finally {
+                synchronized (this) {
+                    if (forced) {
+                        durableRecords = Math.max(durableRecords, target);
+                    }
+                    forceInProgress = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    public synchronized long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Forces and closes the current segment and starts a new one. Returns the number of the closed segment,
+     * which (along with every older one) can be deleted once the tables it changed have been checkpointed.
+     */
+    public synchronized int rotate() throws IOException {
+        while (forceInProgress) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the log to be written.");
+            }
+        }
+        channel.force(false);
+        durableRecords = appendedRecords;
+        channel.close();
+        int closedSegment = segmentNumber;
+        segmentNumber++;
+        channel = openSegment(segmentNumber);
+        segmentBytes = 0;
+        return closedSegment;
+    }
+
+    /** Closes the current segment without forcing it, records not yet durable may or may not survive. */
+    synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    public void deleteSegmentsUpTo(int lastSegment) throws IOException {
+        for (Path segment : listSegments(folder)) {
+            if (segmentNumber(segment) <= lastSegment) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        Path segment = folder.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ============================== Recovery ============================== //
+
+    /** The segment files in the folder, oldest first. */
+    static ArrayList<Path> listSegments(Path folder) throws IOException {
+        ArrayList<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                if (segmentNumber(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /** Reads every complete record in a segment, stopping at the first torn or corrupt one. */
+    static ArrayList<LogRecord> readSegment(Path segment) throws IOException {
+        ArrayList<LogRecord> records = new ArrayList<>();
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(segment));
+        while (contents.remaining() >= 8) {
+            int length = contents.getInt();
+            int expectedCrc = contents.getInt();
+            if (length < 0 || length > contents.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            contents.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            records.add(LogRecord.decode(new DataInputStream(new ByteArrayInputStream(payload))));
+        }
+        return records;
+    }
+
+}
@@ -2,15 +2,61 @@ package edu.uob;
 
 import edu.uob.Commands.CreateDatabase;
 import edu.uob.Commands.UseDatabase;
+import edu.uob.Concurrency.RunningStatement;
+import edu.uob.Concurrency.StatementLocks;
+import edu.uob.Concurrency.TableLockManager;
+import edu.uob.Conditions.Condition;
+import edu.uob.Conditions.EqualsCondition;
+import edu.uob.Conditions.GreaterCondition;
+import edu.uob.Conditions.LikeCondition;
+import edu.uob.DataStructure.ColumnType;
+import edu.uob.DataStructure.ColumnVector;
+import edu.uob.DataStructure.ColumnarTable;
+import edu.uob.DataStructure.LazyRow;
+import edu.uob.DataStructure.Row;
+import edu.uob.DataStructure.Table;
+import edu.uob.DataStructure.ZoneMap;
+import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.Exceptions.ParseException;
+import edu.uob.Logging.QueryLog;
+import edu.uob.Networking.BinaryProtocol;
+import edu.uob.Networking.NioServer;
 import edu.uob.Parsing.Parser;
+import edu.uob.Results.StreamingTextSink;
+import edu.uob.Storage.OffHeapTable;
+import edu.uob.Storage.StorageManager;
+import edu.uob.Storage.TableCache;
+import edu.uob.Storage.TableFormat;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ExampleDBTests {
@@ -643,6 +689,947 @@ public class ExampleDBTests {
     }
 
 
+    // =============== Connections ============== //
+
+    private interface Listener {
+        void listenOn(int portNumber) throws IOException;
+    }
+
+    // starts the listener on a background thread and returns its port once it's accepting connections
+    private static int startListening(Listener listener) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket freePort = new ServerSocket(0)) {
+            port = freePort.getLocalPort();
+        }
+        Thread listenerThread = new Thread(() -> {
+            try {
+                listener.listenOn(port);
+            } catch (IOException e) {
+                // the test waiting for the port will fail
+            }
+        });
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket probe = new Socket("localhost", port)) {
+                return port;
+            } catch (ConnectException e) {
+                Thread.sleep(20);
+            }
+        }
+        return fail("The server never started listening on port " + port);
+    }
+
+    // one client connection speaking the text protocol
+    private static class TestConnection implements AutoCloseable {
+
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final BufferedWriter writer;
+
+        TestConnection(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setSoTimeout(5000);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        }
+
+        // sends a command without waiting for its response, so several can be pipelined
+        void write(String command) throws IOException {
+            writer.write(command + "\n");
+        }
+
+        String readResponse() throws IOException {
+            writer.flush();
+            StringBuilder response = new StringBuilder();
+            String line = reader.readLine();
+            while (line != null && !line.contains("" + (char) 4)) {
+                response.append(line).append("\n");
+                line = reader.readLine();
+            }
+            return response.toString().trim();
+        }
+
+        String send(String command) throws IOException {
+            write(command);
+            return readResponse();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void connectionsAreServedAtOnceWithTheirOwnDatabase() throws IOException, InterruptedException {
+        String firstName = generateRandomName();
+        String secondName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + firstName + ";");
+        sendCommandToServer("CREATE DATABASE " + secondName + ";");
+        int port = startListening(server::blockingListenOn);
+        try (TestConnection first = new TestConnection(port); TestConnection second = new TestConnection(port)) {
+            assertTrue(first.send("USE " + firstName + ";").startsWith("[OK]"));
+            // the first connection stays open while the second one is served
+            assertTrue(second.send("USE " + secondName + ";").startsWith("[OK]"));
+            assertTrue(second.send("CREATE TABLE marks (name);").startsWith("[OK]"));
+            assertTrue(first.send("SELECT * FROM marks;").startsWith("[ERROR]"));
+            assertEquals("[OK]\nid\tname", second.send("SELECT * FROM marks;"));
+        }
+        assertNull(server.getCurrentDatabase());
+    }
+
+    @Test
+    public void pipelinedCommandsAreAnsweredInOrder() throws IOException, InterruptedException {
+        String dbName = generateRandomName();
+        int port = startListening(server::blockingListenOn);
+        try (TestConnection connection = new TestConnection(port)) {
+            connection.write("CREATE DATABASE " + dbName + ";");
+            connection.write("USE " + dbName + ";");
+            connection.write("CREATE TABLE marks (name, mark);");
+            connection.write("INSERT INTO marks VALUES ('Simon', 65);");
+            connection.write("SELECT * FROM missing;");
+            connection.write("INSERT INTO marks VALUES ('Chris', 20);");
+            connection.write("SELECT name FROM marks WHERE mark < 50;");
+            assertEquals("[OK]", connection.readResponse());
+            assertEquals("[OK]", connection.readResponse());
+            assertEquals("[OK]", connection.readResponse());
+            assertEquals("[OK]", connection.readResponse());
+            assertTrue(connection.readResponse().startsWith("[ERROR]"));
+            assertEquals("[OK]", connection.readResponse());
+            assertEquals("[OK]\nname\n'Chris'", connection.readResponse());
+        }
+    }
+
+    private static void writeQueryFrame(DataOutputStream out, String query) throws IOException {
+        byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+        BinaryProtocol.writeFrame(out, BinaryProtocol.QUERY_FRAME, queryBytes, queryBytes.length);
+        out.flush();
+    }
+
+    // checks the next frame's type and returns its payload to read from
+    private static DataInputStream readFrame(DataInputStream in, byte frameType) throws IOException {
+        assertEquals(frameType, in.readByte());
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    private static String readText(DataInputStream frame) throws IOException {
+        byte[] text = new byte[frame.readInt()];
+        frame.readFully(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void binaryClientsGetTypedFrames() throws IOException, InterruptedException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark, weight, pass);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, 2.5, TRUE);");
+        sendCommandToServer("ALTER TABLE marks ADD grade;");
+        int port = startListening(server::blockingListenOn);
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeByte(BinaryProtocol.MAGIC);
+            out.writeByte(BinaryProtocol.VERSION);
+            assertEquals(1, readFrame(in, BinaryProtocol.STATUS_FRAME).readByte());
+            writeQueryFrame(out, "USE " + dbName + ";");
+            assertEquals(1, readFrame(in, BinaryProtocol.STATUS_FRAME).readByte());
+            writeQueryFrame(out, "SELECT * FROM marks;");
+            DataInputStream columns = readFrame(in, BinaryProtocol.COLUMNS_FRAME);
+            assertEquals(6, columns.readShort());
+            assertEquals("id", readText(columns));
+            assertEquals("name", readText(columns));
+            DataInputStream row = readFrame(in, BinaryProtocol.ROW_FRAME);
+            assertEquals(6, row.readShort());
+            assertEquals(BinaryProtocol.INT_CELL, row.readByte());
+            assertEquals(1, row.readLong());
+            assertEquals(BinaryProtocol.TEXT_CELL, row.readByte());
+            assertEquals("Simon", readText(row));
+            assertEquals(BinaryProtocol.INT_CELL, row.readByte());
+            assertEquals(65, row.readLong());
+            assertEquals(BinaryProtocol.FLOAT_CELL, row.readByte());
+            assertEquals(2.5, row.readDouble());
+            assertEquals(BinaryProtocol.BOOL_CELL, row.readByte());
+            assertEquals(1, row.readByte());
+            assertEquals(BinaryProtocol.NULL_CELL, row.readByte());
+            assertEquals(1, readFrame(in, BinaryProtocol.STATUS_FRAME).readByte());
+            writeQueryFrame(out, "SELECT * FROM missing;");
+            assertEquals(0, readFrame(in, BinaryProtocol.STATUS_FRAME).readByte());
+        }
+    }
+
+    @Test
+    public void nonBlockingServerAnswersPipelinedCommandsInOrder() throws IOException, InterruptedException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        int port = startListening(new NioServer(server, 2, 16)::listenOn);
+        ArrayList<TestConnection> idleConnections = new ArrayList<>();
+        try (TestConnection connection = new TestConnection(port)) {
+            for (int i = 0; i < 20; i++) {
+                idleConnections.add(new TestConnection(port));
+            }
+            connection.send("USE " + dbName + ";");
+            connection.send("CREATE TABLE marks (mark);");
+            // far more than the server queues for one connection, so reading has to stop and start again
+            for (int i = 0; i < 200; i++) {
+                connection.write("INSERT INTO marks VALUES (" + i + ");");
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals("[OK]", connection.readResponse());
+            }
+            for (int i = 1; i <= 200; i++) {
+                connection.write("SELECT mark FROM marks WHERE id == " + i + ";");
+            }
+            for (int i = 1; i <= 200; i++) {
+                assertEquals("[OK]\nmark\n" + (i - 1), connection.readResponse());
+            }
+            assertTrue(idleConnections.get(0).send("SHOW PROCESSLIST;").startsWith("[OK]"));
+        } finally {
+            for (TestConnection idleConnection : idleConnections) {
+                idleConnection.close();
+            }
+        }
+    }
+
+    @Test
+    public void nonBlockingServerRejectsOverlongLinesAndUnknownVersions() throws IOException, InterruptedException {
+        int port = startListening(new NioServer(server, 2, 16)::listenOn);
+        try (TestConnection connection = new TestConnection(port)) {
+            connection.write("SHOW PROCESSLIST;");
+            char[] chunk = new char[1 << 20];
+            Arrays.fill(chunk, 'a');
+            for (int i = 0; i <= 64; i++) { // a byte past the limit with no newline
+                connection.writer.write(chunk, 0, i < 64 ? chunk.length : 1);
+            }
+            assertTrue(connection.readResponse().startsWith("[OK]"), "Commands before the long line are still answered");
+            assertTrue(connection.readResponse().startsWith("[ERROR]"));
+            assertNull(connection.reader.readLine(), "The connection should be closed");
+        }
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeByte(BinaryProtocol.MAGIC);
+            out.writeByte(BinaryProtocol.VERSION + 1);
+            out.flush();
+            DataInputStream status = readFrame(in, BinaryProtocol.STATUS_FRAME);
+            assertEquals(0, status.readByte());
+            assertEquals(-1, in.read(), "The connection should be closed");
+        }
+    }
+
+    @Test
+    public void readersShareATableWhileWritersWaitForThem() throws Exception {
+        TableLockManager lockManager = new TableLockManager();
+        String[] select = {"SELECT", "*", "FROM", "marks", ";"};
+        StatementLocks firstReader = lockManager.lockStatement(select, "school", RunningStatement.UNTRACKED);
+        StatementLocks secondReader = lockManager.lockStatement(select, "school", RunningStatement.UNTRACKED);
+        // a writer on another table doesn't wait
+        lockManager.lockStatement(new String[] {"DELETE", "FROM", "grades", ";"}, "school", RunningStatement.UNTRACKED).release();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                lockManager.lockStatement(new String[] {"UPDATE", "marks", "SET", "mark", "=", "1", ";"}, "school",
+                        RunningStatement.UNTRACKED).release();
+            } catch (CmdExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(writer.isDone());
+        firstReader.release();
+        secondReader.release();
+        writer.get(1, TimeUnit.SECONDS);
+        assertEquals(3, lockManager.getLockCount());
+        lockManager.lockStatement(new String[] {"DROP", "TABLE", "marks", ";"}, "school", RunningStatement.UNTRACKED).release();
+        assertEquals(2, lockManager.getLockCount());
+        lockManager.lockStatement(new String[] {"DROP", "DATABASE", "school", ";"}, null, RunningStatement.UNTRACKED).release();
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    // =============== Results ============== //
+
+    @Test
+    public void largeResultsAreStreamedBeforeTheStatementFinishes() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE notes (text);");
+        String longText = "'" + "x".repeat(500) + "'";
+        for (int i = 0; i < 200; i++) {
+            sendCommandToServer("INSERT INTO notes VALUES (" + longText + ");");
+        }
+        StringWriter connection = new StringWriter();
+        StreamingTextSink sink = new StreamingTextSink(connection);
+        String status = server.handleCommand("SELECT * FROM notes;", server.currentSession(), sink);
+        assertEquals("[OK]", status);
+        // more than one chunk of rows, so they've gone out while the statement was still running
+        assertTrue(connection.getBuffer().length() > StreamingTextSink.CHUNK_SIZE);
+        sink.finish(status);
+        assertEquals(sendCommandToServer("SELECT * FROM notes;"), connection.toString().trim());
+        StringWriter failedConnection = new StringWriter();
+        StreamingTextSink failedSink = new StreamingTextSink(failedConnection);
+        failedSink.finish(server.handleCommand("SELECT * FROM missing;", server.currentSession(), failedSink));
+        assertTrue(failedConnection.toString().startsWith("[ERROR]"));
+    }
+
+    // =============== Sessions and running statements ============== //
+
+    @Test
+    public void showProcessListIncludesItself() {
+        String response = sendCommandToServer("SHOW PROCESSLIST;");
+        assertTrue(response.contains("[OK]"));
+        assertTrue(response.contains("SHOW PROCESSLIST;"));
+    }
+
+    @Test
+    public void killUnknownStatement() {
+        String response = sendCommandToServer("KILL 987654321;");
+        assertTrue(response.contains("[ERROR]"));
+        assertFalse(response.contains("[OK]"));
+    }
+
+    @Test
+    public void setTimeoutRejectsNegativeValues() {
+        assertTrue(sendCommandToServer("SET TIMEOUT 5000;").contains("[OK]"));
+        assertTrue(sendCommandToServer("SET TIMEOUT -1;").contains("[ERROR]"));
+    }
+
+    // two tables whose JOIN compares every pair of rows and matches none, so it runs for several seconds
+    private String createSlowJoin(String dbName) throws IOException {
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        for (String tableName : List.of("left", "right")) {
+            sendCommandToServer("CREATE TABLE " + tableName + " (mark);");
+            Table table = new Table(tableName, new ArrayList<>(List.of("mark")));
+            for (int i = 0; i < 10000; i++) {
+                table.insertRow(new Row(i + 1, new ArrayList<>(List.of(tableName))));
+            }
+            TableFormat.TEXT.write(server.getStorage().tablePath(dbName, tableName), table);
+            server.getTableCache().invalidate(dbName, tableName);
+        }
+        return "JOIN left AND right ON mark AND mark;";
+    }
+
+    @Test
+    public void statementsPastTheSessionTimeoutAreStopped() throws IOException {
+        String join = createSlowJoin(generateRandomName());
+        assertTrue(sendCommandToServer("SET TIMEOUT 100;").startsWith("[OK]"));
+        String response = sendCommandToServer(join);
+        assertTrue(response.startsWith("[ERROR]"));
+        assertTrue(response.contains("timeout"));
+        assertFalse(sendCommandToServer("SHOW PROCESSLIST;").contains("JOIN"));
+        assertTrue(sendCommandToServer("SET TIMEOUT 0;").startsWith("[OK]"));
+        assertEquals("[OK]\nid\tmark\n1\tleft", sendCommandToServer("SELECT * FROM left WHERE id == 1;"));
+    }
+
+    @Test
+    public void killStopsAStatementRunningInAnotherSession() throws Exception {
+        String dbName = generateRandomName();
+        String join = createSlowJoin(dbName);
+        Session joining = server.openSession("joining");
+        Session killing = server.openSession("killing");
+        server.handleCommand("USE " + dbName + ";", joining);
+        CompletableFuture<String> joinResponse = CompletableFuture.supplyAsync(() -> server.handleCommand(join, joining));
+        String joinLine = null;
+        for (int attempt = 0; attempt < 100 && joinLine == null; attempt++) {
+            Thread.sleep(10);
+            joinLine = server.handleCommand("SHOW PROCESSLIST;", killing).lines()
+                    .filter(line -> line.endsWith(join)).findFirst().orElse(null);
+        }
+        assertNotNull(joinLine, "The JOIN should be in the process list while it runs");
+        String statementId = joinLine.split("\t")[0];
+        assertTrue(server.handleCommand("KILL " + statementId + ";", killing).startsWith("[OK]"));
+        String response = joinResponse.get(5, TimeUnit.SECONDS);
+        assertTrue(response.startsWith("[ERROR]"));
+        assertTrue(response.contains("cancelled"));
+        assertFalse(server.handleCommand("SHOW PROCESSLIST;", killing).contains("JOIN"));
+        assertEquals("[OK]\nid\tmark\n1\tright", server.handleCommand("SELECT * FROM right WHERE id == 1;", joining));
+    }
+
+    @Test
+    public void interruptedLockWaitsLetGoOfTheirLocks() throws Exception {
+        TableLockManager lockManager = new TableLockManager();
+        StatementLocks writer = lockManager.lockStatement(new String[] {"DELETE", "FROM", "marks", ";"}, "school",
+                RunningStatement.UNTRACKED);
+        Thread reader = new Thread(() -> {
+            try {
+                lockManager.lockStatement(new String[] {"SELECT", "*", "FROM", "marks", ";"}, "school", RunningStatement.UNTRACKED);
+                fail("The reader got the lock the writer holds");
+            } catch (CmdExecutionException e) {
+                // expected, it was interrupted while waiting
+            }
+        });
+        reader.start();
+        Thread.sleep(100);
+        reader.interrupt();
+        reader.join(1000);
+        writer.release();
+        // the database lock the reader took before waiting would stop this if it were still held
+        CompletableFuture<Void> dropDatabase = CompletableFuture.runAsync(() -> {
+            try {
+                lockManager.lockStatement(new String[] {"DROP", "DATABASE", "school", ";"}, null, RunningStatement.UNTRACKED).release();
+            } catch (CmdExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        dropDatabase.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void slowStatementsAreLoggedWithTheirPhaseTimings() throws IOException, InterruptedException {
+        Path logFile = Files.createTempFile("slow_queries", ".log");
+        RunningStatement statement = new RunningStatement(7, new Session(3, "test"), "SELECT * FROM marks;", 0);
+        statement.getTimings().recordParse(2_500_000);
+        statement.getTimings().addLoad(1_000_000);
+        new QueryLog(logFile, Long.MAX_VALUE / 1_000_000, 0).record(statement, "[OK]");
+        new QueryLog(logFile, 0, 0).record(statement, "[ERROR] Table not found");
+        String logged = "";
+        for (int attempt = 0; attempt < 100 && logged.isEmpty(); attempt++) {
+            Thread.sleep(10); // written by the log's own thread
+            logged = Files.readString(logFile).trim();
+        }
+        assertEquals(1, logged.lines().count(), "Only the statement over the threshold should be logged");
+        assertTrue(logged.contains("\"statement\":7,\"session\":3"));
+        assertTrue(logged.contains("\"status\":\"[ERROR] Table not found\""));
+        assertTrue(logged.contains("\"parse_ms\":2.500"));
+        assertTrue(logged.contains("\"load_ms\":1.000"));
+        assertTrue(logged.contains("\"query\":\"SELECT * FROM marks;\""));
+        Files.delete(logFile);
+    }
+
+    @Test
+    public void preparedStatementsFillInTheirPlaceholders() {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        assertTrue(sendCommandToServer("PREPARE addMark AS INSERT INTO marks VALUES (?, ?);").contains("[OK]"));
+        assertTrue(sendCommandToServer("EXECUTE addMark ('Simon', 65);").contains("[OK]"));
+        assertTrue(sendCommandToServer("EXECUTE addMark ('Chris', 20);").contains("[OK]"));
+        sendCommandToServer("PREPARE passed AS SELECT name FROM marks WHERE mark >= ?;");
+        String response = sendCommandToServer("EXECUTE passed (40);");
+        assertTrue(response.contains("[OK]"));
+        assertTrue(response.contains("Simon"));
+        assertFalse(response.contains("Chris"));
+    }
+
+    @Test
+    public void executeChecksItsValues() {
+        sendCommandToServer("PREPARE lookup AS SELECT * FROM marks WHERE mark == ?;");
+        assertTrue(sendCommandToServer("EXECUTE lookup ();").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("EXECUTE lookup (mark);").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("EXECUTE notPrepared (1);").contains("[ERROR]"));
+    }
+
+    @Test
+    public void preparedStatementsAreCheckedWhenTheyArePrepared() {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        assertTrue(sendCommandToServer("PREPARE broken AS SELECT * FROM marks WHERE mark ?? 40;").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("PREPARE byColumn AS SELECT ? FROM marks;").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("PREPARE create AS CREATE TABLE ?;").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("EXECUTE broken (40);").contains("[ERROR]"));
+
+        // the plan is kept, but the table is read again on every EXECUTE
+        sendCommandToServer("PREPARE setMark AS UPDATE marks SET mark = ? WHERE name == ?;");
+        sendCommandToServer("PREPARE dropMark AS DELETE FROM marks WHERE name == ?;");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        assertTrue(sendCommandToServer("EXECUTE setMark (NULL, 'Simon');").contains("[OK]"));
+        assertTrue(sendCommandToServer("EXECUTE dropMark ('Chris');").contains("[OK]"));
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("Simon"));
+        assertFalse(response.contains("65"));
+        assertFalse(response.contains("Chris"));
+    }
+
+    private static Table smallTable(String tableName, int rowCount) {
+        Table table = new Table(tableName, new ArrayList<>(List.of("name")));
+        for (int i = 0; i < rowCount; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Simon'"))));
+        }
+        return table;
+    }
+
+    @Test
+    public void tableCacheEvictsTheLeastRecentlyUsedCleanTable() {
+        TableCache cache = new TableCache(1300); // room for three tables of one row
+        cache.put("school", smallTable("marks", 1));
+        cache.put("school", smallTable("grades", 1));
+        cache.put("school", smallTable("staff", 1));
+        assertNotNull(cache.get("school", "marks"));
+        cache.putDirty("school", smallTable("rooms", 1));
+        assertNull(cache.get("school", "grades"));
+        // the least recently used table is dirty now, so it's kept and the next clean one goes instead
+        cache.put("school", smallTable("books", 1));
+        assertNull(cache.get("school", "staff"));
+        assertTrue(cache.isDirty("school", "rooms"));
+        assertEquals("MARKS", cache.get("school", "MARKS").getTableName());
+        cache.put("school", smallTable("library", 100));
+        assertNull(cache.get("school", "library"), "A table bigger than the whole budget shouldn't be cached");
+    }
+
+    @Test
+    public void insertAppendsOneLineToTheTableFile() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        server.getStorage().checkpoint();
+        Path tablePath = server.getStorage().tablePath(dbName, "marks");
+        String before = Files.readString(tablePath);
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        String after = Files.readString(tablePath);
+        assertEquals(before + "2\t'Chris'\t20" + System.lineSeparator(), after);
+        assertEquals(3, server.getStorage().getCatalog().getNextRowId(dbName, "marks"));
+    }
+
+    // the log segments in the storage folder, oldest first
+    private List<Path> logSegments() throws IOException {
+        try (Stream<Path> files = Files.list(server.getPathToDatabases())) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    // the server dies without a checkpoint, and a new one recovers the folder from its files
+    private void crashAndRestart() throws IOException {
+        StorageManager.simulateCrash(server.getPathToDatabases());
+        server = new DBServer();
+    }
+
+    @Test
+    public void committedChangesAreRecoveredFromTheLog() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        server.getStorage().checkpoint();
+        Path tablePath = server.getStorage().tablePath(dbName, "marks");
+        String checkpointed = Files.readString(tablePath);
+        sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Simon';");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Chris';");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        assertEquals(checkpointed, Files.readString(tablePath), "Commits should only be written to the log");
+        crashAndRestart();
+        sendCommandToServer("USE " + dbName + ";");
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("1\t'Simon'\t70"));
+        assertFalse(response.contains("Chris"));
+        assertTrue(response.contains("3\t'Rob'\t35"));
+        assertTrue(Files.readString(tablePath).contains("'Simon'\t70"));
+        assertEquals(4, server.getStorage().getCatalog().getNextRowId(dbName, "marks"));
+    }
+
+    @Test
+    public void replayingTheLogAgainChangesNothing() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        server.getStorage().checkpoint();
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Chris';");
+        sendCommandToServer("UPDATE marks SET mark = 40 WHERE name == 'Rob';");
+        String expected = sendCommandToServer("SELECT * FROM marks;");
+        ArrayList<byte[]> savedSegments = new ArrayList<>();
+        List<Path> segments = logSegments();
+        for (Path segment : segments) {
+            savedSegments.add(Files.readAllBytes(segment));
+        }
+        crashAndRestart();
+        sendCommandToServer("USE " + dbName + ";");
+        assertEquals(expected, sendCommandToServer("SELECT * FROM marks;"));
+        // as if recovery had written the tables and then died before deleting the log
+        StorageManager.simulateCrash(server.getPathToDatabases());
+        for (int i = 0; i < segments.size(); i++) {
+            Files.write(segments.get(i), savedSegments.get(i));
+        }
+        server = new DBServer();
+        sendCommandToServer("USE " + dbName + ";");
+        assertEquals(expected, sendCommandToServer("SELECT * FROM marks;"));
+        assertEquals(2, server.getStorage().getCatalog().getRowCount(dbName, "marks"));
+        assertEquals(4, server.getStorage().getCatalog().getNextRowId(dbName, "marks"));
+    }
+
+    @Test
+    public void aTornLastLogRecordIsIgnored() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        server.getStorage().checkpoint();
+        sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Simon';");
+        sendCommandToServer("UPDATE marks SET mark = 99 WHERE name == 'Simon';");
+        StorageManager.simulateCrash(server.getPathToDatabases());
+        List<Path> segments = logSegments();
+        try (FileChannel lastSegment = FileChannel.open(segments.get(segments.size() - 1), StandardOpenOption.WRITE)) {
+            lastSegment.truncate(lastSegment.size() - 3); // the server died part way through writing the last record
+        }
+        server = new DBServer();
+        sendCommandToServer("USE " + dbName + ";");
+        assertEquals("[OK]\nmark\n70", sendCommandToServer("SELECT mark FROM marks WHERE name == 'Simon';"));
+        assertTrue(sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);").startsWith("[OK]"));
+    }
+
+    @Test
+    public void dirtyTablesAreCheckpointedPastTheLogThresholdAndOnShutdown() throws IOException, InterruptedException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        Path tablePath = server.getStorage().tablePath(dbName, "marks");
+        System.setProperty("db.walCheckpointBytes", "1"); // every commit goes over it
+        try {
+            crashAndRestart();
+        } finally {
+            System.clearProperty("db.walCheckpointBytes");
+        }
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("UPDATE marks SET mark = 70 WHERE name == 'Simon';");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getTableCache().isDirty(dbName, "marks") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.readString(tablePath).contains("'Simon'\t70"), "The checkpointer should have written the table");
+        crashAndRestart(); // back to the usual thresholds
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("UPDATE marks SET mark = 80 WHERE name == 'Simon';");
+        assertTrue(server.getTableCache().isDirty(dbName, "marks"));
+        server.getStorage().shutdown();
+        assertTrue(Files.readString(tablePath).contains("'Simon'\t80"));
+        for (Path segment : logSegments()) {
+            assertEquals(0, Files.size(segment), "Shutting down should leave the log empty");
+        }
+        crashAndRestart(); // a storage with a running checkpointer for the tests after this one
+    }
+
+    @Test
+    public void aMissingCatalogIsRebuiltAndSaved() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        server.getStorage().checkpoint();
+        StorageManager.simulateCrash(server.getPathToDatabases());
+        for (Path segment : logSegments()) {
+            assertEquals(0, Files.size(segment));
+            Files.delete(segment);
+        }
+        Path catalogPath = server.getPathToDatabases().resolve("catalog.dat");
+        Files.delete(catalogPath);
+        server = new DBServer();
+        assertEquals(1, server.getStorage().getCatalog().getRowCount(dbName, "marks"));
+        assertTrue(Files.exists(catalogPath), "The rebuilt catalog should be saved even with no log to replay");
+    }
+
+    @Test
+    public void columnarDatabasesKeepTheirValues() throws IOException {
+        String dbName = generateRandomName();
+        assertTrue(sendCommandToServer("CREATE DATABASE " + dbName + " STORAGE COLUMNAR;").contains("[OK]"));
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark, weight);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, 0.5);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 007, 1.50);");
+        server.getStorage().checkpoint();
+        server.getTableCache().invalidateDatabase(dbName);
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("'Simon'\t65\t0.5"));
+        assertTrue(response.contains("'Chris'\t007\t1.50"));
+        assertTrue(sendCommandToServer("CREATE DATABASE other STORAGE FANCY;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void pagedDatabasesWriteChangedRowsInPlace() throws IOException {
+        String dbName = generateRandomName();
+        assertTrue(sendCommandToServer("CREATE DATABASE " + dbName + " STORAGE PAGED;").contains("[OK]"));
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        for (int i = 0; i < 50; i++) {
+            sendCommandToServer("INSERT INTO marks VALUES ('Student" + i + "', " + i + ");");
+        }
+        server.getStorage().checkpoint();
+        sendCommandToServer("UPDATE marks SET name = 'Simon' WHERE mark == 10;");
+        sendCommandToServer("DELETE FROM marks WHERE mark > 20;");
+        server.getStorage().checkpoint();
+        server.getTableCache().invalidateDatabase(dbName);
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("'Simon'\t10"));
+        assertFalse(response.contains("Student10"));
+        assertFalse(response.contains("Student30"));
+        assertTrue(response.contains("Student20"));
+    }
+
+    @Test
+    public void catalogKeepsTablesRowCountsAndIds() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Chris';");
+        sendCommandToServer("ALTER TABLE marks ADD pass;");
+        assertEquals(1, server.getStorage().getCatalog().getRowCount(dbName, "marks"));
+        assertEquals(3, server.getStorage().getCatalog().getNextRowId(dbName, "marks"));
+        assertEquals(4, server.getStorage().getCatalog().getColumnNames(dbName, "marks").size());
+        assertFalse(new File("databases/" + dbName + "/marks.meta").exists());
+        sendCommandToServer("DROP TABLE marks;");
+        assertFalse(server.getStorage().getCatalog().tableExists(dbName, "marks"));
+        sendCommandToServer("CREATE TABLE marks (name);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob');");
+        assertTrue(sendCommandToServer("SELECT * FROM marks;").contains("1\t'Rob'"));
+    }
+
+    @Test
+    public void columnarZoneMapsLetScansSkipBlocks() throws IOException {
+        Table table = new Table("marks", new ArrayList<>(List.of("name", "mark")));
+        for (int i = 0; i < 3000; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'", i < 2500 ? Integer.toString(i) : " "))));
+        }
+        Path tablePath = Files.createTempFile("marks", ".tbc");
+        TableFormat.COLUMNAR.write(tablePath, table);
+        Table mappedTable = TableFormat.COLUMNAR.map(tablePath, "marks");
+        ZoneMap zoneMap = mappedTable.getZoneMap();
+        assertNotNull(zoneMap);
+        assertEquals(1024, zoneMap.getBlockRows());
+        assertEquals(1024, zoneMap.getMin(1, 2));
+        assertEquals(2047, zoneMap.getMax(1, 2));
+        assertTrue(zoneMap.hasNulls(2, 2));
+        assertFalse(zoneMap.isNumeric(0, 1));
+        Condition condition = new GreaterCondition(mappedTable, "mark", "1500");
+        assertFalse(condition.mightMatch(zoneMap, 0));
+        assertTrue(condition.mightMatch(zoneMap, 1));
+        assertTrue(condition.mightMatch(zoneMap, 2)); // blank cells can't be ruled out
+        Files.delete(tablePath);
+    }
+
+    @Test
+    public void columnarDictionaryColumnsKeepTheirValues() throws IOException, CmdExecutionException {
+        String[] statuses = {"'open'", "'closed'", "'pending'"};
+        Table table = new Table("tickets", new ArrayList<>(List.of("status", "title")));
+        for (int i = 0; i < 100; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of(statuses[i % 3], "'Ticket" + i + "'"))));
+        }
+        Path tablePath = Files.createTempFile("tickets", ".tbc");
+        TableFormat.COLUMNAR.write(tablePath, table);
+        Table mappedTable = TableFormat.COLUMNAR.map(tablePath, "tickets");
+        Row row = mappedTable.getRows().get(4);
+        assertEquals("'closed'", row.getCellData(1));
+        assertEquals(1, row.getCellCode(1));
+        assertEquals(-1, row.getCellCode(2));
+        int matches = 0;
+        Condition condition = new LikeCondition(mappedTable, "status", "'%pen%'");
+        for (Row mappedRow : mappedTable.getRows()) {
+            matches += condition.evaluateCondition(mappedRow) ? 1 : 0;
+        }
+        assertEquals(67, matches);
+        Table readTable = TableFormat.COLUMNAR.read(tablePath, "tickets");
+        assertSame(readTable.getRows().get(0).getCellData(1), readTable.getRows().get(3).getCellData(1));
+        Files.delete(tablePath);
+    }
+
+    @Test
+    public void declaredColumnTypesRefuseValuesThatDontFit() throws IOException {
+        String dbName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + dbName + ";");
+        sendCommandToServer("USE " + dbName + ";");
+        sendCommandToServer("CREATE TABLE marks (name TEXT, mark INT, grade FLOAT, pass);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, 3.5, TRUE);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20, 1, FALSE);");
+        assertTrue(sendCommandToServer("INSERT INTO marks VALUES ('Rob', 'high', 2.0, TRUE);").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("UPDATE marks SET grade = 'A' WHERE name == 'Simon';").contains("[ERROR]"));
+        assertEquals(ColumnType.INT, server.getStorage().getCatalog().getDeclaredType(dbName, "marks", "mark"));
+        assertNull(server.getStorage().getCatalog().getDeclaredType(dbName, "marks", "pass"));
+        assertEquals(ColumnType.BOOL, server.getStorage().getCatalog().getColumnType(dbName, "marks", "pass"));
+        String response = sendCommandToServer("SELECT name FROM marks WHERE mark > 30 OR grade == 1;");
+        assertTrue(response.contains("'Simon'"));
+        assertTrue(response.contains("'Chris'"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks WHERE mark < 20;").contains("'Chris'"));
+    }
+
+    @Test
+    public void columnarTableKeepsRowsInColumnArrays() {
+        Table table = new ColumnarTable("marks", new ArrayList<>(List.of("name", "mark")));
+        for (int i = 0; i < 100; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'", Integer.toString(i)))));
+        }
+        table.insertRow(new Row(101, new ArrayList<>(List.of("'Short'"))));
+        assertEquals(101, table.getRows().size());
+        assertEquals("'Student4'\t4", String.join("\t", table.getRows().get(4).getCells().subList(1, 3)));
+        assertEquals(2, table.getRows().get(100).getCellCount());
+        table.setCell(100, 2, "50");
+        assertEquals("101\t'Short'\t50", table.getRows().get(100).toString());
+        table.removeRows(List.of("1", "3"));
+        assertEquals(99, table.getRows().size());
+        assertEquals("4", table.getRows().get(1).getCellData(0));
+        assertEquals(98, table.findRowIndex(101));
+        table.columnNames.add("pass");
+        table.initialiseEmptyColumn();
+        table.removeColumnFromRows(1);
+        table.removeColumnHeader(1);
+        assertEquals("4\t3\t ", table.getRows().get(1).toString());
+        assertTrue(table.getColumnVector(1).isNumeric());
+        assertEquals(50, table.getColumnVector(1).getInt(98));
+    }
+
+    @Test
+    public void parsedColumnsAreUpdatedInPlaceAsRowsChange() {
+        Table table = new ColumnarTable("marks", new ArrayList<>(List.of("name", "mark")));
+        for (int i = 0; i < 100; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'", Integer.toString(i)))));
+        }
+        ColumnVector marks = table.getColumnVector(2);
+        table.insertRow(new Row(101, new ArrayList<>(List.of("'Late'", "70"))));
+        table.setCell(0, 2, " ");
+        table.removeRows(List.of("2", "4"));
+        assertSame(marks, table.getColumnVector(2)); // kept up, not thrown away and rebuilt
+        assertEquals(ColumnType.INT, marks.getType());
+        assertTrue(marks.isNull(0));
+        assertEquals(4, marks.getInt(2));
+        assertEquals(70, marks.getInt(98));
+        table.replaceRow(98, new Row(101, new ArrayList<>(List.of("'Late'", "70.5"))));
+        assertEquals(ColumnType.FLOAT, marks.getType());
+        assertEquals(70.5, marks.getDouble(98), 0.0);
+        assertEquals(4.0, marks.getDouble(2), 0.0);
+        table.setCell(1, 2, "'absent'");
+        assertFalse(marks.isNumeric());
+    }
+
+    @Test
+    public void offHeapTablesDecodeCellsWhenRead() throws IOException {
+        Table table = new Table("marks", new ArrayList<>(List.of("name", "mark")));
+        for (int i = 0; i < 50; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'", Integer.toString(i)))));
+        }
+        Path tablePath = Files.createTempFile("marks", ".tab");
+        TableFormat.TEXT.write(tablePath, table);
+        Table offHeapTable = TableFormat.TEXT.read(tablePath, "marks", true);
+        assertTrue(offHeapTable instanceof OffHeapTable);
+        assertEquals(50, offHeapTable.getRows().size());
+        assertEquals("'Student7'", offHeapTable.getRows().get(7).getCellData(1));
+        offHeapTable.setCell(7, 2, "'seventy'");
+        offHeapTable.removeRows(List.of("1"));
+        assertEquals("8\t'Student7'\t'seventy'", offHeapTable.getRows().get(6).toString());
+        assertEquals(48, offHeapTable.findRowIndex(50));
+        Files.delete(tablePath);
+    }
+
+    @Test
+    public void mappedTextTablesDecodeCellsWhenTheyAreRead() throws IOException, CmdExecutionException {
+        Path tablePath = Files.createTempFile("marks", ".tab");
+        StringBuilder contents = new StringBuilder("id\tname\tmark\n");
+        for (int i = 0; i < 3000; i++) {
+            contents.append(i + 1).append("\t'Student").append(i).append("'\t").append(i).append("\n");
+        }
+        contents.append("3001\t'Chris'\t\n3002\t'Rob'\t35\r\n");
+        Files.writeString(tablePath, contents);
+        Table mappedTable = TableFormat.TEXT.map(tablePath, "marks");
+        Table readTable = TableFormat.TEXT.read(tablePath, "marks");
+        assertEquals(readTable.getRows().size(), mappedTable.getRows().size());
+        assertTrue(mappedTable.getRows().get(0) instanceof LazyRow);
+        for (int i = 0; i < readTable.getRows().size(); i++) {
+            assertEquals(readTable.getRows().get(i).getCells(), mappedTable.getRows().get(i).getCells());
+        }
+        assertEquals(2, mappedTable.getRows().get(3000).getCellCount(), "split() drops the empty last cell");
+        Condition condition = new GreaterCondition(mappedTable, "mark", "2990");
+        BitSet studentRows = new BitSet();
+        studentRows.set(0, 3000);
+        BitSet matches = condition.findMatches(mappedTable.getRows(), studentRows);
+        assertEquals(9, matches.cardinality());
+        assertEquals(2991, matches.nextSetBit(0));
+        Files.delete(tablePath);
+    }
+
+    @Test
+    public void idEqualityIsAnsweredFromTheIdIndex() {
+        Table table = new ColumnarTable("marks", new ArrayList<>(List.of("name", "mark")));
+        for (int i = 0; i < 1000; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'", Integer.toString(i)))));
+        }
+        Condition condition = new EqualsCondition(table, "id", "700");
+        BitSet indexedRows = condition.findIndexedRows();
+        assertEquals(1, indexedRows.cardinality());
+        assertEquals("'Student699'", table.getRows().get(indexedRows.nextSetBit(0)).getCellData(1));
+        table.removeRows(List.of("1", "2"));
+        table.insertRow(new Row(1001, new ArrayList<>(List.of("'Late'", "0"))));
+        assertEquals(697, condition.findIndexedRows().nextSetBit(0));
+        assertEquals(998, table.findRowIndex(1001));
+        assertTrue(new EqualsCondition(table, "id", "1").findIndexedRows().isEmpty());
+        assertNull(new EqualsCondition(table, "mark", "7").findIndexedRows());
+        assertNull(new EqualsCondition(table, "id", "7.5").findIndexedRows());
+    }
+
+    @Test
+    public void theIdIndexFollowsReplacedAndRemovedRows() {
+        Table table = new ColumnarTable("marks", new ArrayList<>(List.of("name")));
+        for (int i = 0; i < 2000; i++) {
+            table.insertRow(new Row(i + 1, new ArrayList<>(List.of("'Student" + i + "'"))));
+        }
+        assertEquals(999, table.findRowIndex(1000));
+        table.replaceRow(999, new Row(1000, new ArrayList<>(List.of("'Simon'"))));
+        table.replaceRow(10, new Row(5000, new ArrayList<>(List.of("'Chris'"))));
+        assertEquals(-1, table.findRowIndex(11));
+        assertEquals(10, table.findRowIndex(5000));
+        ArrayList<String> removedIds = new ArrayList<>();
+        for (int id = 500; id <= 2000; id += 3) {
+            removedIds.add(Integer.toString(id));
+        }
+        table.removeRows(removedIds);
+        for (int rowIndex = 0; rowIndex < table.getRows().size(); rowIndex++) {
+            int rowId = Integer.parseInt(table.getRows().get(rowIndex).getCellData(0));
+            assertEquals(rowIndex, table.findRowIndex(rowId));
+        }
+        assertEquals(-1, table.findRowIndex(500));
+        assertEquals("'Simon'", table.getRows().get(table.findRowIndex(1000)).getCellData(1));
+        assertEquals(10, table.findRowIndex(5000));
+    }
+
+    @Test
+    public void indexesAreKeptUpToDateAndSurviveRestart() throws IOException {
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark, pass);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        assertTrue(sendCommandToServer("CREATE INDEX bymark ON marks (mark);").startsWith("[OK]"));
+        assertTrue(sendCommandToServer("CREATE INDEX byname ON marks (name);").startsWith("[OK]"));
+        assertTrue(sendCommandToServer("CREATE INDEX byname ON marks (pass);").startsWith("[ERROR]"));
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        sendCommandToServer("UPDATE marks SET mark = 40 WHERE name == 'Sion';");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Simon';");
+        assertEquals("[OK]\nname\n'Sion'", sendCommandToServer("SELECT name FROM marks WHERE mark == 40.0;"));
+        assertEquals("[OK]\nname", sendCommandToServer("SELECT name FROM marks WHERE mark == 55;"));
+        assertEquals("[OK]\nname", sendCommandToServer("SELECT name FROM marks WHERE name == 'Simon';"));
+        crashAndRestart(); // the indexes come back from the log and are rebuilt as the table is read
+        sendCommandToServer("USE " + randomName + ";");
+        assertEquals("[OK]\nname\n'Sion'", sendCommandToServer("SELECT name FROM marks WHERE mark == 40;"));
+        server.getStorage().checkpoint();
+        crashAndRestart(); // and from the saved catalog once the log has been checkpointed away
+        sendCommandToServer("USE " + randomName + ";");
+        assertEquals(2, server.getStorage().getCatalog().getIndexes(randomName, "marks").size());
+        assertEquals("[OK]\nmark\n35", sendCommandToServer("SELECT mark FROM marks WHERE name == 'Rob';"));
+        sendCommandToServer("ALTER TABLE marks DROP mark;");
+        assertTrue(sendCommandToServer("DROP INDEX bymark;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("DROP INDEX byname;").startsWith("[OK]"));
+    }
+
+
     @AfterAll
     public static void cleanUp() throws IOException {
         String storageFolderPath = Paths.get("databases").toAbsolutePath().toString();
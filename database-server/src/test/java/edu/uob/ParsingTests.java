@@ -3,7 +3,9 @@ import edu.uob.Commands.CreateDatabase;
 import edu.uob.Commands.UseDatabase;
 import edu.uob.Exceptions.CmdExecutionException;
 import edu.uob.Exceptions.ParseException;
+import edu.uob.Parsing.Lexer;
 import edu.uob.Parsing.Parser;
+import edu.uob.Parsing.Token;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.io.IOException;
@@ -79,6 +81,16 @@ public class ParsingTests {
         });
     }
 
+    @Test
+    public void testParseCreateDatabaseStorageExtraTokens() {
+        DBServer server = null;
+        String[] tokens = {"CREATE", "DATABASE", "testDB", "STORAGE", "COLUMNAR", "exToken", ";"};
+        Parser parser = new Parser(server, tokens);
+        assertThrows(ParseException.class, () -> parser.parseCreate());
+        String[] valid = {"CREATE", "DATABASE", "testDB", "STORAGE", "COLUMNAR", ";"};
+        assertDoesNotThrow(() -> new Parser(server, valid).parseCreate());
+    }
+
     @Test
     public void createTableNoClosingParenthesis() {
         DBServer server = null;
@@ -155,7 +167,31 @@ public class ParsingTests {
         assertTrue(parser.isStringLiteral("'123'"));
         assertFalse(parser.isStringLiteral("NotAString"));
         assertFalse(parser.isStringLiteral("'Unmatched quotes"));
+        assertTrue(parser.isIntegerLiteral("-42"));
+        assertFalse(parser.isIntegerLiteral("4.2"));
+        assertTrue(parser.isFloatLiteral("+4.25"));
+        assertFalse(parser.isFloatLiteral("4."));
+    }
 
+    // ========================= LEXER ========================= //
+    @Test
+    public void testLexerTypesTokens() {
+        Token[] tokens = new Lexer().lex("SELECT * FROM marks WHERE (pass!=TRUE) AND mark>=-2.5;");
+        String[] expectedText = {"SELECT", "*", "FROM", "marks", "WHERE", "(", "pass", "!=", "TRUE", ")", "AND", "mark", ">=", "-2.5", ";"};
+        assertArrayEquals(expectedText, Token.textOf(tokens));
+        assertEquals(Token.Type.KEYWORD, tokens[0].getType());
+        assertEquals(Token.Type.IDENTIFIER, tokens[3].getType());
+        assertEquals(Token.Type.OPERATOR, tokens[7].getType());
+        assertEquals(Token.Type.BOOLEAN, tokens[8].getType());
+        assertEquals(Token.Type.FLOAT, tokens[13].getType());
+    }
+
+    @Test
+    public void testLexerKeepsStringLiteralsIntact() {
+        Token[] tokens = new Lexer().lex("INSERT INTO marks VALUES ('Simon,  (Jr)', 65);");
+        assertEquals("'Simon,  (Jr)'", tokens[5].getText());
+        assertEquals(Token.Type.STRING, tokens[5].getType());
+        assertEquals(Token.Type.INTEGER, tokens[7].getType());
     }
 
 